@@ -259,6 +259,53 @@ public interface Constants extends IdvConstants {
      */
     String PREF_TBM_SIZE = "tbm.icon.size";
 
+    /**
+     * Which entries the in-memory data cache writes out first. One of
+     * {@link visad.data.DataCacheManager#EVICTION_LRU},
+     * {@link visad.data.DataCacheManager#EVICTION_LFU} or
+     * {@link visad.data.DataCacheManager#EVICTION_TINYLFU}.
+     */
+    String PREF_DATACACHE_EVICTION = "mcidasv.datacache.eviction";
+
+    /** Whether the in-memory data cache compresses what it writes to disk. */
+    String PREF_DATACACHE_COMPRESS = "mcidasv.datacache.compress";
+
+    /**
+     * Megabytes of evicted cache data to keep outside of the Java heap
+     * before writing it to disk. Zero turns this off.
+     */
+    String PREF_DATACACHE_OFFHEAP = "mcidasv.datacache.offheap";
+
+    /**
+     * Whether loaded data is also kept on disk between sessions, see
+     * {@link ucar.unidata.data.PersistentDataCache}.
+     */
+    String PREF_DATACACHE_PERSISTENT = "mcidasv.datacache.persistent";
+
+    /** Max size, in megabytes, of the data kept on disk between sessions. */
+    String PREF_DATACACHE_PERSISTENT_SIZE = "mcidasv.datacache.persistent.size";
+
+    /**
+     * How many reads of one HYDRA file can run at once. Each needs its own
+     * open handle on the file.
+     */
+    String PREF_HYDRA_FILE_HANDLES = "mcidasv.hydra.filehandles";
+
+    /**
+     * Max size, in megabytes, of the decompressed chunks of HDF5 and
+     * NetCDF-4 variables kept between HYDRA reads.
+     */
+    String PREF_HYDRA_CHUNK_CACHE = "mcidasv.hydra.chunkcache";
+
+    /**
+     * Max size, in megabytes, of the full resolution HYDRA swath
+     * geolocation kept for later subsets and strides of the same swaths.
+     */
+    String PREF_HYDRA_GEO_CACHE = "mcidasv.hydra.geolocation.cache";
+
+    /** Whether stored HYDRA swath geolocation is kept off the Java heap. */
+    String PREF_HYDRA_GEO_OFFHEAP = "mcidasv.hydra.geolocation.offheap";
+
     /** Property name for for the path to about dialog template. */
     String PROP_ABOUTTEXT = "mcidasv.about.text";
 
@@ -91,8 +91,10 @@ import org.w3c.dom.Element;
 
 import ucar.nc2.NetcdfFile;
 import visad.VisADException;
+import visad.data.DataCacheManager;
 
 import ucar.unidata.data.DataManager;
+import ucar.unidata.data.PersistentDataCache;
 import ucar.unidata.idv.ArgsManager;
 import ucar.unidata.idv.ControlDescriptor;
 import ucar.unidata.idv.IdvObjectStore;
@@ -135,6 +137,8 @@ import edu.wisc.ssec.mcidasv.data.TropomiIOSP;
 import edu.wisc.ssec.mcidasv.chooser.McIdasChooserManager;
 import edu.wisc.ssec.mcidasv.control.LambertAEA;
 import edu.wisc.ssec.mcidasv.data.McvDataManager;
+import edu.wisc.ssec.mcidasv.data.hydra.NetCDFFile;
+import edu.wisc.ssec.mcidasv.data.hydra.SwathNavigation;
 import edu.wisc.ssec.mcidasv.monitors.MonitorManager;
 import edu.wisc.ssec.mcidasv.servermanager.AddeEntry.EntrySource;
 import edu.wisc.ssec.mcidasv.servermanager.AddeEntry.EntryStatus;
@@ -350,6 +354,55 @@ public class McIDASV extends IntegratedDataViewer {
         return stateManager.getPropertyOrPreference(PREF_THREADS_DATA, 4);
     }
     
+    /**
+     * Apply the data cache preferences. Calls the IDV version and then sets
+     * up the McIDAS-V specific {@link DataCacheManager} settings.
+     */
+    @Override public void initCacheManager() {
+        super.initCacheManager();
+        StateManager stateManager = (StateManager)getStateManager();
+        DataCacheManager cacheManager = DataCacheManager.getCacheManager();
+        cacheManager.setEvictionPolicy(
+            stateManager.getPropertyOrPreference(Constants.PREF_DATACACHE_EVICTION,
+                DataCacheManager.EVICTION_LRU));
+        cacheManager.setSpillCompression(
+            stateManager.getPropertyOrPreference(Constants.PREF_DATACACHE_COMPRESS,
+                false));
+        double offHeapMegabytes =
+            stateManager.getPropertyOrPreference(Constants.PREF_DATACACHE_OFFHEAP,
+                0.0);
+        cacheManager.setOffHeapBudget((long)(offHeapMegabytes * 1024 * 1024));
+        
+        PersistentDataCache persistentCache = PersistentDataCache.getCache();
+        persistentCache.setCacheDir(
+            new File(getStore().getUserDirectory(), "datacache"));
+        double persistentMegabytes =
+            stateManager.getPropertyOrPreference(Constants.PREF_DATACACHE_PERSISTENT_SIZE,
+                2048.0);
+        persistentCache.setMaxSize((long)(persistentMegabytes * 1024 * 1024));
+        persistentCache.setEnabled(
+            stateManager.getPropertyOrPreference(Constants.PREF_DATACACHE_PERSISTENT,
+                false));
+        
+        double fileHandles =
+            stateManager.getPropertyOrPreference(Constants.PREF_HYDRA_FILE_HANDLES,
+                (double)NetCDFFile.DEFAULT_MAX_HANDLES);
+        NetCDFFile.setMaxHandlesPerFile((int)fileHandles);
+        
+        double chunkCache =
+            stateManager.getPropertyOrPreference(Constants.PREF_HYDRA_CHUNK_CACHE,
+                (double)NetCDFFile.DEFAULT_CHUNK_CACHE_MB);
+        NetCDFFile.setChunkCacheSize((int)chunkCache);
+        
+        double geolocationCache =
+            stateManager.getPropertyOrPreference(Constants.PREF_HYDRA_GEO_CACHE,
+                (double)SwathNavigation.DEFAULT_GEOLOCATION_CACHE_MB);
+        SwathNavigation.setGeolocationCacheSize((int)geolocationCache);
+        SwathNavigation.setGeolocationOffHeap(
+            stateManager.getPropertyOrPreference(Constants.PREF_HYDRA_GEO_OFFHEAP,
+                false));
+    }
+    
     /**
      * Start up the McIDAS-V monitor server.
      *
@@ -97,6 +97,7 @@ import javax.swing.event.ChangeListener;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
 
+import edu.wisc.ssec.mcidasv.data.hydra.NetCDFFile;
 import edu.wisc.ssec.mcidasv.ui.ColorSwatchComponent;
 import edu.wisc.ssec.mcidasv.util.GetMem;
 
@@ -138,6 +139,7 @@ import ucar.unidata.xml.XmlUtil;
 import ucar.visad.UtcDate;
 import visad.DateTime;
 import visad.Unit;
+import visad.data.DataCacheManager;
 import edu.wisc.ssec.mcidasv.servermanager.EntryStore;
 import edu.wisc.ssec.mcidasv.servermanager.AddePreferences;
 import edu.wisc.ssec.mcidasv.servermanager.AddePreferences.AddePrefConglomeration;
@@ -1317,6 +1319,12 @@ public class McIdasPreferenceManager extends IdvPreferenceManager implements Lis
             // IDV-style call to applyWidgets.
             public void applyPreference(XmlObjectStore theStore, Object data) {
                 applyWidgets((Hashtable)data, theStore);
+                Object evictionBox = ((Hashtable)data).get(PREF_DATACACHE_EVICTION);
+                if (evictionBox instanceof JComboBox) {
+                    Object selected = ((JComboBox)evictionBox).getSelectedItem();
+                    theStore.put(PREF_DATACACHE_EVICTION,
+                                 ((TwoFacedObject)selected).getId().toString());
+                }
                 getIdv().getIdvUIManager().setDateFormat();
                 getIdv().getIdvUIManager().favoriteBundlesChanged();
                 getIdv().initCacheManager();
@@ -1835,6 +1843,40 @@ public class McIdasPreferenceManager extends IdvPreferenceManager implements Lis
         JComponent cacheTextFieldComponent = GuiUtils.hbox(new JLabel("Disk Cache Size: "), cacheTextField, new JLabel(" megabytes"));
         widgets.put(PREF_CACHESIZE, cacheTextField);
         
+        JLabel evictionLabel = McVGuiUtils.makeLabelRight("", Width.ONEHALF);
+        
+        TwoFacedObject[] evictionPolicies = {
+            new TwoFacedObject("Least recently used", DataCacheManager.EVICTION_LRU),
+            new TwoFacedObject("Least frequently used", DataCacheManager.EVICTION_LFU),
+            new TwoFacedObject("Large and rarely used", DataCacheManager.EVICTION_TINYLFU)
+        };
+        JComboBox evictionComboBox = new JComboBox(evictionPolicies);
+        evictionComboBox.setSelectedItem(TwoFacedObject.findId(
+            getStore().get(PREF_DATACACHE_EVICTION, DataCacheManager.EVICTION_LRU),
+            Arrays.asList(evictionPolicies)));
+        evictionComboBox.setToolTipText("Which cached data is written to disk first when memory runs low");
+        JCheckBox compressCheckBox = new JCheckBox("Compress", getStore().get(PREF_DATACACHE_COMPRESS, false));
+        compressCheckBox.setToolTipText("Compress float, short and byte data written to disk (smaller files, more CPU)");
+        widgets.put(PREF_DATACACHE_COMPRESS, compressCheckBox);
+        JComponent evictionComponent = GuiUtils.hbox(new JLabel("Write Out First: "), evictionComboBox, compressCheckBox);
+        widgets.put(PREF_DATACACHE_EVICTION, evictionComboBox);
+        
+        JLabel offHeapLabel = McVGuiUtils.makeLabelRight("", Width.ONEHALF);
+        
+        JTextField offHeapTextField = McVGuiUtils.makeTextField(Misc.format(getStore().get(PREF_DATACACHE_OFFHEAP, 0.0)));
+        offHeapTextField.setToolTipText("Memory outside of the Java heap used for cached data before it is written to disk");
+        JComponent offHeapComponent = GuiUtils.hbox(new JLabel("Off-heap Cache Size: "), offHeapTextField, new JLabel(" megabytes (0 = off)"));
+        widgets.put(PREF_DATACACHE_OFFHEAP, offHeapTextField);
+        
+        JLabel persistentLabel = McVGuiUtils.makeLabelRight("", Width.ONEHALF);
+        
+        JCheckBox persistentCheckBox = new JCheckBox("Keep Data Between Sessions", getStore().get(PREF_DATACACHE_PERSISTENT, false));
+        persistentCheckBox.setToolTipText("Keep loaded data on local disk so that reloading a bundle or rerunning a script does not have to fetch it again");
+        widgets.put(PREF_DATACACHE_PERSISTENT, persistentCheckBox);
+        JTextField persistentTextField = McVGuiUtils.makeTextField(Misc.format(getStore().get(PREF_DATACACHE_PERSISTENT_SIZE, 2048.0)));
+        widgets.put(PREF_DATACACHE_PERSISTENT_SIZE, persistentTextField);
+        JComponent persistentComponent = GuiUtils.hbox(persistentCheckBox, new JLabel(" up to "), persistentTextField, new JLabel(" megabytes"));
+        
         // Image stuff
         JLabel imageLabel = McVGuiUtils.makeLabelRight("Max Image Size:", Width.ONEHALF);
         
@@ -1849,6 +1891,21 @@ public class McIdasPreferenceManager extends IdvPreferenceManager implements Lis
         JComponent gridFieldComponent = GuiUtils.hbox(gridField, new JLabel(" bytes (Cache grids larger than this to disk)"));
         widgets.put(PREF_FIELD_CACHETHRESHOLD, gridField);
         
+        // HYDRA stuff
+        JLabel handlesLabel = McVGuiUtils.makeLabelRight("Parallel Reads:", Width.ONEHALF);
+        
+        JTextField handlesField = McVGuiUtils.makeTextField(Misc.format(getStore().get(PREF_HYDRA_FILE_HANDLES, NetCDFFile.DEFAULT_MAX_HANDLES)));
+        handlesField.setToolTipText("How many reads of one satellite file (VIIRS, MODIS, CrIS, ...) can run at once; each keeps the file open");
+        JComponent handlesFieldComponent = GuiUtils.hbox(handlesField, new JLabel(" per HYDRA file"));
+        widgets.put(PREF_HYDRA_FILE_HANDLES, handlesField);
+        
+        JLabel chunkLabel = McVGuiUtils.makeLabelRight("Chunk Cache:", Width.ONEHALF);
+        
+        JTextField chunkField = McVGuiUtils.makeTextField(Misc.format(getStore().get(PREF_HYDRA_CHUNK_CACHE, NetCDFFile.DEFAULT_CHUNK_CACHE_MB)));
+        chunkField.setToolTipText("Decompressed data of compressed satellite files (VIIRS, CrIS, ...) kept in memory for later reads");
+        JComponent chunkFieldComponent = GuiUtils.hbox(chunkField, new JLabel(" MB for HYDRA files"));
+        widgets.put(PREF_HYDRA_CHUNK_CACHE, chunkField);
+        
         // Data panel layout
         GroupLayout dataLayout = new GroupLayout(dataPanel);
         dataPanel.setLayout(dataLayout);
@@ -1877,6 +1934,18 @@ public class McIdasPreferenceManager extends IdvPreferenceManager implements Lis
                         .addComponent(cacheEmptyLabel)
                         .addGap(GAP_RELATED)
                         .addComponent(cacheTextFieldComponent))
+                    .addGroup(dataLayout.createSequentialGroup()
+                        .addComponent(evictionLabel)
+                        .addGap(GAP_RELATED)
+                        .addComponent(evictionComponent))
+                    .addGroup(dataLayout.createSequentialGroup()
+                        .addComponent(offHeapLabel)
+                        .addGap(GAP_RELATED)
+                        .addComponent(offHeapComponent))
+                    .addGroup(dataLayout.createSequentialGroup()
+                        .addComponent(persistentLabel)
+                        .addGap(GAP_RELATED)
+                        .addComponent(persistentComponent))
                     .addGroup(dataLayout.createSequentialGroup()
                         .addComponent(imageLabel)
                         .addGap(GAP_RELATED)
@@ -1884,7 +1953,15 @@ public class McIdasPreferenceManager extends IdvPreferenceManager implements Lis
                     .addGroup(dataLayout.createSequentialGroup()
                         .addComponent(gridLabel)
                         .addGap(GAP_RELATED)
-                        .addComponent(gridFieldComponent)))
+                        .addComponent(gridFieldComponent))
+                    .addGroup(dataLayout.createSequentialGroup()
+                        .addComponent(handlesLabel)
+                        .addGap(GAP_RELATED)
+                        .addComponent(handlesFieldComponent))
+                    .addGroup(dataLayout.createSequentialGroup()
+                        .addComponent(chunkLabel)
+                        .addGap(GAP_RELATED)
+                        .addComponent(chunkFieldComponent)))
                 .addContainerGap(DEFAULT_SIZE, Short.MAX_VALUE))
         );
         dataLayout.setVerticalGroup(
@@ -1908,6 +1985,18 @@ public class McIdasPreferenceManager extends IdvPreferenceManager implements Lis
                     .addComponent(cacheEmptyLabel)
                     .addComponent(cacheTextFieldComponent))
                 .addPreferredGap(RELATED)
+                .addGroup(dataLayout.createParallelGroup(BASELINE)
+                    .addComponent(evictionLabel)
+                    .addComponent(evictionComponent))
+                .addPreferredGap(RELATED)
+                .addGroup(dataLayout.createParallelGroup(BASELINE)
+                    .addComponent(offHeapLabel)
+                    .addComponent(offHeapComponent))
+                .addPreferredGap(RELATED)
+                .addGroup(dataLayout.createParallelGroup(BASELINE)
+                    .addComponent(persistentLabel)
+                    .addComponent(persistentComponent))
+                .addPreferredGap(RELATED)
                 .addGroup(dataLayout.createParallelGroup(BASELINE)
                     .addComponent(imageLabel)
                     .addComponent(imageFieldComponent))
@@ -1915,6 +2004,14 @@ public class McIdasPreferenceManager extends IdvPreferenceManager implements Lis
                 .addGroup(dataLayout.createParallelGroup(BASELINE)
                     .addComponent(gridLabel)
                     .addComponent(gridFieldComponent))
+                .addPreferredGap(RELATED)
+                .addGroup(dataLayout.createParallelGroup(BASELINE)
+                    .addComponent(handlesLabel)
+                    .addComponent(handlesFieldComponent))
+                .addPreferredGap(RELATED)
+                .addGroup(dataLayout.createParallelGroup(BASELINE)
+                    .addComponent(chunkLabel)
+                    .addComponent(chunkFieldComponent))
                 .addContainerGap(DEFAULT_SIZE, Short.MAX_VALUE))
         ); 
         
@@ -95,6 +95,7 @@ import visad.meteorology.SingleBandedImage;
 import ucar.nc2.iosp.mcidas.McIDASAreaProjection;
 import ucar.unidata.data.BadDataException;
 import ucar.unidata.data.CompositeDataChoice;
+import ucar.unidata.data.DataCacheKey;
 import ucar.unidata.data.DataCategory;
 import ucar.unidata.data.DataChoice;
 import ucar.unidata.data.DataSelection;
@@ -1666,6 +1667,21 @@ public class AddeImageParameterDataSource extends AddeImageDataSource {
         return new File(descriptor.getSource()).exists();
     }
 
+    /**
+     * Create the key used when caching. See {@link DataCacheKey}.
+     *
+     * @param dataChoice Data choice.
+     * @param dataSelection Data selection.
+     * @param requestProperties Properties on request.
+     *
+     * @return Key that the image (sequence) is cached on.
+     */
+    @Override protected Object createCacheKey(DataChoice dataChoice,
+                                              DataSelection dataSelection,
+                                              Hashtable requestProperties) {
+        return DataCacheKey.create(dataChoice, dataSelection, requestProperties);
+    }
+
     /**
      * Create the actual data represented by the given
      * {@link ucar.unidata.data.DataChoice}.
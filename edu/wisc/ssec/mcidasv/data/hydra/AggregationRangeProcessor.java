@@ -29,15 +29,24 @@
 package edu.wisc.ssec.mcidasv.data.hydra;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+/**
+ * Range processing for a {@link GranuleAggregation}. Each granule keeps its
+ * own {@link RangeProcessor}, since scale, offset and fill values can change
+ * from one granule to the next.
+ *
+ * <p>The granule, and for packed data the scale index, are passed with
+ * every per-granule call, so different granules can be processed
+ * concurrently. Only the overloads that take a subset, which have no
+ * granule to go on, use the last granule of the latest read.</p>
+ */
 public class AggregationRangeProcessor extends RangeProcessor {
 
-	List<RangeProcessor> rangeProcessors = new ArrayList<>();
+	final List<RangeProcessor> rangeProcessors = new ArrayList<>();
 
-	int rngIdx = 0;
+	volatile int rngIdx = 0;
 
 	public AggregationRangeProcessor(GranuleAggregation aggrReader,
 			Map<String, Object> metadata) throws Exception {
@@ -69,27 +78,127 @@ public class AggregationRangeProcessor extends RangeProcessor {
 				(String) metadata.get(SwathAdapter.array_name), this);
 	}
 
-	public synchronized void setWhichRangeProcessor(int index) {
+	public RangeProcessor getRangeProcessor(int index) {
+		return rangeProcessors.get(index);
+	}
+
+	/**
+	 * Set the granule used by the overloads that take a subset.
+	 * {@link GranuleAggregation} sets the last granule of each read.
+	 *
+	 * @param index Index of the granule.
+	 */
+	public void setWhichRangeProcessor(int index) {
 		rngIdx = index;
 	}
 
-	public synchronized void setMultiScaleIndex(int idx) {
-		rangeProcessors.get(rngIdx).setMultiScaleIndex(idx);
+	/**
+	 * Scale, offset and fill-mask {@code byte} values read from one granule.
+	 *
+	 * @param granule Index of the granule the values were read from.
+	 * @param values Raw values.
+	 * @param scaleIndex Index of the scale and offset to use.
+	 *
+	 * @return Processed values.
+	 */
+	public float[] processRange(int granule, byte[] values, int scaleIndex) {
+		return rangeProcessors.get(granule).processRange(values, scaleIndex);
+	}
+
+	/**
+	 * Scale, offset and fill-mask {@code short} values read from one granule.
+	 *
+	 * @param granule Index of the granule the values were read from.
+	 * @param values Raw values.
+	 * @param scaleIndex Index of the scale and offset to use.
+	 *
+	 * @return Processed values.
+	 */
+	public float[] processRange(int granule, short[] values, int scaleIndex) {
+		return rangeProcessors.get(granule).processRange(values, scaleIndex);
+	}
+
+	/**
+	 * Same as {@link #processRange(int, byte[], int)}, written to {@code dest}.
+	 *
+	 * @param granule Index of the granule the values were read from.
+	 * @param values Raw values.
+	 * @param scaleIndex Index of the scale and offset to use.
+	 * @param dest Receives {@code values.length} processed values.
+	 * @param destPos Where the first processed value goes in {@code dest}.
+	 */
+	public void processRange(int granule, byte[] values, int scaleIndex, float[] dest, int destPos) {
+		rangeProcessors.get(granule).processRange(values, scaleIndex, dest, destPos);
 	}
 
-	public synchronized float[] processRange(byte[] values, Map<String, double[]> subset) {
-		return rangeProcessors.get(rngIdx).processRange(values, subset);
+	/**
+	 * Same as {@link #processRange(int, short[], int)}, written to {@code dest}.
+	 *
+	 * @param granule Index of the granule the values were read from.
+	 * @param values Raw values.
+	 * @param scaleIndex Index of the scale and offset to use.
+	 * @param dest Receives {@code values.length} processed values.
+	 * @param destPos Where the first processed value goes in {@code dest}.
+	 */
+	public void processRange(int granule, short[] values, int scaleIndex, float[] dest, int destPos) {
+		rangeProcessors.get(granule).processRange(values, scaleIndex, dest, destPos);
 	}
 
-	public synchronized float[] processRange(short[] values, Map<String, double[]> subset) {
-		return rangeProcessors.get(rngIdx).processRange(values, subset);
+	/**
+	 * Fill-mask and range check {@code float} values read from one granule.
+	 *
+	 * @param granule Index of the granule the values were read from.
+	 * @param values Values as read.
+	 *
+	 * @return Processed values.
+	 */
+	public float[] processRange(int granule, float[] values) {
+		return rangeProcessors.get(granule).processRange(values, null);
 	}
 
-	public synchronized float[] processRange(float[] values, Map<String, double[]> subset) {
-		return rangeProcessors.get(rngIdx).processRange(values, subset);
+	/**
+	 * Fill-mask and range check {@code double} values read from one granule.
+	 *
+	 * @param granule Index of the granule the values were read from.
+	 * @param values Values as read.
+	 *
+	 * @return Processed values.
+	 */
+	public double[] processRange(int granule, double[] values) {
+		return rangeProcessors.get(granule).processRange(values, null);
 	}
 
-	public synchronized double[] processRange(double[] values, Map<String, double[]> subset) {
-		return rangeProcessors.get(rngIdx).processRange(values, subset);
+	/*
+	 * The overloads below have no granule to go on and use the last one
+	 * read, as set by setWhichRangeProcessor. They can change the scale
+	 * index of that granule's processor, so they hold its lock.
+	 */
+
+	public float[] processRange(byte[] values, Map<String, double[]> subset) {
+		RangeProcessor rngProcessor = rangeProcessors.get(rngIdx);
+		synchronized (rngProcessor) {
+			return rngProcessor.processRange(values, subset);
+		}
+	}
+
+	public float[] processRange(short[] values, Map<String, double[]> subset) {
+		RangeProcessor rngProcessor = rangeProcessors.get(rngIdx);
+		synchronized (rngProcessor) {
+			return rngProcessor.processRange(values, subset);
+		}
+	}
+
+	public float[] processRange(float[] values, Map<String, double[]> subset) {
+		RangeProcessor rngProcessor = rangeProcessors.get(rngIdx);
+		synchronized (rngProcessor) {
+			return rngProcessor.processRange(values, subset);
+		}
+	}
+
+	public double[] processRange(double[] values, Map<String, double[]> subset) {
+		RangeProcessor rngProcessor = rangeProcessors.get(rngIdx);
+		synchronized (rngProcessor) {
+			return rngProcessor.processRange(values, subset);
+		}
 	}
 }
@@ -0,0 +1,115 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * A small pool of primitive scratch arrays, matched on element type and
+ * exact length. Repeated reads of the same subset (animation steps, probe
+ * reads) can take back the array used by the previous read instead of
+ * allocating a new one. Pooled arrays are held softly, so an idle pool gives
+ * way under memory pressure.
+ */
+public class BufferPool {
+
+   private final int maxArrays;
+
+   private final Map<Class, Deque<SoftReference<Object>>> free = new HashMap<>();
+
+   /**
+    * @param maxArrays Most arrays kept for each element type.
+    */
+   public BufferPool(int maxArrays) {
+     this.maxArrays = maxArrays;
+   }
+
+   /**
+    * Take an array from the pool, or allocate one if none fits. The contents
+    * of a pooled array are whatever its last user left in it.
+    *
+    * @param type Primitive element type, e.g. {@code Short.TYPE}.
+    * @param length Exact length wanted.
+    *
+    * @return Array of {@code type} with {@code length} elements.
+    */
+   public Object acquire(Class type, int length) {
+     synchronized (free) {
+       Deque<SoftReference<Object>> arrays = free.get(type);
+       if (arrays != null) {
+         Iterator<SoftReference<Object>> iter = arrays.iterator();
+         while (iter.hasNext()) {
+           Object array = iter.next().get();
+           if (array == null) {
+             iter.remove();
+           } else if (Array.getLength(array) == length) {
+             iter.remove();
+             return array;
+           }
+         }
+       }
+     }
+     return Array.newInstance(type, length);
+   }
+
+   /**
+    * Hand an array back to the pool. The caller must not touch it afterward.
+    *
+    * @param array Array previously returned by {@link #acquire}. Ignored
+    *              if {@code null}.
+    */
+   public void release(Object array) {
+     if (array == null) {
+       return;
+     }
+     Class type = array.getClass().getComponentType();
+     synchronized (free) {
+       Deque<SoftReference<Object>> arrays = free.computeIfAbsent(type, k -> new ArrayDeque<>());
+       arrays.addFirst(new SoftReference<>(array));
+       while (arrays.size() > maxArrays) {
+         arrays.removeLast();
+       }
+     }
+   }
+
+   /**
+    * Drop every pooled array.
+    */
+   public void clear() {
+     synchronized (free) {
+       free.clear();
+     }
+   }
+}
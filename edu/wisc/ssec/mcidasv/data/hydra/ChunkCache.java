@@ -0,0 +1,278 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ucar.ma2.Array;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.nc2.Attribute;
+import ucar.nc2.Variable;
+
+/**
+ * Decompressed chunks of chunked (HDF5 / NetCDF-4) variables, shared by
+ * every HYDRA file and evicted least recently used first once the cache
+ * holds more than {@link #getMaxBytes()}.
+ *
+ * <p>A read is rounded out to whole chunks. Each chunk is decompressed
+ * once, kept, and the requested start/count/stride is then copied out of
+ * the cached chunks. Pan, zoom and restride of the same area therefore
+ * don't inflate the same chunks again.</p>
+ */
+final class ChunkCache {
+
+   private static final Logger logger = LoggerFactory.getLogger(ChunkCache.class);
+
+   /** Default for {@link #setMaxBytes(long)}, in megabytes. */
+   static final int DEFAULT_SIZE_MB = 64;
+
+   /** Reads touching more chunks than this go straight to the file. */
+   private static final int MAX_CHUNKS_PER_READ = 4096;
+
+   /** Attribute netCDF-Java puts on chunked variables. */
+   private static final String CHUNK_SIZES = "_ChunkSizes";
+
+   private static long maxBytes = DEFAULT_SIZE_MB * 1024L * 1024L;
+
+   private static long bytes = 0;
+
+   /** Access ordered, so iteration starts at the least recently used. */
+   private static final Map<Key, Array> chunks = new LinkedHashMap<>(64, 0.75f, true);
+
+   private ChunkCache() {
+   }
+
+   static synchronized void setMaxBytes(long max) {
+     maxBytes = Math.max(0, max);
+     trim();
+   }
+
+   static synchronized long getMaxBytes() {
+     return maxBytes;
+   }
+
+   /**
+    * Drop every chunk read through {@code owner}, e.g. when it is closed.
+    *
+    * @param owner File the chunks were read for.
+    */
+   static synchronized void invalidate(Object owner) {
+     Iterator<Map.Entry<Key, Array>> iter = chunks.entrySet().iterator();
+     while (iter.hasNext()) {
+       Map.Entry<Key, Array> entry = iter.next();
+       if (entry.getKey().owner == owner) {
+         bytes -= entry.getValue().getSizeBytes();
+         iter.remove();
+       }
+     }
+   }
+
+   /**
+    * Read a strided section of {@code var} through the cache.
+    *
+    * @param owner File {@code var} belongs to. Chunks are shared by every
+    *              read made with the same owner and name.
+    * @param var Variable to read.
+    * @param name Name the chunks are cached under.
+    * @param start First index along each dimension.
+    * @param count Number of values along each dimension.
+    * @param stride Stride along each dimension.
+    *
+    * @return Section with shape {@code count}, or {@code null} if
+    *         {@code var} is not chunked or the read is not worth caching;
+    *         the caller should then read the file directly.
+    *
+    * @throws IOException if a chunk could not be read.
+    * @throws InvalidRangeException if the section is outside {@code var}.
+    */
+   static Array read(Object owner, Variable var, String name, int[] start, int[] count, int[] stride)
+       throws IOException, InvalidRangeException {
+     int[] chunkShape = getChunkShape(var);
+     if (chunkShape == null) {
+       return null;
+     }
+
+     int rank = chunkShape.length;
+     int[] varShape = var.getShape();
+     int[] first = new int[rank];
+     int[] last = new int[rank];
+     long numChunks = 1;
+     long chunkBytes = var.getElementSize();
+     for (int d=0; d<rank; d++) {
+       first[d] = start[d] / chunkShape[d];
+       last[d] = (start[d] + (count[d] - 1) * stride[d]) / chunkShape[d];
+       numChunks *= (last[d] - first[d] + 1);
+       chunkBytes *= chunkShape[d];
+     }
+     // chunks could be evicted by this very read, so don't bother
+     if ((numChunks > MAX_CHUNKS_PER_READ) || (numChunks * chunkBytes > getMaxBytes())) {
+       return null;
+     }
+
+     Array result = Array.factory(var.getDataType(), count);
+     int[] chunkIdx = first.clone();
+     int[] origin = new int[rank];
+     int[] shape = new int[rank];
+     int[] srcOrigin = new int[rank];
+     int[] dstOrigin = new int[rank];
+     int[] dstShape = new int[rank];
+     int[] ones = new int[rank];
+     Arrays.fill(ones, 1);
+     while (true) {
+       boolean overlaps = true;
+       for (int d=0; d<rank; d++) {
+         origin[d] = chunkIdx[d] * chunkShape[d];
+         shape[d] = Math.min(chunkShape[d], varShape[d] - origin[d]);
+         // requested indices k with start + k*stride inside this chunk
+         int lo = Math.max(0, (origin[d] - start[d] + stride[d] - 1) / stride[d]);
+         int hi = Math.min(count[d] - 1, (origin[d] + shape[d] - 1 - start[d]) / stride[d]);
+         if (lo > hi) {
+           overlaps = false;
+           break;
+         }
+         srcOrigin[d] = start[d] + lo * stride[d] - origin[d];
+         dstOrigin[d] = lo;
+         dstShape[d] = hi - lo + 1;
+       }
+       if (overlaps) {
+         Array chunk = getChunk(owner, var, name, chunkIdx, origin, shape);
+         MAMath.copy(result.sectionNoReduce(dstOrigin, dstShape, ones),
+                     chunk.sectionNoReduce(srcOrigin, dstShape, stride));
+       }
+
+       // next chunk, last dimension fastest
+       int d = rank - 1;
+       while ((d >= 0) && (chunkIdx[d] == last[d])) {
+         chunkIdx[d] = first[d];
+         d--;
+       }
+       if (d < 0) {
+         break;
+       }
+       chunkIdx[d]++;
+     }
+     return result;
+   }
+
+   /**
+    * @param var Variable to check.
+    *
+    * @return Chunk shape of {@code var}, or {@code null} if it is not a
+    *         chunked numeric variable.
+    */
+   static int[] getChunkShape(Variable var) {
+     if ((var.getRank() == 0) || !var.getDataType().isNumeric()) {
+       return null;
+     }
+     Attribute attr = var.findAttribute(CHUNK_SIZES);
+     if ((attr == null) || (attr.getLength() != var.getRank())) {
+       return null;
+     }
+     int[] shape = new int[attr.getLength()];
+     for (int i=0; i<shape.length; i++) {
+       Number n = attr.getNumericValue(i);
+       if ((n == null) || (n.intValue() <= 0)) {
+         return null;
+       }
+       shape[i] = n.intValue();
+     }
+     return shape;
+   }
+
+   private static Array getChunk(Object owner, Variable var, String name, int[] chunkIdx,
+       int[] origin, int[] shape) throws IOException, InvalidRangeException {
+     Key key = new Key(owner, name, chunkIdx.clone());
+     Array chunk;
+     synchronized (ChunkCache.class) {
+       chunk = chunks.get(key);
+     }
+     if (chunk != null) {
+       return chunk;
+     }
+
+     // read outside the lock; two reads racing on one chunk both decompress it
+     chunk = var.read(origin, shape.clone());
+     synchronized (ChunkCache.class) {
+       Array old = chunks.put(key, chunk);
+       if (old != null) {
+         bytes -= old.getSizeBytes();
+       }
+       bytes += chunk.getSizeBytes();
+       trim();
+     }
+     logger.trace("cached chunk {} of {}", Arrays.toString(chunkIdx), name);
+     return chunk;
+   }
+
+   /* caller holds the class lock */
+   private static void trim() {
+     Iterator<Array> iter = chunks.values().iterator();
+     while ((bytes > maxBytes) && iter.hasNext()) {
+       bytes -= iter.next().getSizeBytes();
+       iter.remove();
+     }
+   }
+
+   private static final class Key {
+     final Object owner;
+     final String name;
+     final int[] index;
+     final int hash;
+
+     Key(Object owner, String name, int[] index) {
+       this.owner = owner;
+       this.name = name;
+       this.index = index;
+       this.hash = 31 * (31 * System.identityHashCode(owner) + name.hashCode()) + Arrays.hashCode(index);
+     }
+
+     @Override public int hashCode() {
+       return hash;
+     }
+
+     @Override public boolean equals(Object obj) {
+       if (this == obj) {
+         return true;
+       }
+       if ( !(obj instanceof Key)) {
+         return false;
+       }
+       Key other = (Key) obj;
+       return (owner == other.owner) && name.equals(other.name) && Arrays.equals(index, other.index);
+     }
+   }
+}
@@ -55,11 +55,10 @@ public class CrIS_SDR_LonLatNavigation extends SwathNavigation  {
     new_geo_count[2] = 9;
     new_geo_stride[2] = 1;
 
-    float[] lons = reader.getFloatArray(lon_array_name, new_geo_start, new_geo_count, new_geo_stride);
-    float[] lats = reader.getFloatArray(lat_array_name, new_geo_start, new_geo_count, new_geo_stride);
+    float[][] lonlat = readLonLat(new_geo_start, new_geo_count, new_geo_stride);
 
     gset = new Gridded2DSet(RealTupleType.SpatialEarth2DTuple,
-                   new float[][] {lons, lats},
+                   lonlat,
                         geo_count[idx_order[0]], geo_count[idx_order[1]],
                             null, null, null, false, false);
     return gset;
@@ -0,0 +1,325 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Swath geolocation shared by every {@link SwathNavigation} on the same
+ * reader and longitude/latitude variables.
+ *
+ * <p>The first request reads the full resolution longitudes and latitudes
+ * once. Every later subset or stride is cut out of that copy in memory, so
+ * other bands, RGB components and zooms of the same swath don't read the
+ * geolocation again.</p>
+ */
+final class GeolocationStore {
+
+   private static final Logger logger = LoggerFactory.getLogger(GeolocationStore.class);
+
+   /** Default for {@link #setMaxBytes(long)}, in megabytes. */
+   static final int DEFAULT_SIZE_MB = 256;
+
+   /** Reads full resolution or subset geolocation from the file. */
+   interface Loader {
+     /** @return longitudes and latitudes, in that order. */
+     float[][] load(int[] start, int[] count, int[] stride) throws Exception;
+   }
+
+   private static long maxBytes = DEFAULT_SIZE_MB * 1024L * 1024L;
+
+   private static boolean offHeap = false;
+
+   private static long bytes = 0;
+
+   /** Full resolution geolocation, least recently used first. */
+   private static final Map<Key, Grid> grids = new LinkedHashMap<>(16, 0.75f, true);
+
+   /** Geolocation whose full resolution read didn't match its dimensions. */
+   private static final Set<Key> unstorable = new HashSet<>();
+
+   private GeolocationStore() {
+   }
+
+   static synchronized void setMaxBytes(long max) {
+     maxBytes = Math.max(0, max);
+     trim();
+   }
+
+   /**
+    * @param direct Whether full resolution geolocation read from now on
+    *               is kept in direct buffers, outside the Java heap.
+    */
+   static synchronized void setOffHeap(boolean direct) {
+     offHeap = direct;
+   }
+
+   /**
+    * Drop everything read through {@code reader}, e.g. when it is closed.
+    *
+    * @param reader Reader the geolocation was read from.
+    */
+   static synchronized void invalidate(MultiDimensionReader reader) {
+     Iterator<Map.Entry<Key, Grid>> iter = grids.entrySet().iterator();
+     while (iter.hasNext()) {
+       Map.Entry<Key, Grid> entry = iter.next();
+       if (entry.getKey().reader == reader) {
+         bytes -= entry.getValue().bytes;
+         iter.remove();
+       }
+     }
+     unstorable.removeIf(key -> key.reader == reader);
+   }
+
+   /**
+    * Longitudes and latitudes of a subset of the geolocation arrays.
+    *
+    * @param reader Reader holding the geolocation.
+    * @param lonName Longitude variable.
+    * @param latName Latitude variable.
+    * @param processing Anything else that changes the values read, such as
+    *                   scale/offset attribute names. May be empty.
+    * @param start Start along each geolocation dimension.
+    * @param count Count along each geolocation dimension.
+    * @param stride Stride along each geolocation dimension.
+    * @param loader Reads the geolocation when it is not stored yet.
+    *
+    * @return Longitudes and latitudes, in that order. The arrays belong to
+    *         the caller.
+    *
+    * @throws Exception if {@code loader} fails.
+    */
+   static float[][] get(MultiDimensionReader reader, String lonName, String latName, String processing,
+       int[] start, int[] count, int[] stride, Loader loader) throws Exception {
+     Grid grid = getGrid(reader, lonName, latName, processing, loader);
+     if ((grid != null) && grid.contains(start, count, stride)) {
+       return new float[][] {
+         grid.extract(grid.lons, start, count, stride),
+         grid.extract(grid.lats, start, count, stride)
+       };
+     }
+     return loader.load(start, count, stride);
+   }
+
+   /* full resolution geolocation, or null if it is too big to keep or doesn't read back whole */
+   private static Grid getGrid(MultiDimensionReader reader, String lonName, String latName, String processing,
+       Loader loader) throws Exception {
+     int[] dims = reader.getDimensionLengths(lonName);
+     if (dims == null) {
+       return null;
+     }
+     long size = 1;
+     for (int dim : dims) {
+       size *= dim;
+     }
+     long gridBytes = 2 * size * Float.BYTES;
+     boolean direct;
+     Key key = new Key(reader, lonName, latName, processing);
+     synchronized (GeolocationStore.class) {
+       Grid grid = grids.get(key);
+       if (grid != null) {
+         return grid;
+       }
+       if ((gridBytes > maxBytes) || (size > Integer.MAX_VALUE) || unstorable.contains(key)) {
+         return null;
+       }
+       direct = offHeap;
+     }
+
+     // read outside the lock; two navigations racing here both read it
+     int[] start = new int[dims.length];
+     int[] stride = new int[dims.length];
+     Arrays.fill(stride, 1);
+     float[][] lonlat = loader.load(start, dims.clone(), stride);
+     if ((lonlat[0].length != size) || (lonlat[1].length != size)) {
+       logger.debug("{} has {} values, expected {}; not storing it", lonName, lonlat[0].length, size);
+       synchronized (GeolocationStore.class) {
+         unstorable.add(key);
+       }
+       return null;
+     }
+     Grid grid = new Grid(dims.clone(), wrap(lonlat[0], direct), wrap(lonlat[1], direct), gridBytes);
+
+     synchronized (GeolocationStore.class) {
+       Grid old = grids.put(key, grid);
+       if (old != null) {
+         bytes -= old.bytes;
+       }
+       bytes += grid.bytes;
+       trim();
+     }
+     return grid;
+   }
+
+   private static FloatBuffer wrap(float[] values, boolean direct) {
+     if (direct) {
+       try {
+         FloatBuffer buf = ByteBuffer.allocateDirect(values.length * Float.BYTES)
+             .order(ByteOrder.nativeOrder()).asFloatBuffer();
+         buf.put(values);
+         buf.clear();
+         return buf;
+       } catch (OutOfMemoryError e) {
+         logger.warn("Out of direct memory, keeping geolocation on the heap");
+       }
+     }
+     return FloatBuffer.wrap(values);
+   }
+
+   /* caller holds the class lock */
+   private static void trim() {
+     Iterator<Grid> iter = grids.values().iterator();
+     while ((bytes > maxBytes) && iter.hasNext()) {
+       bytes -= iter.next().bytes;
+       iter.remove();
+     }
+   }
+
+   /** Full resolution longitudes and latitudes, row major. */
+   private static final class Grid {
+     final int[] dims;
+     final FloatBuffer lons;
+     final FloatBuffer lats;
+     final long bytes;
+
+     Grid(int[] dims, FloatBuffer lons, FloatBuffer lats, long bytes) {
+       this.dims = dims;
+       this.lons = lons;
+       this.lats = lats;
+       this.bytes = bytes;
+     }
+
+     boolean contains(int[] start, int[] count, int[] stride) {
+       if ((start.length != dims.length) || (count.length != dims.length) || (stride.length != dims.length)) {
+         return false;
+       }
+       for (int d=0; d<dims.length; d++) {
+         if ((start[d] < 0) || (count[d] < 1) || (stride[d] < 1) ||
+             (start[d] + (long) (count[d] - 1) * stride[d] >= dims[d])) {
+           return false;
+         }
+       }
+       return true;
+     }
+
+     float[] extract(FloatBuffer src, int[] start, int[] count, int[] stride) {
+       int rank = dims.length;
+       int[] step = new int[rank];
+       step[rank - 1] = 1;
+       for (int d=rank-2; d>=0; d--) {
+         step[d] = step[d + 1] * dims[d + 1];
+       }
+
+       int n = 1;
+       for (int c : count) {
+         n *= c;
+       }
+       float[] out = new float[n];
+
+       int rowCount = count[rank - 1];
+       int rowStride = stride[rank - 1];
+       FloatBuffer row = src.duplicate();
+       int[] idx = new int[rank];
+       int pos = 0;
+       while (true) {
+         int base = start[rank - 1];
+         for (int d=0; d<rank-1; d++) {
+           base += (start[d] + idx[d] * stride[d]) * step[d];
+         }
+         if (rowStride == 1) {
+           row.position(base);
+           row.get(out, pos, rowCount);
+           pos += rowCount;
+         } else {
+           for (int k=0; k<rowCount; k++) {
+             out[pos++] = src.get(base + k * rowStride);
+           }
+         }
+
+         // next row, last outer dimension fastest
+         int d = rank - 2;
+         while ((d >= 0) && (++idx[d] == count[d])) {
+           idx[d] = 0;
+           d--;
+         }
+         if (d < 0) {
+           break;
+         }
+       }
+       return out;
+     }
+   }
+
+   private static final class Key {
+     final MultiDimensionReader reader;
+     final String lonName;
+     final String latName;
+     final String processing;
+     final int hash;
+
+     Key(MultiDimensionReader reader, String lonName, String latName, String processing) {
+       this.reader = reader;
+       this.lonName = lonName;
+       this.latName = latName;
+       this.processing = processing;
+       int h = System.identityHashCode(reader);
+       h = 31 * h + lonName.hashCode();
+       h = 31 * h + latName.hashCode();
+       h = 31 * h + processing.hashCode();
+       this.hash = h;
+     }
+
+     @Override public int hashCode() {
+       return hash;
+     }
+
+     @Override public boolean equals(Object obj) {
+       if (this == obj) {
+         return true;
+       }
+       if ( !(obj instanceof Key)) {
+         return false;
+       }
+       Key other = (Key) obj;
+       return (reader == other.reader) && lonName.equals(other.lonName) &&
+              latName.equals(other.latName) && processing.equals(other.processing);
+     }
+   }
+}
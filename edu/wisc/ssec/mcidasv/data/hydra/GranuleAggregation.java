@@ -28,12 +28,18 @@
 
 package edu.wisc.ssec.mcidasv.data.hydra;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,6 +72,17 @@ public class GranuleAggregation implements MultiDimensionReader {
  
 	private static final Logger logger =
 		LoggerFactory.getLogger(GranuleAggregation.class);
+
+	// upper bound on granules read at once, shared by every aggregation
+	private static final int READ_THREADS =
+		Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	private static final ExecutorService granuleReaders =
+		Executors.newFixedThreadPool(READ_THREADS, r -> {
+			Thread t = new Thread(r, "GranuleAggregation reader");
+			t.setDaemon(true);
+			return t;
+		});
 	
 	// this structure holds the NcML readers that get passed in 
    List<NetcdfFile> nclist = new ArrayList<>();
@@ -103,7 +120,6 @@ public class GranuleAggregation implements MultiDimensionReader {
    private String inTrackGeoDimensionName = null;
    private String crossTrackDimensionName = null;
    private Set<String> products;
-   private String origName = "";
    // assume we are working with VIIRS, will toggle if not
    private boolean isVIIRS = true;
 
@@ -159,7 +175,6 @@ public class GranuleAggregation implements MultiDimensionReader {
 	   // we pull data from the "mapped" variable name, a packed byte
 	   if (qfMap != null) {
 		   if (qfMap.containsKey(array_name)) {
-			   origName = array_name;
 			   QualityFlag qf = qfMap.get(array_name);
 			   String mappedName = qf.getPackedName();
 			   logger.debug("Key: " + array_name + " mapped to: " + mappedName);
@@ -175,7 +190,6 @@ public class GranuleAggregation implements MultiDimensionReader {
 
 	   if (lutMap != null) {
 		   if (lutMap.containsKey(array_name)) {
-			   origName = array_name;
 			   String mappedName = array_name.substring(0, array_name.length() - 3);
 			   logger.debug("Key: " + array_name + " mapped to: " + mappedName);
 			   return mappedName;
@@ -196,18 +210,58 @@ public class GranuleAggregation implements MultiDimensionReader {
      return (double[]) readArray(array_name, start, count, stride);
    }
 
+   /* short and byte reads hand back the raw values; see processNativeArray */
    public short[] getShortArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
-     return (short[]) readArray(array_name, start, count, stride);
+     return (short[]) readArray(array_name, start, count, stride, false);
    }
 
    public byte[] getByteArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
-     return (byte[]) readArray(array_name, start, count, stride);
+     return (byte[]) readArray(array_name, start, count, stride, false);
    }
 
    public Object getArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
      return readArray(array_name, start, count, stride);
    }
 
+   public int getFloatArray(String array_name, int[] start, int[] count, int[] stride, float[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getIntArray(String array_name, int[] start, int[] count, int[] stride, int[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getDoubleArray(String array_name, int[] start, int[] count, int[] stride, double[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getShortArray(String array_name, int[] start, int[] count, int[] stride, short[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getByteArray(String array_name, int[] start, int[] count, int[] stride, byte[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   /* same processed floats as getArray, or the raw values when there is no range processor */
+   public int getArray(String array_name, int[] start, int[] count, int[] stride, ByteBuffer dest) throws Exception {
+     int length = readArray(array_name, start, count, stride, dest, 0);
+     dest.position(dest.position() + length * PrimitiveArrays.sizeOf(getBufferType(array_name)));
+     return length;
+   }
+
+   /* element type readInto writes to a buffer: short and byte values are only widened by a range processor */
+   private Class getBufferType(String array_name) {
+	   Class arrayType = getArrayType(array_name);
+	   array_name = mapNameIfQualityFlag(array_name);
+	   array_name = mapNameIfLUTVar(array_name);
+	   if ((varToRangeProcessor.get(array_name) != null) &&
+		   ((arrayType == Short.TYPE) || (arrayType == Byte.TYPE))) {
+		   return Float.TYPE;
+	   }
+	   return arrayType;
+   }
+
    public HDFArray getGlobalAttribute(String attr_name) throws Exception {
      throw new Exception("GranuleAggregation.getGlobalAttributes: Unimplemented");
    }
@@ -248,6 +302,10 @@ public class GranuleAggregation implements MultiDimensionReader {
 	   for (NetcdfFile n : nclist) {
 		   n.close();
 	   }
+	   for (NetCDFFile n : ncdfal) {
+		   ChunkCache.invalidate(n);
+	   }
+	   GeolocationStore.invalidate(this);
    }
 
    private void init(List<NetCDFFile> ncdfal) throws Exception {
@@ -589,9 +647,11 @@ public class GranuleAggregation implements MultiDimensionReader {
 	   return index;
    }
    
-   private synchronized Object readArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
+   /* work out which granules a read touches, and where each one lands in the aggregated array */
+   private ReadPlan planRead(String array_name, int[] start, int[] count, int[] stride) throws Exception {
 	   
-	   String mapName = array_name;
+	   // the requested name picks the quality flag or LUT applied to the mapped variable
+	   String origName = array_name;
 	   array_name = mapNameIfQualityFlag(array_name);
 	   array_name = mapNameIfLUTVar(array_name);
 	   // how many dimensions are we dealing with
@@ -740,87 +800,35 @@ public class GranuleAggregation implements MultiDimensionReader {
 		   }
 	   }
 	   
+	   // work out up front where each granule lands in the aggregated array,
+	   // so the granules can be read and processed independently
+	   Variable[] granVars = new Variable[granuleSpan];
+	   List<List<Range>> granRanges = new ArrayList<>(granuleSpan);
+	   int[] granOffsets = new int[granuleSpan];
 	   int totalLength = 0;
-	   int rangeListCount = 0;
-	   List<Array> arrayList = new ArrayList<>();
-	   for (int granuleIdx = 0; granuleIdx < granuleCount; granuleIdx++) {
-		   if ((granuleIdx >= loGranuleId) && (granuleIdx <= hiGranuleId)) {
-			   Variable var = varMapList.get(loGranuleId + (granuleIdx-loGranuleId)).get(array_name);
-
-			   if (var instanceof Structure) {
-				   // what to do here?
-			   } else {
-				   List<Range> rangeList = new ArrayList<>();
-				   for (int dimensionIdx = 0; dimensionIdx < dimensionCount; dimensionIdx++) {
-					   logger.debug("Creating new Range: " + startSet[rangeListCount][dimensionIdx] +
-							   ", " + (startSet[rangeListCount][dimensionIdx] + countSet[rangeListCount][dimensionIdx] - 1) + ", " + strideSet[rangeListCount][dimensionIdx]);
-					   Range range = new Range(
-							   startSet[rangeListCount][dimensionIdx], 
-							   startSet[rangeListCount][dimensionIdx] + countSet[rangeListCount][dimensionIdx] - 1,
-							   strideSet[rangeListCount][dimensionIdx]
-					   );
-					   rangeList.add(dimensionIdx, range);
-				   }
-				   rangeListCount++;
-				   
-				   // If there were chunks of fill data to remove...
-				   List<Range> al = granCutRanges.get(new Integer(granuleIdx));
-				   if (! al.isEmpty()) {
-					   List<Variable> varChunks = new ArrayList<>();
-					   for (int rangeCount = 0; rangeCount < al.size(); rangeCount+=2) {
-						   List<Range> rl = new ArrayList<>();
-						   rl.add(al.get(rangeCount));
-						   rl.add(al.get(rangeCount + 1));
-						   varChunks.add(var.section(rl));
-					   }
-
-					   int [] newShape = var.getShape();
-					   int cutScans = granCutScans.get(granuleIdx);
-					   newShape[0] = newShape[0] - cutScans;
-					   logger.trace("New Shape: " + newShape[0] + ", " + newShape[1]);
-					   Array single = Array.factory(var.getDataType(), newShape);
-
-					   // now read variable chunk data into single contiguous array
-					   int idx = 0;
-					   for (Variable v : varChunks) {
-						   Array data = v.read();
-						   int [] tmpShape = v.getShape();
-						   for (int tIdx = 0; tIdx < tmpShape.length; tIdx++) {
-							   logger.trace("Shape[" + tIdx + "]: " + tmpShape[tIdx]);
-						   }
-						   IndexIterator ii = data.getIndexIterator();
-						   while (ii.hasNext()) {
-							   single.setFloat(idx, ii.getFloatNext());
-							   idx++;
-						   }
-					   }
-
-					   // finally, apply subset ranges
-					   logger.debug("Size of cut src array: " + single.getSize());
-					   Array subarray = single.section(rangeList);
-					   totalLength += subarray.getSize();
-					   arrayList.add(subarray);
-					   logger.debug("Size of cut sub array: " + subarray.getSize());
-
-				   } else {
-					   Array subarray = var.read(rangeList);
-					   totalLength += subarray.getSize();
-					   logger.debug("Size of reg sub array: " + subarray.getSize());
-					   arrayList.add(subarray);
-				   }
-				   
-			   }
-			   // put in an empty ArrayList placeholder to retain a slot for each granule
+	   for (int i = 0; i < granuleSpan; i++) {
+		   granVars[i] = varMapList.get(loGranuleId + i).get(array_name);
+		   List<Range> rangeList = new ArrayList<>();
+		   int granSize = 1;
+		   for (int dimensionIdx = 0; dimensionIdx < dimensionCount; dimensionIdx++) {
+			   logger.debug("Creating new Range: " + startSet[i][dimensionIdx] +
+					   ", " + (startSet[i][dimensionIdx] + countSet[i][dimensionIdx] - 1) + ", " + strideSet[i][dimensionIdx]);
+			   Range range = new Range(
+					   startSet[i][dimensionIdx], 
+					   startSet[i][dimensionIdx] + countSet[i][dimensionIdx] - 1,
+					   strideSet[i][dimensionIdx]
+			   );
+			   rangeList.add(dimensionIdx, range);
+			   granSize *= range.length();
+		   }
+		   granRanges.add(rangeList);
+		   granOffsets[i] = totalLength;
+		   if (granVars[i] instanceof Structure) {
+			   // what to do here?
 		   } else {
-			   Array emptyArray = null;
-			   arrayList.add(emptyArray);
+			   totalLength += granSize;
 		   }
 	   }
-	   
-	   // last, concatenate the individual NetCDF arrays pulled out 
-
-	   Class arrayType = getArrayType(array_name);
-	   RangeProcessor rngProcessor = varToRangeProcessor.get(array_name);
 
 	   logger.debug("Creating aggregated array, totalLength: " + totalLength);
 	   
@@ -838,31 +846,222 @@ public class GranuleAggregation implements MultiDimensionReader {
 	       }
 	   }
 	   
-	   float[] finalArray = new float[totalLength];
-           
-	   int destPos = 0;
-	   int granIdx = 0;
-
-	   int remaining = totalLength;
-	   for (Array a : arrayList) {
-		   if (a != null) {
-			   Object primArray = a.copyTo1DJavaArray();
-			   primArray = processArray(
-			      mapName, array_name, arrayType, granIdx, primArray, rngProcessor, start, count
-			   );
-			   if (a.getSize() > remaining) {
-			       System.arraycopy(primArray, 0, finalArray, destPos, remaining);
-			   } else {
-			       System.arraycopy(primArray, 0, finalArray, destPos, (int) a.getSize());
+	   ReadPlan plan = new ReadPlan();
+	   plan.origName = origName;
+	   plan.arrayName = array_name;
+	   plan.loGranuleId = loGranuleId;
+	   plan.vars = granVars;
+	   plan.ranges = granRanges;
+	   plan.offsets = granOffsets;
+	   plan.totalLength = totalLength;
+	   return plan;
+   }
+
+   private synchronized Object readArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
+	   return readArray(array_name, start, count, stride, true);
+   }
+
+   /*
+    * Read and concatenate the granules covering a request. When process is
+    * false the values are returned raw, in the variable's own primitive type,
+    * and range processing is left for processNativeArray.
+    */
+   private synchronized Object readArray(String array_name, int[] start, int[] count, int[] stride, boolean process) throws Exception {
+	   ReadPlan plan = planRead(array_name, start, count, stride);
+
+	   Object finalArray;
+	   if (process) {
+		   finalArray = new float[plan.totalLength];
+	   } else {
+		   finalArray = java.lang.reflect.Array.newInstance(getArrayType(plan.arrayName), plan.totalLength);
+	   }
+	   readInto(array_name, plan, process, finalArray, 0);
+	   return finalArray;
+   }
+
+   /* caller-supplied destination; float and buffer reads are range processed, the rest are raw */
+   private synchronized int readArray(String array_name, int[] start, int[] count, int[] stride, Object dest, int destPos) throws Exception {
+	   ReadPlan plan = planRead(array_name, start, count, stride);
+	   boolean process = (dest instanceof float[]) || (dest instanceof ByteBuffer);
+	   readInto(array_name, plan, process, dest, destPos);
+	   return plan.totalLength;
+   }
+
+   /*
+    * Each granule is read, run through its range processor if needed, and
+    * copied straight into its own slice of dest, a primitive array or a
+    * ByteBuffer, starting at destBase.
+    */
+   private void readInto(String mapName, ReadPlan plan, boolean process, Object dest, int destBase) throws Exception {
+	   Class arrayType = getArrayType(plan.arrayName);
+	   RangeProcessor rngProcessor = varToRangeProcessor.get(plan.arrayName);
+	   // raw values are converted to whatever the destination array holds
+	   final Class readType = (process || (dest instanceof ByteBuffer))
+		   ? arrayType : dest.getClass().getComponentType();
+
+	   List<Callable<Void>> reads = new ArrayList<>(plan.vars.length);
+	   for (int i = 0; i < plan.vars.length; i++) {
+		   if (plan.vars[i] instanceof Structure) {
+			   continue;
+		   }
+		   final int granIdx = plan.loGranuleId + i;
+		   final Variable var = plan.vars[i];
+		   final List<Range> rangeList = plan.ranges.get(i);
+		   final int offset = plan.offsets[i];
+		   final String qfName = plan.origName;
+		   reads.add(() -> {
+			   Array a = readGranule(var, granIdx, rangeList);
+			   // hands back the backing storage, without a copy, when it can
+			   Object primArray = a.get1DJavaArray(readType);
+			   int length = (int) Math.min(a.getSize(), plan.totalLength - offset);
+			   if (process && (dest instanceof float[]) && (length == a.getSize())
+				   && processInto(mapName, qfName, arrayType, granIdx, primArray, rngProcessor, (float[]) dest, destBase + offset)) {
+				   return null;
+			   }
+			   if (process) {
+				   primArray = processArray(
+				      mapName, plan.arrayName, qfName, arrayType, granIdx, primArray, rngProcessor
+				   );
+			   }
+			   if (length > 0) {
+				   PrimitiveArrays.copy(primArray, length, dest, destBase + offset);
+			   }
+			   return null;
+		   });
+	   }
+
+	   if (reads.size() == 1) {
+		   reads.get(0).call();
+	   } else if (!reads.isEmpty()) {
+		   for (Future<Void> f : granuleReaders.invokeAll(reads)) {
+			   try {
+				   f.get();
+			   } catch (ExecutionException e) {
+				   Throwable cause = e.getCause();
+				   if (cause instanceof Exception) {
+					   throw (Exception) cause;
+				   }
+				   throw e;
 			   }
-			   destPos += a.getSize();
-			   remaining -= (int) a.getSize();
 		   }
-		   granIdx++;
+	   }	   if (process) {
+		   setLastGranule(rngProcessor, plan);
 	   }
-       
+   }
+
+   /* later calls without a granule, e.g. MultiDimensionAdapter's, use the last granule of this read */
+   private static void setLastGranule(RangeProcessor rngProcessor, ReadPlan plan) {
+	   if (rngProcessor instanceof AggregationRangeProcessor) {
+		   ((AggregationRangeProcessor) rngProcessor).setWhichRangeProcessor(plan.loGranuleId + plan.vars.length - 1);
+	   }
+   }
+
+   /**
+    * Run values previously read with {@link #getShortArray} or
+    * {@link #getByteArray} through the range processor, one granule at a
+    * time, using the same request that was used to read them.
+    *
+    * @param array_name Variable name.
+    * @param values Raw values for the request.
+    * @param start Start indices of the request.
+    * @param count Counts of the request.
+    * @param stride Strides of the request.
+    *
+    * @return Processed values, in the same order as {@code values}.
+    *
+    * @throws Exception if the request cannot be mapped onto the granules.
+    */
+   public synchronized float[] processNativeArray(String array_name, Object values, int[] start, int[] count, int[] stride) throws Exception {
+	   String mapName = array_name;
+	   ReadPlan plan = planRead(array_name, start, count, stride);
+
+	   Class arrayType = getArrayType(plan.arrayName);
+	   RangeProcessor rngProcessor = varToRangeProcessor.get(plan.arrayName);
+
+	   int valuesLength = java.lang.reflect.Array.getLength(values);
+	   float[] finalArray = new float[valuesLength];
+	   for (int i = 0; i < plan.vars.length; i++) {
+		   if (plan.vars[i] instanceof Structure) {
+			   continue;
+		   }
+		   int destPos = plan.offsets[i];
+		   int end = (i + 1 < plan.vars.length) ? plan.offsets[i + 1] : plan.totalLength;
+		   int length = Math.min(end, valuesLength) - destPos;
+		   if (length <= 0) {
+			   continue;
+		   }
+		   Object granValues = java.lang.reflect.Array.newInstance(arrayType, length);
+		   System.arraycopy(values, destPos, granValues, 0, length);
+		   Object primArray = processArray(
+		      mapName, plan.arrayName, plan.origName, arrayType, plan.loGranuleId + i, granValues, rngProcessor
+		   );
+		   System.arraycopy(primArray, 0, finalArray, destPos, length);
+	   }
+	   setLastGranule(rngProcessor, plan);
 	   return finalArray;
    }
+
+   /* read through the granule's chunk cache when the variable is chunked */
+   private static Array readSection(NetCDFFile granule, Variable var, List<Range> rangeList) throws Exception {
+	   int rank = rangeList.size();
+	   int[] start = new int[rank];
+	   int[] count = new int[rank];
+	   int[] stride = new int[rank];
+	   for (int i = 0; i < rank; i++) {
+		   Range range = rangeList.get(i);
+		   start[i] = range.first();
+		   count[i] = range.length();
+		   stride[i] = range.stride();
+	   }
+	   Array cached = ChunkCache.read(granule, var, var.getFullName(), start, count, stride);
+	   return (cached != null) ? cached : var.read(rangeList);
+   }
+
+   /* read the requested section of a single granule, removing any cut scans first */
+   private Array readGranule(Variable var, int granuleIdx, List<Range> rangeList) throws Exception {
+	   // If there were chunks of fill data to remove...
+	   List<Range> al = granCutRanges.get(new Integer(granuleIdx));
+	   if (! al.isEmpty()) {
+		   List<Variable> varChunks = new ArrayList<>();
+		   for (int rangeCount = 0; rangeCount < al.size(); rangeCount+=2) {
+			   List<Range> rl = new ArrayList<>();
+			   rl.add(al.get(rangeCount));
+			   rl.add(al.get(rangeCount + 1));
+			   varChunks.add(var.section(rl));
+		   }
+
+		   int [] newShape = var.getShape();
+		   int cutScans = granCutScans.get(granuleIdx);
+		   newShape[0] = newShape[0] - cutScans;
+		   logger.trace("New Shape: " + newShape[0] + ", " + newShape[1]);
+		   Array single = Array.factory(var.getDataType(), newShape);
+
+		   // now read variable chunk data into single contiguous array
+		   int idx = 0;
+		   for (Variable v : varChunks) {
+			   Array data = v.read();
+			   int [] tmpShape = v.getShape();
+			   for (int tIdx = 0; tIdx < tmpShape.length; tIdx++) {
+				   logger.trace("Shape[" + tIdx + "]: " + tmpShape[tIdx]);
+			   }
+			   IndexIterator ii = data.getIndexIterator();
+			   while (ii.hasNext()) {
+				   single.setFloat(idx, ii.getFloatNext());
+				   idx++;
+			   }
+		   }
+
+		   // finally, apply subset ranges
+		   logger.debug("Size of cut src array: " + single.getSize());
+		   Array subarray = single.section(rangeList);
+		   logger.debug("Size of cut sub array: " + subarray.getSize());
+		   return subarray;
+	   } else {
+		   Array subarray = readSection(ncdfal.get(granuleIdx), var, rangeList);
+		   logger.debug("Size of reg sub array: " + subarray.getSize());
+		   return subarray;
+	   }
+   }
    
    /**
     * @param qfMap the qfMap to set
@@ -889,13 +1088,16 @@ public class GranuleAggregation implements MultiDimensionReader {
    }
 
    /* pass individual granule pieces just read from dataset through the RangeProcessor */
-   private Object processArray(String mapName, String array_name, Class arrayType, int granIdx, Object values, RangeProcessor rngProcessor, int[] start, int[] count) {
+   private Object processArray(String mapName, String array_name, String qfName, Class arrayType, int granIdx, Object values, RangeProcessor rngProcessor) {
 
 	   if (rngProcessor == null) {
 		   return values;
 	   }
 	   else {
-		   ((AggregationRangeProcessor) rngProcessor).setWhichRangeProcessor(granIdx);
+		   // granules are processed concurrently, so the granule and scale
+		   // index go with each call rather than being set on the processor
+		   AggregationRangeProcessor aggrProcessor = (AggregationRangeProcessor) rngProcessor;
+		   int scaleIndex = aggrProcessor.getMultiScaleIndex();
 
 		   Object outArray = null;
 
@@ -905,29 +1107,62 @@ public class GranuleAggregation implements MultiDimensionReader {
 				   float lut[] = lutMap.get(mapName);
 				   outArray = rngProcessor.processRangeApplyLUT((short []) values, lut);
 			   } else {
-				   outArray = rngProcessor.processRange((short[]) values, null);
+				   outArray = aggrProcessor.processRange(granIdx, (short[]) values, scaleIndex);
 			   }
 		   } else if (arrayType == Byte.TYPE) {
 			   // if variable is a bit-field quality flag, apply mask
-			   if ((qfMap != null) && (qfMap.containsKey(origName))) {
-				   QualityFlag qf = qfMap.get(origName);
+			   if ((qfMap != null) && (qfMap.containsKey(qfName))) {
+				   QualityFlag qf = qfMap.get(qfName);
 				   outArray = rngProcessor.processRangeQualityFlag((byte[]) values, null, qf);
 			   } else {
-				   outArray = rngProcessor.processRange((byte[]) values, null);
+				   outArray = aggrProcessor.processRange(granIdx, (byte[]) values, scaleIndex);
 			   }
 		   } else if (arrayType == Float.TYPE) {
-			   outArray = rngProcessor.processRange((float[]) values, null);
+			   outArray = aggrProcessor.processRange(granIdx, (float[]) values);
 		   } else if (arrayType == Double.TYPE) {
-			   outArray = rngProcessor.processRange((double[]) values, null);
+			   outArray = aggrProcessor.processRange(granIdx, (double[]) values);
 		   }
 
 		   return outArray;
 	   }
    }
 
+   /*
+    * Scale packed short/byte granule values straight into their slice of a
+    * float destination, skipping the temporary array processArray makes.
+    * Returns false when the values need the general path (LUT, quality flag,
+    * no range processor, or not packed).
+    */
+   private boolean processInto(String mapName, String qfName, Class arrayType, int granIdx, Object values, RangeProcessor rngProcessor, float[] dest, int destPos) {
+	   if (!(rngProcessor instanceof AggregationRangeProcessor)) {
+		   return false;
+	   }
+	   AggregationRangeProcessor aggrProcessor = (AggregationRangeProcessor) rngProcessor;
+	   if ((arrayType == Short.TYPE) && ((lutMap == null) || !lutMap.containsKey(mapName))) {
+		   aggrProcessor.processRange(granIdx, (short[]) values, aggrProcessor.getMultiScaleIndex(), dest, destPos);
+		   return true;
+	   }
+	   if ((arrayType == Byte.TYPE) && ((qfMap == null) || !qfMap.containsKey(qfName))) {
+		   aggrProcessor.processRange(granIdx, (byte[]) values, aggrProcessor.getMultiScaleIndex(), dest, destPos);
+		   return true;
+	   }
+	   return false;
+   }
+
    /* Application can supply a RangeProcessor for a variable 'arrayName' */
    public void addRangeProcessor(String arrayName, RangeProcessor rangeProcessor) {
 	   varToRangeProcessor.put(arrayName, rangeProcessor);
    }
    
+   /* granule layout of a single read request */
+   private static class ReadPlan {
+	   String origName;
+	   String arrayName;
+	   int loGranuleId;
+	   Variable[] vars;
+	   List<List<Range>> ranges;
+	   int[] offsets;
+	   int totalLength;
+   }
+
 }
@@ -0,0 +1,351 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Granule level metadata of Suomi NPP/JPSS files, kept so that reopening
+ * the same files, e.g. from a bundle, doesn't have to open every granule
+ * again.
+ *
+ * <p>Entries are keyed by absolute path and are only used while the file
+ * still has the size and modification time it had when it was scanned.
+ * Files that aren't in the index are scanned in parallel. If an index file
+ * has been set, the entries are kept there between sessions as one tab
+ * separated line per granule.</p>
+ */
+final class GranuleIndex {
+
+   private static final Logger logger = LoggerFactory.getLogger(GranuleIndex.class);
+
+   /** Most granules remembered, least recently used are dropped first. */
+   private static final int MAX_ENTRIES = 20000;
+
+   private static final int SCAN_THREADS =
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+   private static final ExecutorService scanners =
+      Executors.newFixedThreadPool(SCAN_THREADS, r -> {
+         Thread t = new Thread(r, "GranuleIndex scanner");
+         t.setDaemon(true);
+         return t;
+      });
+
+   /** What is known about one granule file. */
+   static final class Entry {
+      final String path;
+      final long size;
+      final long modified;
+
+      /** N_GEO_Ref global attribute, NOAA only. */
+      String geoRef;
+
+      /** Instrument short name. */
+      String instrument;
+
+      /** Product profile name of each non-geolocation product, NOAA only. */
+      final List<String> productNames = new ArrayList<>();
+
+      /** Band_ID of an EDR product, NOAA only. */
+      String edrBand;
+
+      /** Whether the file has the groups the time is taken from. */
+      boolean hasProducts;
+
+      /** Unparsed start time of the granule, or null if none was found. */
+      String beginTime;
+
+      /** Geolocation file paired with this granule, once known. */
+      String geoFile;
+
+      /** Size and modification time of the geolocation file when paired. */
+      long geoSize;
+      long geoModified;
+
+      Entry(File file) {
+         this(file.getAbsolutePath(), file.length(), file.lastModified());
+      }
+
+      private Entry(String path, long size, long modified) {
+         this.path = path;
+         this.size = size;
+         this.modified = modified;
+      }
+
+      boolean isCurrent() {
+         File file = new File(path);
+         return (file.length() == size) && (file.lastModified() == modified);
+      }
+   }
+
+   /** Reads the granule metadata of a file. */
+   interface Scanner {
+      Entry scan(String path) throws Exception;
+   }
+
+   private static File indexFile;
+
+   private static boolean loaded = false;
+
+   private static boolean dirty = false;
+
+   private static final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+   private GranuleIndex() {
+   }
+
+   /**
+    * @param file Where the index is kept between sessions, or null to only
+    *             keep it in memory.
+    */
+   static synchronized void setIndexFile(File file) {
+      if ((file == null) ? (indexFile == null) : file.equals(indexFile)) {
+         return;
+      }
+      indexFile = file;
+      loaded = false;
+   }
+
+   /**
+    * Metadata of each of {@code paths}, in the same order. Granules that
+    * aren't in the index, or have changed since they were scanned, are
+    * scanned in parallel.
+    *
+    * @param paths Granule files.
+    * @param scanner Reads the metadata of a file missing from the index.
+    *
+    * @return One entry per path.
+    *
+    * @throws Exception the first failure of {@code scanner}.
+    */
+   static List<Entry> scan(List<String> paths, Scanner scanner) throws Exception {
+      Entry[] found = new Entry[paths.size()];
+      List<Callable<Entry>> scans = new ArrayList<>();
+      List<Integer> missing = new ArrayList<>();
+      synchronized (GranuleIndex.class) {
+         load();
+         for (int i = 0; i < found.length; i++) {
+            String path = new File(paths.get(i)).getAbsolutePath();
+            Entry entry = entries.get(path);
+            if ((entry != null) && entry.isCurrent()) {
+               found[i] = entry;
+            } else {
+               final String file = paths.get(i);
+               scans.add(() -> scanner.scan(file));
+               missing.add(i);
+            }
+         }
+      }
+      logger.debug("{} of {} granules from the index", found.length - missing.size(), found.length);
+
+      if (scans.size() == 1) {
+         found[missing.get(0)] = scans.get(0).call();
+      } else if ( !scans.isEmpty()) {
+         List<Future<Entry>> results = scanners.invokeAll(scans);
+         for (int i = 0; i < results.size(); i++) {
+            try {
+               found[missing.get(i)] = results.get(i).get();
+            } catch (ExecutionException e) {
+               Throwable cause = e.getCause();
+               if (cause instanceof Exception) {
+                  throw (Exception) cause;
+               }
+               throw e;
+            }
+         }
+      }
+
+      synchronized (GranuleIndex.class) {
+         for (int i : missing) {
+            put(found[i]);
+         }
+      }
+      return Arrays.asList(found);
+   }
+
+   /**
+    * The geolocation file paired with a granule, checked the same way
+    * granule entries are.
+    *
+    * @param entry Granule entry returned by {@link #scan}.
+    *
+    * @return The file, or null if none was paired or it has changed since.
+    */
+   static synchronized String getGeoFile(Entry entry) {
+      if (entry.geoFile == null) {
+         return null;
+      }
+      File file = new File(entry.geoFile);
+      if (file.exists() && (file.length() == entry.geoSize) && (file.lastModified() == entry.geoModified)) {
+         return entry.geoFile;
+      }
+      return null;
+   }
+
+   /**
+    * Remember the geolocation file paired with a granule.
+    *
+    * @param entry Granule entry returned by {@link #scan}.
+    * @param geoFile Geolocation file.
+    */
+   static synchronized void setGeoFile(Entry entry, String geoFile) {
+      if (geoFile == null) {
+         return;
+      }
+      File file = new File(geoFile);
+      long size = file.length();
+      long modified = file.lastModified();
+      if ( !geoFile.equals(entry.geoFile) || (size != entry.geoSize) || (modified != entry.geoModified)) {
+         entry.geoFile = geoFile;
+         entry.geoSize = size;
+         entry.geoModified = modified;
+         dirty = true;
+      }
+   }
+
+   /**
+    * Write the index file if anything changed since it was read.
+    */
+   static void save() {
+      List<Entry> lines;
+      File file;
+      synchronized (GranuleIndex.class) {
+         if ( !dirty || !loaded || (indexFile == null)) {
+            return;
+         }
+         dirty = false;
+         file = indexFile;
+         lines = new ArrayList<>(entries.values());
+      }
+      File tmp = new File(file.getPath() + ".new");
+      try {
+         try (BufferedWriter out = new BufferedWriter(new FileWriter(tmp))) {
+            for (Entry e : lines) {
+               out.write(format(e));
+               out.newLine();
+            }
+         }
+         file.delete();
+         if ( !tmp.renameTo(file)) {
+            tmp.delete();
+         }
+      } catch (IOException e) {
+         logger.warn("Could not write " + file, e);
+         tmp.delete();
+      }
+   }
+
+   /* called with the class lock held */
+   private static void put(Entry entry) {
+      entries.put(entry.path, entry);
+      dirty = true;
+      Iterator<Entry> iter = entries.values().iterator();
+      while ((entries.size() > MAX_ENTRIES) && iter.hasNext()) {
+         iter.next();
+         iter.remove();
+      }
+   }
+
+   /* called with the class lock held */
+   private static void load() {
+      if (loaded) {
+         return;
+      }
+      loaded = true;
+      if ((indexFile == null) || !indexFile.exists()) {
+         return;
+      }
+      try (BufferedReader in = new BufferedReader(new FileReader(indexFile))) {
+         String line;
+         while ((line = in.readLine()) != null) {
+            Entry entry = parse(line);
+            if ((entry != null) && !entries.containsKey(entry.path)) {
+               entries.put(entry.path, entry);
+            }
+         }
+      } catch (Exception e) {
+         logger.warn("Could not read " + indexFile, e);
+      }
+   }
+
+   /* path, size, time, geo ref, instrument, products, EDR band, has products, begin time, geo file, geo size, geo time */
+   private static String format(Entry e) {
+      return e.path + '\t' + e.size + '\t' + e.modified + '\t' + text(e.geoRef) + '\t' + text(e.instrument)
+         + '\t' + String.join(",", e.productNames) + '\t' + text(e.edrBand) + '\t' + e.hasProducts
+         + '\t' + text(e.beginTime) + '\t' + text(e.geoFile) + '\t' + e.geoSize + '\t' + e.geoModified;
+   }
+
+   private static Entry parse(String line) {
+      String[] toks = line.split("\t", -1);
+      if (toks.length != 12) {
+         return null;
+      }
+      Entry e = new Entry(toks[0], Long.parseLong(toks[1]), Long.parseLong(toks[2]));
+      e.geoRef = value(toks[3]);
+      e.instrument = value(toks[4]);
+      if ( !toks[5].isEmpty()) {
+         e.productNames.addAll(Arrays.asList(toks[5].split(",")));
+      }
+      e.edrBand = value(toks[6]);
+      e.hasProducts = Boolean.parseBoolean(toks[7]);
+      e.beginTime = value(toks[8]);
+      e.geoFile = value(toks[9]);
+      e.geoSize = Long.parseLong(toks[10]);
+      e.geoModified = Long.parseLong(toks[11]);
+      return e;
+   }
+
+   private static String text(String s) {
+      return (s == null) ? "" : s;
+   }
+
+   private static String value(String s) {
+      return s.isEmpty() ? null : s;
+   }
+}
@@ -55,6 +55,10 @@ public abstract class MultiDimensionAdapter {
 
    RangeProcessor rangeProcessor = null;
 
+   // raw short and byte reads only live until they are range processed, so
+   // their arrays are reused across reads of the same size
+   private static final BufferPool rawBuffers = new BufferPool(8);
+
    public MultiDimensionAdapter() {
    }
 
@@ -161,7 +165,11 @@ public abstract class MultiDimensionAdapter {
    public FlatField makeFlatField(Set domainSet, Map<String, double[]> subset) throws Exception {
      FlatField f_field = null;
 
-     Object range = readArray(subset);
+     Object range = readPooledArray(subset);
+     boolean pooled = (range != null);
+     if (!pooled) {
+       range = readArray(subset);
+     }
 
      if (range instanceof float[]) {
        float[] new_range = processRange((float[]) range, subset);
@@ -171,6 +179,11 @@ public abstract class MultiDimensionAdapter {
        double[] new_range = processRange((double[]) range, subset);
        f_field = makeFlatField(domainSet, new double[][] {new_range});
      }
+     else if (reader instanceof GranuleAggregation) {
+       // raw short/byte values still need each granule's own processing
+       float[] new_range = processRange(processAggregated(range, subset), subset);
+       f_field = makeFlatField(domainSet, new float[][] {new_range});
+     }
      else if (range instanceof short[]) {
        float[] float_range = processRange((short[])range, subset);
        f_field = makeFlatField(domainSet, new float[][] {float_range});
@@ -180,6 +193,10 @@ public abstract class MultiDimensionAdapter {
        f_field = makeFlatField(domainSet, new float[][] {float_range});
      }
 
+     if (pooled) {
+       rawBuffers.release(range);
+     }
+
      return f_field;
    }
 
@@ -241,6 +258,42 @@ public abstract class MultiDimensionAdapter {
      return reader.getArray(arrayName, start, count, stride);
    }
 
+   /* returns null when the read can't use a pooled array */
+   private Object readPooledArray(Map<String, double[]> subset) throws Exception {
+     if ((arrayType != Short.TYPE) && (arrayType != Byte.TYPE)) {
+       return null;
+     }
+
+     Subset select = getIndexes(subset);
+     int[] start = select.getStart();
+     int[] count = select.getCount();
+     int[] stride = select.getStride();
+
+     int length = 1;
+     for (int i=0; i<count.length; i++) length *= count[i];
+
+     Object range = rawBuffers.acquire(arrayType, length);
+     try {
+       if (arrayType == Short.TYPE) {
+         reader.getShortArray(arrayName, start, count, stride, (short[]) range, 0);
+       }
+       else {
+         reader.getByteArray(arrayName, start, count, stride, (byte[]) range, 0);
+       }
+     } catch (Exception e) {
+       rawBuffers.release(range);
+       throw e;
+     }
+     return range;
+   }
+
+   /* run raw aggregated values through the range processor of the granule each came from */
+   private float[] processAggregated(Object range, Map<String, double[]> subset) throws Exception {
+     Subset select = getIndexes(subset);
+     return ((GranuleAggregation) reader).processNativeArray(arrayName, range,
+         select.getStart(), select.getCount(), select.getStride());
+   }
+
    public MultiDimensionReader getReader() {
      return reader;
    }
@@ -29,6 +29,7 @@
 package edu.wisc.ssec.mcidasv.data.hydra;
 
 import java.lang.Class;
+import java.nio.ByteBuffer;
 
 public interface MultiDimensionReader {
 
@@ -40,6 +41,18 @@ public interface MultiDimensionReader {
 
   public Object getArray(String name, int[] start, int[] count, int[] stride) throws Exception;
 
+  // Same reads, but into a caller-supplied array starting at destPos.
+  // Each returns the number of values written.
+  public int getFloatArray(String name, int[] start, int[] count, int[] stride, float[] dest, int destPos) throws Exception;
+  public int getDoubleArray(String name, int[] start, int[] count, int[] stride, double[] dest, int destPos) throws Exception;
+  public int getIntArray(String name, int[] start, int[] count, int[] stride, int[] dest, int destPos) throws Exception;
+  public int getShortArray(String name, int[] start, int[] count, int[] stride, short[] dest, int destPos) throws Exception;
+  public int getByteArray(String name, int[] start, int[] count, int[] stride, byte[] dest, int destPos) throws Exception;
+
+  // Writes what getArray would return at the buffer's position, in the
+  // buffer's byte order, and advances the position past it.
+  public int getArray(String name, int[] start, int[] count, int[] stride, ByteBuffer dest) throws Exception;
+
   public Class getArrayType(String name);
 
   public String[] getDimensionNames(String arrayName);
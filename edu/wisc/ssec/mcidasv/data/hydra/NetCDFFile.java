@@ -39,9 +39,15 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.net.URL;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.jdom2.input.SAXBuilder;
 import org.jdom2.output.XMLOutputter;
@@ -59,6 +65,59 @@ public class NetCDFFile implements MultiDimensionReader {
 
    NetcdfFile ncfile = null;
 
+   /** Default for {@link #setMaxHandlesPerFile(int)}. */
+   public static final int DEFAULT_MAX_HANDLES = 4;
+
+   private static volatile int maxHandles = DEFAULT_MAX_HANDLES;
+
+   /** Opens another handle on the file, null if it can only be opened once. */
+   private Callable<NetcdfFile> opener;
+
+   /** Open handles that no read is using. */
+   private final BlockingQueue<Handle> idle = new LinkedBlockingQueue<>();
+
+   /** All open handles, including {@link #ncfile}. */
+   private final List<Handle> handles = new ArrayList<>();
+
+   /** Handles being opened. Guarded by {@link #handles}. */
+   private int opening = 0;
+
+   private volatile boolean closed = false;
+
+   /**
+    * Set how many handles on the same file can be open at once. Reads
+    * that run at the same time each need a handle, so this caps how many
+    * reads of one file run in parallel. Files already open keep their
+    * handles.
+    *
+    * @param max Max open handles per file, at least 1.
+    */
+   public static void setMaxHandlesPerFile(int max) {
+     maxHandles = Math.max(1, max);
+   }
+
+   public static int getMaxHandlesPerFile() {
+     return maxHandles;
+   }
+
+   /** Default for {@link #setChunkCacheSize(int)}, in megabytes. */
+   public static final int DEFAULT_CHUNK_CACHE_MB = ChunkCache.DEFAULT_SIZE_MB;
+
+   /**
+    * Set how much decompressed chunk data of chunked (HDF5 / NetCDF-4)
+    * variables is kept for later reads. The cache is shared by all HYDRA
+    * files.
+    *
+    * @param megabytes Cache size. Zero turns the cache off.
+    */
+   public static void setChunkCacheSize(int megabytes) {
+     ChunkCache.setMaxBytes(megabytes * 1024L * 1024L);
+   }
+
+   public static int getChunkCacheSize() {
+     return (int) (ChunkCache.getMaxBytes() / (1024L * 1024L));
+   }
+
    public static NetCDFFile makeUnion(String filename, String other) throws Exception {
      Object obj = new Object();
      URL url = obj.getClass().getResource("/edu/wisc/ssec/mcidasv/data/hydra/resources/union.ncml");
@@ -96,21 +155,29 @@ public class NetCDFFile implements MultiDimensionReader {
 
    public NetCDFFile(String filename) throws Exception {
      if (filename.endsWith(".ncml")) {
-       java.io.FileReader rdr = new java.io.FileReader(filename);
-       ncfile = NcMLReader.readNcML(rdr, null);
+       opener = () -> {
+         try (java.io.FileReader rdr = new java.io.FileReader(filename)) {
+           return NcMLReader.readNcML(rdr, null);
+         }
+       };
      }
      else {
-       ncfile = NetcdfFile.open(filename);
+       opener = () -> NetcdfFile.open(filename);
      }
+     ncfile = opener.call();
      init();
    }
      
    public NetCDFFile(String filename, org.jdom2.Element root) throws Exception {
-	  ncfile = NcMLReader.readNcML(filename, root, null);
+	  opener = () -> NcMLReader.readNcML(filename, root, null);
+	  ncfile = opener.call();
 	  init();
    }
    
    private void init() throws Exception {
+     Handle handle = new Handle(ncfile, varMap);
+     handles.add(handle);
+     idle.add(handle);
      Iterator varIter = ncfile.getVariables().iterator();
      while(varIter.hasNext()) {
        Variable var = (Variable) varIter.next();
@@ -218,8 +285,61 @@ public class NetCDFFile implements MultiDimensionReader {
      return readArray(array_name, start, count, stride);
    }
 
-   protected synchronized Object readArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
-     Variable var = varMap.get(array_name);
+   public int getFloatArray(String array_name, int[] start, int[] count, int[] stride, float[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getIntArray(String array_name, int[] start, int[] count, int[] stride, int[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getDoubleArray(String array_name, int[] start, int[] count, int[] stride, double[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getShortArray(String array_name, int[] start, int[] count, int[] stride, short[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getByteArray(String array_name, int[] start, int[] count, int[] stride, byte[] dest, int destPos) throws Exception {
+     return readArray(array_name, start, count, stride, dest, destPos);
+   }
+
+   public int getArray(String array_name, int[] start, int[] count, int[] stride, ByteBuffer dest) throws Exception {
+     Handle handle = acquire();
+     try {
+       Array array = readSection(handle.getVariable(array_name), array_name, start, count, stride);
+       return PrimitiveArrays.put(array.get1DJavaArray(array.getElementType()), (int) array.getSize(), dest);
+     } finally {
+       release(handle);
+     }
+   }
+
+   protected Object readArray(String array_name, int[] start, int[] count, int[] stride) throws Exception {
+     Handle handle = acquire();
+     try {
+       return readSection(handle.getVariable(array_name), array_name, start, count, stride).copyTo1DJavaArray();
+     } finally {
+       release(handle);
+     }
+   }
+
+   /* read into dest, converting to its element type if the variable's differs */
+   private int readArray(String array_name, int[] start, int[] count, int[] stride, Object dest, int destPos) throws Exception {
+     Handle handle = acquire();
+     try {
+       Array array = readSection(handle.getVariable(array_name), array_name, start, count, stride);
+       // the section's own storage when it can, so only one copy is made
+       Object values = array.get1DJavaArray(dest.getClass().getComponentType());
+       int length = (int) array.getSize();
+       System.arraycopy(values, 0, dest, destPos, length);
+       return length;
+     } finally {
+       release(handle);
+     }
+   }
+
+   private Array readSection(Variable var, String array_name, int[] start, int[] count, int[] stride) throws Exception {
      if (var instanceof Structure) {
        Array array = Array.factory(getArrayType(array_name), count);
        Index2D idx = new Index2D(count);
@@ -232,16 +352,19 @@ public class NetCDFFile implements MultiDimensionReader {
            array.setObject(idx, obj);
          }
        }
-       return array.copyTo1DJavaArray();
+       return array;
      }
      else {
+       Array cached = ChunkCache.read(this, var, array_name, start, count, stride);
+       if (cached != null) {
+         return cached;
+       }
        List<Range> rangeList = new ArrayList<>(start.length);
        for (int i=0;i<start.length;i++) {
          Range rng = new Range(start[i], start[i]+(count[i]-1)*stride[i], stride[i]);
          rangeList.add(i, rng);
        }
-       Array array = var.read(rangeList);
-       return array.copyTo1DJavaArray();
+       return var.read(rangeList);
      }
    }
 
@@ -287,8 +410,69 @@ public class NetCDFFile implements MultiDimensionReader {
      return harray;
    }
 
+   /**
+    * Get a handle no other read is using, opening one if there are fewer
+    * than {@link #getMaxHandlesPerFile()} and otherwise waiting for one.
+    */
+   private Handle acquire() throws Exception {
+     Handle handle = idle.poll();
+     if (handle != null) {
+       return handle;
+     }
+     boolean open = false;
+     synchronized (handles) {
+       if (!closed && (opener != null) && (handles.size() + opening < maxHandles)) {
+         opening++;
+         open = true;
+       }
+     }
+     if (open) {
+       NetcdfFile file = null;
+       try {
+         file = opener.call();
+       } catch (Exception e) {
+         // reads still work with the handles we have
+         logger.warn("Could not open another handle, using the open ones", e);
+       } finally {
+         synchronized (handles) {
+           opening--;
+           if (file != null) {
+             handle = new Handle(file);
+             handles.add(handle);
+           }
+         }
+       }
+       if (handle != null) {
+         return handle;
+       }
+     }
+     while ((handle = idle.poll(1, TimeUnit.SECONDS)) == null) {
+       if (closed) {
+         throw new IOException("NetCDFFile is closed");
+       }
+     }
+     return handle;
+   }
+
+   private void release(Handle handle) throws IOException {
+     if (closed) {
+       handle.file.close();
+     } else {
+       idle.add(handle);
+     }
+   }
+
    public void close() throws Exception {
-     ncfile.close();
+     closed = true;
+     ChunkCache.invalidate(this);
+     GeolocationStore.invalidate(this);
+     synchronized (handles) {
+       // handles in use are closed when they are released
+       Handle handle;
+       while ((handle = idle.poll()) != null) {
+         handle.file.close();
+       }
+     }
    }
 
    public Map<String, Variable> getVarMap() {
@@ -307,6 +491,28 @@ public class NetCDFFile implements MultiDimensionReader {
 	   return ncfile;
    }
    
+   /** A NetcdfFile and its variables, used by one read at a time. */
+   private static class Handle {
+     final NetcdfFile file;
+     final Map<String, Variable> vars;
+
+     Handle(NetcdfFile file, Map<String, Variable> vars) {
+       this.file = file;
+       this.vars = vars;
+     }
+
+     Handle(NetcdfFile file) {
+       this(file, new HashMap<>());
+       for (Variable var : file.getVariables()) {
+         vars.put(var.getFullName(), var);
+       }
+     }
+
+     Variable getVariable(String name) {
+       return vars.get(name);
+     }
+   }
+
    public static void main(String[] args) throws Exception {
      NetCDFFile ncfile = new NetCDFFile(args[0]);
      ncfile.close();
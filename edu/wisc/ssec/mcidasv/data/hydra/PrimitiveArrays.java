@@ -0,0 +1,110 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copies primitive arrays into the destinations accepted by the
+ * caller-supplied buffer reads of {@link MultiDimensionReader}.
+ */
+final class PrimitiveArrays {
+
+   private PrimitiveArrays() {
+   }
+
+   /**
+    * @param type Primitive element type.
+    *
+    * @return Number of bytes one value of {@code type} takes in a buffer.
+    */
+   static int sizeOf(Class type) {
+     if (type == Byte.TYPE) {
+       return 1;
+     } else if (type == Short.TYPE) {
+       return 2;
+     } else if ((type == Integer.TYPE) || (type == Float.TYPE)) {
+       return 4;
+     } else if ((type == Long.TYPE) || (type == Double.TYPE)) {
+       return 8;
+     }
+     throw new IllegalArgumentException("Unsupported element type: " + type);
+   }
+
+   /**
+    * Copy the first {@code length} values of {@code src} into {@code dest}.
+    *
+    * @param src Primitive array.
+    * @param length Number of values to copy.
+    * @param dest Primitive array of the same type, or a {@link ByteBuffer}.
+    * @param destPos Index of the first value written. For a buffer this
+    *                counts values from the buffer's position, whose own
+    *                position is left alone.
+    */
+   static void copy(Object src, int length, Object dest, int destPos) {
+     if ( !(dest instanceof ByteBuffer)) {
+       System.arraycopy(src, 0, dest, destPos, length);
+       return;
+     }
+
+     ByteBuffer buf = (ByteBuffer) dest;
+     Class type = src.getClass().getComponentType();
+     ByteBuffer view = buf.duplicate().order(buf.order());
+     view.position(buf.position() + destPos * sizeOf(type));
+     if (type == Byte.TYPE) {
+       view.put((byte[]) src, 0, length);
+     } else if (type == Short.TYPE) {
+       view.asShortBuffer().put((short[]) src, 0, length);
+     } else if (type == Integer.TYPE) {
+       view.asIntBuffer().put((int[]) src, 0, length);
+     } else if (type == Float.TYPE) {
+       view.asFloatBuffer().put((float[]) src, 0, length);
+     } else if (type == Long.TYPE) {
+       view.asLongBuffer().put((long[]) src, 0, length);
+     } else {
+       view.asDoubleBuffer().put((double[]) src, 0, length);
+     }
+   }
+
+   /**
+    * Write the first {@code length} values of {@code src} at the position of
+    * {@code dest}, and move the position past them.
+    *
+    * @param src Primitive array.
+    * @param length Number of values to write.
+    * @param dest Destination buffer.
+    *
+    * @return {@code length}.
+    */
+   static int put(Object src, int length, ByteBuffer dest) {
+     copy(src, length, dest, 0);
+     dest.position(dest.position() + length * sizeOf(src.getClass().getComponentType()));
+     return length;
+   }
+}
@@ -28,6 +28,8 @@
 
 package edu.wisc.ssec.mcidasv.data.hydra;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 
@@ -87,6 +89,23 @@ public class RangeProcessor {
 
     int soIndex = 0;
 
+    /** Shorter 16 bit arrays are only looked up if the table already exists. */
+    private static final int MIN_SHORT_TABLE_LENGTH = 16384;
+
+    /** Most 16 bit tables kept, e.g. for the channels of a multi-scale variable. */
+    private static final int MAX_SHORT_TABLES = 8;
+
+    /** processed value of every 16 bit pattern, by scale index */
+    private final Map<Integer, float[]> shortTables =
+        new LinkedHashMap<Integer, float[]>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Integer, float[]> eldest) {
+                return size() > MAX_SHORT_TABLES;
+            }
+        };
+
+    /** processed value of every 8 bit pattern, by scale index */
+    private final Map<Integer, float[]> byteTables = new HashMap<>();
+
     public RangeProcessor() {
     }
 
@@ -425,7 +444,88 @@ public class RangeProcessor {
             }
         }
 
+        return processBytes(values, soIndex, multiScaleDimLen);
+    }
+
+    /**
+     * Process a range of data from an array of {@code byte} values with a
+     * single scale and offset. Unlike {@link #processRange(byte[], Map)},
+     * this does not change the state of the processor, so it can be called
+     * from several threads at once.
+     *
+     * <p>If a subclass overrides {@link #processRange(byte[], Map)}, that
+     * method is used instead, one call at a time.</p>
+     *
+     * @param values
+     *            Input {@code byte} values. Cannot be {@code null}.
+     * @param scaleIndex
+     *            Index of the scale and offset to use.
+     *
+     * @return Processed range.
+     */
+
+    public float[] processRange(byte[] values, int scaleIndex) {
+        if (getClass() != RangeProcessor.class) {
+            return processOverridden(values, scaleIndex);
+        }
+        return processBytes(values, scaleIndex, 1);
+    }
+
+    /**
+     * Same as {@link #processRange(byte[], int)}, but the processed values
+     * are written to {@code dest} instead of a new array.
+     *
+     * @param values
+     *            Input {@code byte} values. Cannot be {@code null}.
+     * @param scaleIndex
+     *            Index of the scale and offset to use.
+     * @param dest
+     *            Receives {@code values.length} processed values.
+     * @param destPos
+     *            Where the first processed value goes in {@code dest}.
+     */
+
+    public void processRange(byte[] values, int scaleIndex, float[] dest, int destPos) {
+        if (getClass() != RangeProcessor.class) {
+            System.arraycopy(processOverridden(values, scaleIndex), 0, dest, destPos, values.length);
+            return;
+        }
+        processBytes(values, scaleIndex, 1, dest, destPos);
+    }
+
+    /* run a subclass's processRange(byte[], Map), which reads soIndex, with the given scale index */
+    private synchronized float[] processOverridden(byte[] values, int scaleIndex) {
+        int saved = soIndex;
+        soIndex = scaleIndex;
+        try {
+            return processRange(values, (Map<String, double[]>) null);
+        } finally {
+            soIndex = saved;
+        }
+    }
+
+    private float[] processBytes(byte[] values, int soIndex, int multiScaleDimLen) {
         float[] new_values = new float[values.length];
+        processBytes(values, soIndex, multiScaleDimLen, new_values, 0);
+        return new_values;
+    }
+
+    private void processBytes(byte[] values, int soIndex, int multiScaleDimLen, float[] new_values, int destPos) {
+        // a single scale and offset: one table lookup per value
+        if (multiScaleDimLen == 1) {
+            float[] table = byteTable(soIndex, values.length);
+            if (table != null) {
+                for (int k = 0; k < values.length; k++) {
+                    new_values[destPos + k] = table[values[k] & 0xFF];
+                }
+                return;
+            }
+        }
+        scaleBytes(values, soIndex, multiScaleDimLen, new_values, destPos);
+    }
+
+    /* the per value transform, also used to fill the lookup tables */
+    private void scaleBytes(byte[] values, int soIndex, int multiScaleDimLen, float[] new_values, int destPos) {
 
         float val = 0f;
         int i = 0;
@@ -451,13 +551,13 @@ public class RangeProcessor {
             }
 
             if (isMissing) {
-                new_values[k] = Float.NaN;
+                new_values[destPos + k] = Float.NaN;
                 continue;
             }
 
             if (rangeCheckBeforeScaling) {
                 if ((val < valid_low) || (val > valid_high)) {
-                    new_values[k] = Float.NaN;
+                    new_values[destPos + k] = Float.NaN;
                     continue;
                 }
             }
@@ -465,30 +565,29 @@ public class RangeProcessor {
             if (scale != null) {
                 if (unpack) {
                     if (multiScaleDimLen == 1) {
-                        new_values[k] = (scale[soIndex] * val) + offset[soIndex];
+                        new_values[destPos + k] = (scale[soIndex] * val) + offset[soIndex];
                     } else {
-                        new_values[k] = (scale[soIndex + k] * val) + offset[soIndex + k];
+                        new_values[destPos + k] = (scale[soIndex + k] * val) + offset[soIndex + k];
                     }
                 } else {
                     if (multiScaleDimLen == 1) {
-                        new_values[k] = scale[soIndex] * (val - offset[soIndex]);
+                        new_values[destPos + k] = scale[soIndex] * (val - offset[soIndex]);
                     } else {
-                        new_values[k] = scale[soIndex + k] * (val - offset[soIndex + k]);
+                        new_values[destPos + k] = scale[soIndex + k] * (val - offset[soIndex + k]);
                     }
                 }
 
             } else {
-                new_values[k] = val;
+                new_values[destPos + k] = val;
             }
 
             // do valid range check AFTER scaling?
             if (!rangeCheckBeforeScaling) {
-                if ((new_values[k] < valid_low) || (new_values[k] > valid_high)) {
-                    new_values[k] = Float.NaN;
+                if ((new_values[destPos + k] < valid_low) || (new_values[destPos + k] > valid_high)) {
+                    new_values[destPos + k] = Float.NaN;
                 }
             }
         }
-        return new_values;
     }
 
     /**
@@ -514,7 +613,88 @@ public class RangeProcessor {
             }
         }
 
+        return processShorts(values, soIndex, multiScaleDimLen);
+    }
+
+    /**
+     * Process a range of data from an array of {@code short} values with a
+     * single scale and offset. Unlike {@link #processRange(short[], Map)},
+     * this does not change the state of the processor, so it can be called
+     * from several threads at once.
+     *
+     * <p>If a subclass overrides {@link #processRange(short[], Map)}, that
+     * method is used instead, one call at a time.</p>
+     *
+     * @param values
+     *            Input {@code short} values. Cannot be {@code null}.
+     * @param scaleIndex
+     *            Index of the scale and offset to use.
+     *
+     * @return Processed range.
+     */
+
+    public float[] processRange(short[] values, int scaleIndex) {
+        if (getClass() != RangeProcessor.class) {
+            return processOverridden(values, scaleIndex);
+        }
+        return processShorts(values, scaleIndex, 1);
+    }
+
+    /**
+     * Same as {@link #processRange(short[], int)}, but the processed values
+     * are written to {@code dest} instead of a new array.
+     *
+     * @param values
+     *            Input {@code short} values. Cannot be {@code null}.
+     * @param scaleIndex
+     *            Index of the scale and offset to use.
+     * @param dest
+     *            Receives {@code values.length} processed values.
+     * @param destPos
+     *            Where the first processed value goes in {@code dest}.
+     */
+
+    public void processRange(short[] values, int scaleIndex, float[] dest, int destPos) {
+        if (getClass() != RangeProcessor.class) {
+            System.arraycopy(processOverridden(values, scaleIndex), 0, dest, destPos, values.length);
+            return;
+        }
+        processShorts(values, scaleIndex, 1, dest, destPos);
+    }
+
+    /* same as processOverridden(byte[], int) for short values */
+    private synchronized float[] processOverridden(short[] values, int scaleIndex) {
+        int saved = soIndex;
+        soIndex = scaleIndex;
+        try {
+            return processRange(values, (Map<String, double[]>) null);
+        } finally {
+            soIndex = saved;
+        }
+    }
+
+    private float[] processShorts(short[] values, int soIndex, int multiScaleDimLen) {
         float[] new_values = new float[values.length];
+        processShorts(values, soIndex, multiScaleDimLen, new_values, 0);
+        return new_values;
+    }
+
+    private void processShorts(short[] values, int soIndex, int multiScaleDimLen, float[] new_values, int destPos) {
+        // a single scale and offset: one table lookup per value
+        if (multiScaleDimLen == 1) {
+            float[] table = shortTable(soIndex, values.length);
+            if (table != null) {
+                for (int k = 0; k < values.length; k++) {
+                    new_values[destPos + k] = table[values[k] & 0xFFFF];
+                }
+                return;
+            }
+        }
+        scaleShorts(values, soIndex, multiScaleDimLen, new_values, destPos);
+    }
+
+    /* the per value transform, also used to fill the lookup tables */
+    private void scaleShorts(short[] values, int soIndex, int multiScaleDimLen, float[] new_values, int destPos) {
 
         float val = 0f;
         int i = 0;
@@ -540,13 +720,13 @@ public class RangeProcessor {
             }
 
             if (isMissing) {
-                new_values[k] = Float.NaN;
+                new_values[destPos + k] = Float.NaN;
                 continue;
             }
 
             if (rangeCheckBeforeScaling) {
                 if ((val < valid_low) || (val > valid_high)) {
-                    new_values[k] = Float.NaN;
+                    new_values[destPos + k] = Float.NaN;
                     continue;
                 }
             }
@@ -554,31 +734,30 @@ public class RangeProcessor {
             if (scale != null) {
                 if (unpack) {
                     if (multiScaleDimLen == 1) {
-                        new_values[k] = (scale[soIndex] * val) + offset[soIndex];
+                        new_values[destPos + k] = (scale[soIndex] * val) + offset[soIndex];
                     } else {
-                        new_values[k] = (scale[soIndex + k] * val) + offset[soIndex + k];
+                        new_values[destPos + k] = (scale[soIndex + k] * val) + offset[soIndex + k];
                     }
                 } else {
                     if (multiScaleDimLen == 1) {
-                        new_values[k] = scale[soIndex] * (val - offset[soIndex]);
+                        new_values[destPos + k] = scale[soIndex] * (val - offset[soIndex]);
                     } else {
 
-                        new_values[k] = scale[soIndex + k] * (val - offset[soIndex + k]);
+                        new_values[destPos + k] = scale[soIndex + k] * (val - offset[soIndex + k]);
                     }
                 }
             } else {
-                new_values[k] = val;
+                new_values[destPos + k] = val;
             }
 
             // do valid range check AFTER scaling?
             if (!rangeCheckBeforeScaling) {
-                if ((new_values[k] < valid_low) || (new_values[k] > valid_high)) {
-                    new_values[k] = Float.NaN;
+                if ((new_values[destPos + k] < valid_low) || (new_values[destPos + k] > valid_high)) {
+                    new_values[destPos + k] = Float.NaN;
                 }
             }
 
         }
-        return new_values;
     }
 
     /**
@@ -692,6 +871,48 @@ public class RangeProcessor {
         this.soIndex = idx;
     }
 
+    public int getMultiScaleIndex() {
+        return soIndex;
+    }
+
+    /*
+     * Lookup table giving the processed value of every short bit pattern for
+     * one scale index. Built on first use, and only for arrays big enough to
+     * pay for it; null otherwise.
+     */
+    private float[] shortTable(int scaleIndex, int length) {
+        synchronized (shortTables) {
+            float[] table = shortTables.get(scaleIndex);
+            if ((table == null) && (length >= MIN_SHORT_TABLE_LENGTH)) {
+                short[] patterns = new short[65536];
+                for (int i = 0; i < patterns.length; i++) {
+                    patterns[i] = (short) i;
+                }
+                table = new float[patterns.length];
+                scaleShorts(patterns, scaleIndex, 1, table, 0);
+                shortTables.put(scaleIndex, table);
+            }
+            return table;
+        }
+    }
+
+    /* same as shortTable for byte data, where the table is always worth it */
+    private float[] byteTable(int scaleIndex, int length) {
+        synchronized (byteTables) {
+            float[] table = byteTables.get(scaleIndex);
+            if (table == null) {
+                byte[] patterns = new byte[256];
+                for (int i = 0; i < patterns.length; i++) {
+                    patterns[i] = (byte) i;
+                }
+                table = new float[patterns.length];
+                scaleBytes(patterns, scaleIndex, 1, table, 0);
+                byteTables.put(scaleIndex, table);
+            }
+            return table;
+        }
+    }
+
     /**
      * Should be generalized. For now works for short to float conversions
      * 
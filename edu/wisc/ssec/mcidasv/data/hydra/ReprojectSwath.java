@@ -27,8 +27,13 @@
  */
 package edu.wisc.ssec.mcidasv.data.hydra;
 
+import java.lang.ref.SoftReference;
 import java.rmi.RemoteException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import visad.CoordinateSystem;
 import visad.FlatField;
@@ -38,7 +43,7 @@ import visad.RealTupleType;
 import visad.RealType;
 import visad.SetType;
 import visad.VisADException;
-import visad.util.ThreadManager;
+import visad.data.CachedFlatField;
 
 public class ReprojectSwath {
   private static int count = 0;
@@ -66,16 +71,44 @@ public class ReprojectSwath {
   int rngTupDim;
   FlatField grdFF;
 
-  int[][][] quads;
+  /* swath grid cell of the LL, LR, UL and UR corner around each grid point, 4 per point */
+  int[] quads;
   int mode;
   
+  /* offsets, in grid cells, searched in order for each corner, as {dx, dy} */
+  private static final int[][][] CORNER_PROBES = {
+     {{-1,-1}, {-1,-2}, {-2,-1}, {-2,-2}, {-3,-2}, {-2,-3}, {-1,-3}, {-3,-1}, {-3,-3}},  // LL
+     {{ 0,-1}, { 1,-1}, { 0,-2}, { 1,-2}, { 2,-1}, { 2,-2}, { 0,-3}, { 1,-3}, { 2,-3}},  // LR
+     {{-1, 0}, {-2, 0}, {-1, 1}, {-2, 1}, {-3, 1}, {-3, 2}, {-2, 2}, {-3, 0}, {-3,-1}},  // UL
+     {{ 0, 0}, { 0, 1}, { 1, 0}, { 1, 1}, { 1, 2}, { 2, 1}, { 2, 2}, { 2, 0}, { 2,-1}}   // UR
+  };
+  
+  /* CORNER_PROBES as offsets into the flattened grid */
+  int[][] cornerOffsets;
+  
+  /* grid points, or swath points, handled by one parallel task */
+  private static final int TILE_POINTS = 64*1024;
+  
+  /* grid points reprojected per strip by swathToGridTiled */
+  private static final int STRIP_POINTS = 256*1024;
+  
+  /* corner numbers, passed to nearest() in place of values to find the closest corner */
+  private static final float[] CORNER_IDS = {0f, 1f, 2f, 3f};
+  
+  /* resampling plans made for this grid and swath geometry, by mode */
+  private final Map<Integer, ResamplingPlan> plans = new HashMap<>();
+  
   public static final int NEAREST = 1;
   public static final int BILINEAR_VISAD = 0;
   
   int numProc = Runtime.getRuntime().availableProcessors();
   private static boolean doParallel = false;
+  
+  /* grids with more points than this are reprojected a strip at a time */
+  private static final int TILED_GRID_POINTS = 4096*4096;
 
-  private static ReprojectSwath lastReproject = null;
+  /* softly held, since its resampling plans are each the size of the grid */
+  private static SoftReference<ReprojectSwath> lastReproject = new SoftReference<>(null);
 
   public static void setDoParallel(boolean enable) {
      doParallel = enable;
@@ -106,26 +139,51 @@ public class ReprojectSwath {
   }
   
   public static FlatField swathToGrid(Linear2DSet grid, FlatField swath, int mode, boolean filter) throws Exception {
-    ReprojectSwath obj = null;
-    FlatField ff = null;
+    // large grids come back as a CachedFlatField, see swathToGridTiled
+    if (grid.getLength() > TILED_GRID_POINTS) {
+      return swathToGridTiled(grid, swath, mode, filter);
+    }
+    return forGeometry(grid, swath).reproject(swath, mode, filter);
+  }
+  
+  /**
+   * Same result as {@link #swathToGrid(Linear2DSet, FlatField, int, boolean)},
+   * but made a strip of grid rows at a time, for grids too large for the
+   * full-size scratch arrays and resampling plan used there. Only the
+   * returned range is the size of the grid; everything else scales with the
+   * swath or with one strip. swathToGrid switches to this for grids with
+   * more than 4096x4096 points.
+   *
+   * @param grid Target grid.
+   * @param swath Swath to reproject.
+   * @param mode {@link #NEAREST} or {@link #BILINEAR_VISAD}.
+   * @param filter Whether to smooth the result.
+   *
+   * @return the reprojected field, held by the data cache.
+   *
+   * @throws Exception if the swath cannot be projected onto the grid.
+   */
+  public static FlatField swathToGridTiled(Linear2DSet grid, FlatField swath, int mode, boolean filter) throws Exception {
+    ReprojectSwath obj = forGeometry(grid, swath);
+    float[][] range = swath.getFloats(false);
+    float[][] gridRange = new float[range.length][grid.getLength()];
+    obj.reprojectTiled(range, mode, filter, gridRange);
 
-    if (lastReproject != null) {
-       if (grid.equals(lastReproject.grid) && (swath.getDomainSet()).equals(lastReproject.swathDomain)) {
-         obj = lastReproject;
-         ff = obj.reproject(swath, mode, filter);
-       }
-       else {
+    RealTupleType rtt = ((SetType)grid.getType()).getDomain();
+    FunctionType type = (FunctionType) swath.getType();
+    return new CachedFlatField(new FunctionType(rtt, type.getRange()), grid, gridRange);
+  }
+  
+  private static ReprojectSwath forGeometry(Linear2DSet grid, FlatField swath) throws Exception {
+    // the bands of a product share one geometry, and with it the resampling plans
+    synchronized (ReprojectSwath.class) {
+       ReprojectSwath obj = lastReproject.get();
+       if (obj == null || !grid.equals(obj.grid) || !(swath.getDomainSet()).equals(obj.swathDomain)) {
          obj = new ReprojectSwath(grid, swath);
-         ff = obj.reproject(mode, filter);
+         lastReproject = new SoftReference<>(obj);
        }
+       return obj;
     }
-    else {
-      obj = new ReprojectSwath(grid, swath);
-      ff = obj.reproject(mode, filter);
-    }
-    lastReproject = obj;
-
-    return ff;
   }
   
   public ReprojectSwath() {
@@ -161,10 +219,14 @@ public class ReprojectSwath {
     
      allSwathGridCoords = new float[2][swathLen];
      allSwathGridIndexs = new int[swathLen];
-     swathGridCoord = new float[2][gridLen];
-     swathIndexAtGrid = new int[gridLen];
-    
-     quads = new int[gridYLen][gridXLen][4];
+     
+     cornerOffsets = new int[CORNER_PROBES.length][];
+     for (int c=0; c<CORNER_PROBES.length; c++) {
+        cornerOffsets[c] = new int[CORNER_PROBES[c].length];
+        for (int p=0; p<CORNER_PROBES[c].length; p++) {
+           cornerOffsets[c][p] = CORNER_PROBES[c][p][0] + CORNER_PROBES[c][p][1]*gridXLen;
+        }
+     }
    }
 
   /*
@@ -180,120 +242,250 @@ public class ReprojectSwath {
   */
     
   public FlatField reproject(int mode, boolean filter) throws Exception {
-    this.mode = mode;
-    
-    initGrid();
-
-    getBoundingQuadAtGridPts();
-
-    interpolateToGrid();
-    
-    if (filter) {
-       grdFF.setSamples(filter(), false);
-    }
-    else {
-       grdFF.setSamples(gridRange, false);
-    }
-    
-    return grdFF;
+    return reproject(swathRange, ftype, mode, filter);
   }
 
   private FlatField reproject(FlatField swath, int mode, boolean filter) throws Exception {
-     this.mode = mode;
-     swathRange = swath.getFloats(false);
-     ftype = (FunctionType) swath.getType();
+     return reproject(swath.getFloats(false), (FunctionType) swath.getType(), mode, filter);
+  }
+  
+  private FlatField reproject(float[][] range, FunctionType type, int mode, boolean filter) throws Exception {
+     ResamplingPlan plan = getResamplingPlan(range[0], mode);
      
-     initGrid();
+     float[][] values = plan.apply(range);
+     if (filter) {
+       values = filter(values);
+     }
      
-     getBoundingQuadAtGridPts();
+     RealTupleType rtt = ((SetType)grid.getType()).getDomain();
+     FlatField ff = new FlatField(new FunctionType(rtt, type.getRange()), grid);
+     ff.setSamples(values, false);
+     return ff;
+  }
+  
+  /**
+   * Resampling plan from this swath geometry to the grid, made on first use
+   * and reused for every band missing the same swath points as the one it
+   * was made from.
+   *
+   * @param swathValues First range component of the band to reproject.
+   * @param mode {@link #NEAREST} or {@link #BILINEAR_VISAD}.
+   *
+   * @return the plan.
+   *
+   * @throws VisADException if the corner search fails.
+   * @throws RemoteException if the corner search fails.
+   */
+  public synchronized ResamplingPlan getResamplingPlan(float[] swathValues, int mode) throws VisADException, RemoteException {
+     ResamplingPlan plan = plans.get(mode);
+     if (plan != null && plan.fits(swathValues)) {
+        return plan;
+     }
      
-     interpolateToGrid();
+     this.mode = mode;
+     bucketSwath(swathValues);
      
-     if (filter) {
-       grdFF.setSamples(filter(), false);
+     final int[] sources = new int[((mode == BILINEAR_VISAD) ? 4 : 1)*gridLen];
+     final float[] weights = (mode == BILINEAR_VISAD) ? new float[2*gridLen] : null;
+     Arrays.fill(sources, -1);
+     runTiles(3, gridYLen-4, 3, gridXLen-4, (ys, ye, xs, xe) ->
+        planPoints(ys, ye, xs, xe, mode, swathGridCoord, swathIndexAtGrid, 0, sources, weights, 0));
+     
+     plan = new ResamplingPlan(mode, gridLen, sources, weights, ResamplingPlan.validPoints(swathValues));
+     plans.put(mode, plan);
+     return plan;
+  }
+  
+  /**
+   * Reproject a swath range into a preallocated grid range, a strip of grid
+   * rows at a time. Scratch space is sized to one strip and reused, and no
+   * state is kept, so several bands may be reprojected at once.
+   *
+   * @param range Swath values, by component.
+   * @param mode {@link #NEAREST} or {@link #BILINEAR_VISAD}.
+   * @param filter Whether to smooth the result.
+   * @param gridRange Receives the grid values, by component; points without
+   *                  a value are set to NaN.
+   *
+   * @throws VisADException if the corner search fails.
+   * @throws RemoteException if the corner search fails.
+   */
+  public void reprojectTiled(float[][] range, int mode, boolean filter, float[][] gridRange) throws VisADException, RemoteException {
+     // swath points holding a value, by the grid row they fall in, in swath order
+     float[] values = range[0];
+     int[] rowStart = new int[gridYLen+1];
+     for (int s=0; s<values.length; s++) {
+        int k = allSwathGridIndexs[s];
+        if (!Float.isNaN(values[s]) && k >= 0 && k < gridLen) {
+           rowStart[k/gridXLen + 1]++;
+        }
      }
-     else {
-       grdFF.setSamples(gridRange, false);
+     for (int j=0; j<gridYLen; j++) {
+        rowStart[j+1] += rowStart[j];
+     }
+     int[] rowOrder = new int[rowStart[gridYLen]];
+     int[] rowNext = Arrays.copyOf(rowStart, gridYLen);
+     for (int s=0; s<values.length; s++) {
+        int k = allSwathGridIndexs[s];
+        if (!Float.isNaN(values[s]) && k >= 0 && k < gridLen) {
+           rowOrder[rowNext[k/gridXLen]++] = s;
+        }
+     }
+     rowNext = null;
+
+     // the filter reads one row either side, the corner probes three below and two above
+     int stripRows = Math.max(1, Math.min(gridYLen, STRIP_POINTS/gridXLen));
+     int halo = filter ? 1 : 0;
+     int planLen = (stripRows + 2*halo)*gridXLen;
+     int bucketLen = (stripRows + 2*halo + 5)*gridXLen;
+
+     final float[][] bucketCoord = new float[2][bucketLen];
+     final int[] bucketIndex = new int[bucketLen];
+     final int[] sources = new int[((mode == BILINEAR_VISAD) ? 4 : 1)*planLen];
+     final float[] weights = (mode == BILINEAR_VISAD) ? new float[2*planLen] : null;
+     float[][] stripRange = filter ? new float[range.length][planLen] : null;
+     float[][] filterWeights = filter ? filterWeights() : null;
+
+     for (int ys=0; ys<gridYLen; ys+=stripRows) {
+        int ye = Math.min(ys + stripRows, gridYLen) - 1;
+        final int iy0 = Math.max(ys - halo, 0);
+        int iy1 = Math.min(ye + halo, gridYLen-1);
+        final int by0 = Math.max(iy0 - 3, 0);
+        int by1 = Math.min(iy1 + 2, gridYLen-1);
+
+        bucketRows(rowOrder, rowStart, by0, by1, bucketCoord, bucketIndex);
+
+        Arrays.fill(sources, -1);
+        runTiles(Math.max(iy0, 3), Math.min(iy1, gridYLen-4), 3, gridXLen-4, (y0, y1, x0, x1) ->
+           planPoints(y0, y1, x0, x1, mode, bucketCoord, bucketIndex, by0, sources, weights, iy0));
+        ResamplingPlan plan = new ResamplingPlan(mode, (iy1 - iy0 + 1)*gridXLen, sources, weights, null);
+
+        for (int t=0; t<range.length; t++) {
+           if (filter) {
+              plan.apply(range[t], stripRange[t], 0);
+           }
+           else {
+              plan.apply(range[t], gridRange[t], ys*gridXLen);
+           }
+        }
+        if (filter) {
+           filterRows(stripRange, iy0, gridRange, ys, ye, filterWeights);
+        }
+     }
+  }
+
+  /* bucket the swath points of grid rows by0 to by1, inclusive, as bucketSwath does for the whole grid */
+  private void bucketRows(int[] rowOrder, int[] rowStart, int by0, int by1, float[][] bucketCoord, int[] bucketIndex) {
+     int len = (by1 - by0 + 1)*gridXLen;
+     Arrays.fill(bucketCoord[0], 0, len, -999.9f);
+     Arrays.fill(bucketCoord[1], 0, len, -999.9f);
+     Arrays.fill(bucketIndex, 0, len, -1);
+
+     int base = by0*gridXLen;
+     for (int p=rowStart[by0]; p<rowStart[by1+1]; p++) {
+        int swathIdx = rowOrder[p];
+        int k = allSwathGridIndexs[swathIdx] - base;
+        if (bucketIndex[k] == -1) {
+           bucketCoord[0][k] = allSwathGridCoords[0][swathIdx];
+           bucketCoord[1][k] = allSwathGridCoords[1][swathIdx];
+           bucketIndex[k] = swathIdx;
+        }
      }
-     
-     return grdFF;
   }
   
-   private void getBoundingQuadAtGridPts() throws VisADException, RemoteException {
-    int ystart = 3;
-    int ystop = gridYLen-4;
-    int subLen = ((ystop - ystart)+1)/numProc;
-    int rem = ((ystop - ystart)+1) % numProc;
-    
-    
-    ThreadManager threadManager = new ThreadManager("getBoundingQuadAtGridPts");
-    for (int i=0; i<numProc; i++) {
-        final int start = i*subLen + ystart;
-        final int stop = (i != numProc-1 ) ? (start + subLen - 1): (start + subLen + rem - 1);
-          threadManager.addRunnable(new ThreadManager.MyRunnable() {
-                  public void run()  throws Exception {
-                     getBoundingQuadAtGridPts(start, stop);
-                  }
-              });
-    }
-    
-    if (numProc == 1 || !doParallel) {
-       threadManager.runSequentially();
-    }
-    else {
-       threadManager.runAllParallel();
+  // start to stop inclusive; same choices as interpolateToGrid, recorded instead of applied.
+  // The buckets start at grid row bucketRow0, the plan at grid row planRow0.
+  private void planPoints(int grdYstart, int grdYstop, int grdXstart, int grdXstop, int mode,
+                          float[][] bucketCoord, int[] bucketIndex, int bucketRow0,
+                          int[] sources, float[] weights, int planRow0) {
+    float[][] corners = new float[2][4];
+    float[] pos = new float[2];
+    int[] quad = new int[4];
+    float[] occupied = bucketCoord[0];
+
+    for (int j=grdYstart; j<=grdYstop; j++) {
+       for (int i=grdXstart; i<=grdXstop; i++) {
+          int bktIdx = i + (j - bucketRow0)*gridXLen;
+          int planIdx = i + (j - planRow0)*gridXLen;
+          float gx = (float) i;
+          float gy = (float) j;
+
+          // as getBoundingQuadAtGridPts
+          for (int c=0; c<4; c++) {
+             quad[c] = -1;
+             for (int offset : cornerOffsets[c]) {
+                if (occupied[bktIdx + offset] != -999.9f) {
+                   quad[c] = bktIdx + offset;
+                   break;
+                }
+             }
+          }
+
+          if (mode == NEAREST) {
+             for (int c=0; c<4; c++) {
+                int loc = quad[c];
+                corners[0][c] = (loc >= 0) ? bucketCoord[0][loc] - gx : Float.NaN;
+                corners[1][c] = (loc >= 0) ? bucketCoord[1][loc] - gy : Float.NaN;
+             }
+             int loc = quad[(int) nearest(0f, 0f, corners, CORNER_IDS)];
+             sources[planIdx] = (loc >= 0) ? bucketIndex[loc] : -1;
+          }
+          else if (mode == BILINEAR_VISAD) {
+             if (!(quad[0] >= 0 && quad[1] >= 0 && quad[2] >= 0 && quad[3] >= 0)) {
+                continue;
+             }
+             for (int c=0; c<4; c++) {
+                corners[0][c] = bucketCoord[0][quad[c]];
+                corners[1][c] = bucketCoord[1][quad[c]];
+                sources[4*planIdx + c] = bucketIndex[quad[c]];
+             }
+             visad2DPosition(gy, gx, corners, pos);
+             weights[2*planIdx] = pos[0];
+             weights[2*planIdx + 1] = pos[1];
+          }
+       }
     }
   }
+  
+   private void getBoundingQuadAtGridPts() throws VisADException, RemoteException {
+    runTiles(3, gridYLen-4, 3, gridXLen-4, this::getBoundingQuadAtGridPts);
+  }
 
   // start to stop inclusive
-  private void getBoundingQuadAtGridPts(int grdYstart, int grdYstop) {
+  private void getBoundingQuadAtGridPts(int grdYstart, int grdYstop, int grdXstart, int grdXstop) {
+    // swathGridCoord, filled in initGrid, buckets the projected swath by grid
+    // cell, so each corner is a few fixed probes around the grid point
+    float[] occupied = swathGridCoord[0];
 
     for (int j=grdYstart; j<=grdYstop; j++) {
-       for (int i=3; i<gridXLen-3; i++) {
+       for (int i=grdXstart; i<=grdXstop; i++) {
           int grdIdx = i + j*gridXLen;
 
-          int ll = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "LL");
-          quads[j][i][0] = ll;
-
-          int lr = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "LR");
-          quads[j][i][1] = lr;
-
-          int ul = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "UL");
-          quads[j][i][2] = ul;
-
-          int ur = findSwathGridLoc(grdIdx, swathGridCoord, gridYLen, gridXLen, "UR");
-          quads[j][i][3] = ur;
+          for (int c=0; c<4; c++) {
+             int loc = -1;
+             for (int offset : cornerOffsets[c]) {
+                if (occupied[grdIdx + offset] != -999.9f) {
+                   loc = grdIdx + offset;
+                   break;
+                }
+             }
+             quads[4*grdIdx + c] = loc;
+          }
        }
     }
   }
   
   public void interpolateToGrid() throws VisADException, RemoteException {
-    int ystart = 3;
-    int ystop = gridYLen-4;
-    int subLen = ((ystop - ystart)+1)/numProc;
-    int rem = ((ystop - ystart)+1) % numProc;
-    
-    ThreadManager threadManager = new ThreadManager("interpolateToGrid");
-    for (int i=0; i<numProc; i++) {
-        final int start = i*subLen + ystart;
-        final int stop = (i != numProc-1 ) ? (start + subLen - 1): (start + subLen + rem - 1);
-          threadManager.addRunnable(new ThreadManager.MyRunnable() {
-                  public void run()  throws Exception {
-                     interpolateToGrid(start, stop);
-                  }
-              });
-    }
-    
-    if (numProc == 1 || !doParallel) {
-       threadManager.runSequentially();
-    }
-    else {
-       threadManager.runAllParallel();
-    }
+    runTiles(3, gridYLen-4, 3, gridXLen-4, this::interpolateToGrid);
   }
 
   // start to stop inclusive
   public void interpolateToGrid(int grdYstart, int grdYstop) throws VisADException, RemoteException {
+    interpolateToGrid(grdYstart, grdYstop, 3, gridXLen-4);
+  }
+
+  // start to stop inclusive
+  private void interpolateToGrid(int grdYstart, int grdYstop, int grdXstart, int grdXstop) throws VisADException, RemoteException {
 
     float[][] corners = new float[2][4];
     float[][] rngVals = new float[rngTupDim][4];
@@ -302,7 +494,7 @@ public class ReprojectSwath {
     float gy;
 
     for (int j=grdYstart; j<=grdYstop; j++) {
-       for (int i=3; i<gridXLen-3; i++) {
+       for (int i=grdXstart; i<=grdXstop; i++) {
           int grdIdx = i + j*gridXLen;
           gx = (float) (grdIdx % gridXLen);
           gy = (float) (grdIdx / gridXLen);
@@ -310,10 +502,10 @@ public class ReprojectSwath {
           java.util.Arrays.fill(corners[0], Float.NaN);
           java.util.Arrays.fill(corners[1], Float.NaN);
         
-          int ll = quads[j][i][0];
-          int lr = quads[j][i][1];
-          int ul = quads[j][i][2];
-          int ur = quads[j][i][3];
+          int ll = quads[4*grdIdx];
+          int lr = quads[4*grdIdx + 1];
+          int ul = quads[4*grdIdx + 2];
+          int ur = quads[4*grdIdx + 3];
 
           if (ll >= 0) {
              corners[0][0] = swathGridCoord[0][ll] - gx;
@@ -404,41 +596,33 @@ public class ReprojectSwath {
   }
 
  public void projectSwathToGrid() throws VisADException, RemoteException {
-    int subLen = trackLen/numProc;
-    int rem = trackLen % numProc;
-    
-    ThreadManager threadManager = new ThreadManager("projectSwathToGrid");
-    for (int i=0; i<numProc; i++) {
-        final int start = i*subLen;
-        final int stop = (i != numProc-1 ) ? (start + subLen - 1): (start + subLen + rem - 1);
-          threadManager.addRunnable(new ThreadManager.MyRunnable() {
-                  public void run()  throws Exception {
-                     projectSwathToGrid(start, stop);
-                  }
-              });
-    }
-    
-    if (numProc == 1 || !doParallel) {
-       threadManager.runSequentially();
-    }
-    else {
-       threadManager.runAllParallel();
-    }
+    runTiles(0, trackLen-1, 0, xtrackLen-1, this::projectSwathToGrid);
  }
  
  public void projectSwathToGrid(int trackStart, int trackStop) throws VisADException, RemoteException {
-
+    projectSwathToGrid(trackStart, trackStop, 0, xtrackLen-1);
+ }
+ 
+ // start to stop inclusive; the whole tile goes through the coordinate systems at once
+ private void projectSwathToGrid(int trackStart, int trackStop, int xtrackStart, int xtrackStop) throws VisADException, RemoteException {
+    int tileXLen = xtrackStop - xtrackStart + 1;
+    int[] swathIdxs = new int[(trackStop - trackStart + 1)*tileXLen];
     for (int j=trackStart; j <= trackStop; j++) {
-       for (int i=0; i < xtrackLen; i++) {
-         int swathIdx = j*xtrackLen + i;
+       for (int i=xtrackStart; i <= xtrackStop; i++) {
+         swathIdxs[(j-trackStart)*tileXLen + (i-xtrackStart)] = j*xtrackLen + i;
+       }
+    }
 
-         float[][] swathCoord = swathDomain.indexToValue(new int[] {swathIdx});
-         float[][] swathEarthCoord = swathCoordSys.toReference(swathCoord);
+    float[][] swathCoord = swathDomain.indexToValue(swathIdxs);
+    float[][] swathEarthCoord = swathCoordSys.toReference(swathCoord);
 
-         float[][] gridValue = gridCoordSys.fromReference(swathEarthCoord);
-         float[][] gridCoord = grid.valueToGrid(gridValue);
-         float g0 = gridCoord[0][0];
-         float g1 = gridCoord[1][0];
+    float[][] gridValue = gridCoordSys.fromReference(swathEarthCoord);
+    float[][] gridCoord = grid.valueToGrid(gridValue);
+
+    for (int s=0; s < swathIdxs.length; s++) {
+         int swathIdx = swathIdxs[s];
+         float g0 = gridCoord[0][s];
+         float g1 = gridCoord[1][s];
          int grdIdx = (g0 != g0 || g1 != g1) ? -1 : ((int) g0) + gridXLen * ((int) g1);
          int m=0;
          int n=0;
@@ -447,12 +631,102 @@ public class ReprojectSwath {
          allSwathGridCoords[0][swathIdx] = g0;
          allSwathGridCoords[1][swathIdx] = g1;
          allSwathGridIndexs[swathIdx] = k;
-             
+    }
+ }
+ 
+ /* work on rows ystart to ystop and columns xstart to xstop, inclusive */
+ private interface TileWork {
+    void run(int ystart, int ystop, int xstart, int xstop) throws VisADException, RemoteException;
+ }
+
+ /* halves its area until it is small enough; idle workers steal the other halves */
+ private static class Tile extends RecursiveAction {
+    private final TileWork work;
+    private final int ystart, ystop, xstart, xstop;
+
+    Tile(TileWork work, int ystart, int ystop, int xstart, int xstop) {
+       this.work = work;
+       this.ystart = ystart;
+       this.ystop = ystop;
+       this.xstart = xstart;
+       this.xstop = xstop;
+    }
+
+    @Override protected void compute() {
+       int rows = ystop - ystart + 1;
+       int cols = xstop - xstart + 1;
+       if ((long) rows*cols <= TILE_POINTS) {
+          try {
+             work.run(ystart, ystop, xstart, xstop);
+          } catch (VisADException | RemoteException e) {
+             throw new TileFailure(e);
+          }
        }
+       else if (rows >= cols) {
+          int mid = ystart + rows/2;
+          invokeAll(new Tile(work, ystart, mid-1, xstart, xstop), new Tile(work, mid, ystop, xstart, xstop));
+       }
+       else {
+          int mid = xstart + cols/2;
+          invokeAll(new Tile(work, ystart, ystop, xstart, mid-1), new Tile(work, ystart, ystop, mid, xstop));
+       }
+    }
+ }
+
+ private static class TileFailure extends RuntimeException {
+    TileFailure(Exception cause) {
+       super(cause);
+    }
+ }
+
+ private void runTiles(int ystart, int ystop, int xstart, int xstop, TileWork work) throws VisADException, RemoteException {
+    if (ystop < ystart || xstop < xstart) {
+       return;
+    }
+    if (numProc == 1 || !doParallel) {
+       work.run(ystart, ystop, xstart, xstop);
+       return;
+    }
+    try {
+       ForkJoinPool.commonPool().invoke(new Tile(work, ystart, ystop, xstart, xstop));
+    }
+    catch (RuntimeException e) {
+       // the pool may rethrow a copy, so look down the causes for the original
+       for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+          if (cause instanceof VisADException) {
+             throw (VisADException) cause;
+          }
+          if (cause instanceof RemoteException) {
+             throw (RemoteException) cause;
+          }
+       }
+       throw e;
     }
  }
  
  public void initGrid() throws VisADException {
+    bucketSwath(swathRange[0]);
+    if (quads == null) {
+       quads = new int[4*gridLen];
+    }
+    Arrays.fill(quads, -1);
+    
+    RealTupleType rtt = ((SetType)grid.getType()).getDomain();
+    grdFF = new FlatField(new FunctionType(rtt, ftype.getRange()), grid);
+    gridRange = grdFF.getFloats(false);
+    rngTupDim = gridRange.length;
+    for (int t=0; t<rngTupDim; t++) {
+       java.util.Arrays.fill(gridRange[t], Float.NaN);
+    }
+ }
+ 
+ /* index the projected swath points holding a value by the grid cell they fall in */
+ private void bucketSwath(float[] swathValues) {
+    // only made when needed, as swathToGridTiled does without them
+    if (swathGridCoord == null) {
+       swathGridCoord = new float[2][gridLen];
+       swathIndexAtGrid = new int[gridLen];
+    }
     Arrays.fill(swathGridCoord[0], -999.9f);
     Arrays.fill(swathGridCoord[1], -999.9f);
     Arrays.fill(swathIndexAtGrid, -1);
@@ -460,7 +734,7 @@ public class ReprojectSwath {
     for (int j=0; j < trackLen; j++) {
        for (int i=0; i < xtrackLen; i++) {
          int swathIdx = j*xtrackLen + i;
-         float val = swathRange[0][swathIdx];
+         float val = swathValues[swathIdx];
          int k = allSwathGridIndexs[swathIdx];
          
          if ( !(Float.isNaN(val)) && ((k >=0) && (k < gridLen)) ) { // val or val[rngTupDim] ?
@@ -472,24 +746,18 @@ public class ReprojectSwath {
          }
        }
     }
-    
-    for (int j=0; j<gridYLen; j++) {
-       for (int i=0; i<gridXLen; i++) {
-          java.util.Arrays.fill(quads[j][i], -1);
-       }
-    }
-    
-    RealTupleType rtt = ((SetType)grid.getType()).getDomain();
-    grdFF = new FlatField(new FunctionType(rtt, ftype.getRange()), grid);
-    gridRange = grdFF.getFloats(false);
-    rngTupDim = gridRange.length;
-    for (int t=0; t<rngTupDim; t++) {
-       java.util.Arrays.fill(gridRange[t], Float.NaN);
-    }
  }
 
- private float[][] filter() throws VisADException, RemoteException {
+ private float[][] filter(float[][] gridRange) throws VisADException, RemoteException {
+    int rngTupDim = gridRange.length;
+
+    float[][] newRange = new float[rngTupDim][gridLen];
+    filterRows(gridRange, 0, newRange, 0, gridYLen-1, filterWeights());
 
+    return newRange;
+ }
+
+ private static float[][] filterWeights() {
     double mag = 3.0;
     double sigma = 0.4;
 
@@ -514,23 +782,30 @@ public class ReprojectSwath {
         }
     }
 
-    float[][] newRange = new float[rngTupDim][gridLen];
+    return weights;
+ }
+
+ /* smooth grid rows ystart to ystop, inclusive, of src (which starts at grid row srcRow0) into newRange */
+ private void filterRows(float[][] src, int srcRow0, float[][] newRange, int ystart, int ystop, float[][] weights) {
+    int rngTupDim = src.length;
+
     for (int t=0; t<rngTupDim; t++) {
-       java.util.Arrays.fill(newRange[t], Float.NaN);
+       java.util.Arrays.fill(newRange[t], ystart*gridXLen, (ystop+1)*gridXLen, Float.NaN);
     }
     float[] sum = new float[rngTupDim];
 
-    for (int j=2; j<gridYLen-2; j++) {
+    for (int j=Math.max(ystart, 2); j<=Math.min(ystop, gridYLen-3); j++) {
        for (int i=2; i<gridXLen-2; i++) {
          int grdIdx = i + j*gridXLen;
+         int srcIdx = i + (j - srcRow0)*gridXLen;
 
          java.util.Arrays.fill(sum, 0f);
          for (int n=-1; n<=1; n++) {
             for (int m=-1; m<=1; m++) {
-               int k = grdIdx + (m + n*gridXLen);
+               int k = srcIdx + (m + n*gridXLen);
 
                for (int t=0; t<rngTupDim; t++) {
-                  sum[t] += weights[n+1][m+1]*gridRange[t][k];
+                  sum[t] += weights[n+1][m+1]*src[t][k];
                }
             }
          }
@@ -540,196 +815,7 @@ public class ReprojectSwath {
          }
        }
     }
-
-    return newRange;
- }
- private static int findSwathGridLoc(int grdIdx, float[][] swathGridCoord, int gridYLen, int gridXLen, String which) {
-  
-    int idx = -1;
-
-    int gy = grdIdx/gridXLen;
-    int gx = grdIdx % gridXLen;
-    
-    int yu1 = (gy+1)*gridXLen;
-    int yu2 = (gy+2)*gridXLen;
-    int yu3 = (gy+3)*gridXLen;    
-    
-    int yd1 = (gy-1)*gridXLen;
-    int yd2 = (gy-2)*gridXLen;
-    int yd3 = (gy-3)*gridXLen;
-
-    switch (which) {
-       case "LL":
-
-          idx = yd1 + (gx-1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd2 + (gx-1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd1 + (gx-2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd2 + (gx-2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-
-
-          idx = yd2 + (gx-3);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd3 + (gx-2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd3 + (gx-1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd1 + (gx-3);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd3 + (gx-3);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-
-          idx = -1;
-          break;
-       case "UL":
-          idx = (gy)*gridXLen + (gx-1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = (gy)*gridXLen + (gx-2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yu1 + (gx-1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yu1 + (gx-2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-
-          idx = yu1 + (gx-3);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yu2 + (gx-3);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yu2 + (gx-2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = (gy)*gridXLen + (gx-3);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd1 + (gx-3);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-
-          idx = -1;
-          break;
-       case "UR":
-          idx = (gy)*gridXLen + (gx);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yu1 + (gx);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = (gy)*gridXLen + (gx+1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yu1 + (gx+1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-
-          idx = yu2 + (gx+1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yu1 + (gx+2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yu2 + (gx+2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = (gy)*gridXLen + (gx+2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd1 + (gx+2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-
-          idx = -1;
-          break;
-       case "LR":
-          idx = yd1 + (gx);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd1 + (gx+1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd2 + (gx);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd2 + (gx+1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-
-          idx = yd1 + (gx+2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd2 + (gx+2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd3 + (gx);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd3 + (gx+1);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
-          idx = yd3 + (gx+2);
-          if (swathGridCoord[0][idx] != -999.9f) {
-             break;
-          }
- 
-          idx = -1;
-          break;
-    }
-
-    return idx;
  }
-
  /* Reference: David W. Zingg, University of Toronto, Downsview, Ontario, Canada
                Maurice Yarrow, Sterling Software, Arnes Research Center, Moffett Field, California. 
                NASA Technical Memorandum 102213
@@ -812,6 +898,21 @@ public class ReprojectSwath {
    return values[closest];
  }
  public static float visad2D(float gy, float gx, float[][] corners, float[] values) {
+    float[] pos = new float[2];
+    visad2DPosition(gy, gx, corners, pos);
+    float gxx = pos[0];
+    float gyy = pos[1];
+
+    // bilinear interpolation within the unit square:
+
+    float intrp = values[0]*(1f-gxx)*(1f-gyy) + values[2]*(1f-gxx)*gyy + values[3]*gxx*gyy + values[1]*gxx*(1f-gyy);
+
+
+    return intrp;
+ }
+
+ /* position of (gx, gy) within the unit square mapped onto corners, as {x, y}; NaN if outside */
+ static void visad2DPosition(float gy, float gx, float[][] corners, float[] pos) {
     boolean Pos = true;
 
     // A:0, B:1, C:2, D:3
@@ -931,12 +1032,8 @@ public class ReprojectSwath {
 
     }
 
-    // bilinear interpolation within the unit square:
-
-    float intrp = values[0]*(1f-gxx)*(1f-gyy) + values[2]*(1f-gxx)*gyy + values[3]*gxx*gyy + values[1]*gxx*(1f-gyy);
-
-
-    return intrp;
+    pos[0] = gxx;
+    pos[1] = gyy;
  }
 
 }
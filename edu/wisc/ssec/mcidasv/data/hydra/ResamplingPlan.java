@@ -0,0 +1,150 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package edu.wisc.ssec.mcidasv.data.hydra;
+
+import java.util.Arrays;
+
+/**
+ * Where each point of a target grid gets its value from in a swath, and with
+ * what weights, as worked out by {@link ReprojectSwath}. Once made, a plan
+ * reprojects any number of bands sharing the swath geometry without
+ * projecting or searching again.
+ *
+ * <p>Swath points that were missing in the band the plan was made from are
+ * left out of it, since the corner search skips them. A plan is therefore
+ * only reused for bands missing the same points; see {@link #fits(float[])}.
+ * Plans are immutable and can be applied from several threads at once.</p>
+ */
+public class ResamplingPlan {
+
+  private final int mode;
+  private final int gridLen;
+
+  /* per grid point: 1 (nearest) or 4 (LL, LR, UL, UR) swath indices, -1 for none */
+  private final int[] sources;
+
+  /* per grid point, bilinear only: position within the swath quad, x then y */
+  private final float[] weights;
+
+  /* swath points that held a value when the plan was made */
+  private final long[] valid;
+
+  ResamplingPlan(int mode, int gridLen, int[] sources, float[] weights, long[] valid) {
+    this.mode = mode;
+    this.gridLen = gridLen;
+    this.sources = sources;
+    this.weights = weights;
+    this.valid = valid;
+  }
+
+  /* bit set of the swath points that are not NaN */
+  static long[] validPoints(float[] swathValues) {
+    long[] bits = new long[(swathValues.length + 63) >>> 6];
+    for (int k=0; k<swathValues.length; k++) {
+      if (swathValues[k] == swathValues[k]) {
+        bits[k >>> 6] |= 1L << k;
+      }
+    }
+    return bits;
+  }
+
+  /**
+   * @param swathValues First range component of a band to reproject.
+   *
+   * @return Whether this plan gives the same result for the band as a
+   *         plan made from it would.
+   */
+  public boolean fits(float[] swathValues) {
+    return Arrays.equals(valid, validPoints(swathValues));
+  }
+
+  public int getMode() {
+    return mode;
+  }
+
+  /**
+   * Reproject every component of a swath range.
+   *
+   * @param swathRange Swath values, by component.
+   *
+   * @return Grid values, by component. Points without a value are NaN.
+   */
+  public float[][] apply(float[][] swathRange) {
+    float[][] gridRange = new float[swathRange.length][gridLen];
+    for (int t=0; t<swathRange.length; t++) {
+      apply(swathRange[t], gridRange[t]);
+    }
+    return gridRange;
+  }
+
+  /**
+   * Reproject one band.
+   *
+   * @param swathValues Swath values.
+   * @param gridValues Receives the grid values; points without a value are
+   *                   set to NaN.
+   */
+  public void apply(float[] swathValues, float[] gridValues) {
+    apply(swathValues, gridValues, 0);
+  }
+
+  /**
+   * Reproject one band into part of a larger range.
+   *
+   * @param swathValues Swath values.
+   * @param gridValues Receives the grid values from {@code gridPos} on;
+   *                   points without a value are set to NaN.
+   * @param gridPos Where the first grid point of the plan goes.
+   */
+  public void apply(float[] swathValues, float[] gridValues, int gridPos) {
+    if (mode == ReprojectSwath.NEAREST) {
+      for (int g=0; g<gridLen; g++) {
+        int s = sources[g];
+        gridValues[gridPos + g] = (s >= 0) ? swathValues[s] : Float.NaN;
+      }
+    }
+    else if (mode == ReprojectSwath.BILINEAR_VISAD) {
+      for (int g=0; g<gridLen; g++) {
+        int s0 = sources[4*g];
+        if (s0 < 0) {
+          gridValues[gridPos + g] = Float.NaN;
+          continue;
+        }
+        float gxx = weights[2*g];
+        float gyy = weights[2*g + 1];
+        // same expression as ReprojectSwath.visad2D, so the results match it exactly
+        gridValues[gridPos + g] = swathValues[s0]*(1f-gxx)*(1f-gyy) + swathValues[sources[4*g + 2]]*(1f-gxx)*gyy
+                      + swathValues[sources[4*g + 3]]*gxx*gyy + swathValues[sources[4*g + 1]]*gxx*(1f-gyy);
+      }
+    }
+    else {
+      Arrays.fill(gridValues, gridPos, gridPos + gridLen, Float.NaN);
+    }
+  }
+}
@@ -45,6 +45,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -158,6 +159,9 @@ public class SuomiNPPDataSource extends HydraDataSource {
 
     // need our own separator char since it's always Unix-style in the Suomi NPP files
     private static final String SEPARATOR_CHAR = "/";
+
+    // granule metadata remembered between sessions, in the user directory
+    private static final String GRANULE_INDEX_FILE = "granuleindex.txt";
     
     // date formatter for NASA L1B data, ex 2016-02-07T00:06:00.000Z
     SimpleDateFormat sdfNASA = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
@@ -357,158 +361,82 @@ public class SuomiNPPDataSource extends HydraDataSource {
     		nppPP = new SuomiNPPProductProfile();
     		
     		// for each source file provided, find the appropriate geolocation,
-    		// get the nominal time and various other granule-level metadata
+    		// get the nominal time and various other granule-level metadata.
+    		// Files opened before are taken from the granule index, the rest
+    		// are scanned in parallel.
+    		if (getIdv() != null) {
+    			GranuleIndex.setIndexFile(
+    					new File(getIdv().getStore().getUserDirectory(), GRANULE_INDEX_FILE));
+    		}
+    		Map<String, GranuleIndex.Entry> granules = new HashMap<>();
+    		Set<String> profilesLoaded = new HashSet<>();
     		Iterator keyIterator = filenameMap.keySet().iterator();
     		while (keyIterator.hasNext()) {
     			String keyStr = (String) keyIterator.next();
-        		List fileNames = (List) filenameMap.get(keyStr);
+        		List<String> fileNames = (List<String>) filenameMap.get(keyStr);
         		granuleCount = fileNames.size();
         		setProperty(Constants.PROP_GRANULE_COUNT, granuleCount + " Granule");
+        		List<GranuleIndex.Entry> entries = GranuleIndex.scan(fileNames, this::scanGranule);
     			for (int fileCount = 0; fileCount < granuleCount; fileCount++) {
-    				// need to open the main NetCDF file to determine the geolocation product
-    				NetcdfFile ncfile = null;
-    				String fileAbsPath = null;
-    				try {
-    					fileAbsPath = (String) fileNames.get(fileCount);
-    					logger.debug("Trying to open file: " + fileAbsPath);
-    					ncfile = NetcdfFile.open(fileAbsPath);
-    					if (! isCombinedProduct) {
-    						if (isNOAA) {
-	    						Attribute a = ncfile.findGlobalAttribute("N_GEO_Ref");
-	    						logger.debug("Value of GEO global attribute: " + a.getStringValue());
-	    						String tmpGeoProductID = a.getStringValue();
-	    						geoProductIDs.add(tmpGeoProductID);
-    						} else {
-    							geoProductIDs.add(keyStr.replace("L1B", "GEO"));
+    				GranuleIndex.Entry granule = entries.get(fileCount);
+    				granules.put(fileNames.get(fileCount), granule);
+    				if (! isCombinedProduct) {
+    					if (isNOAA) {
+    						geoProductIDs.add(granule.geoRef);
+    					} else {
+    						geoProductIDs.add(keyStr.replace("L1B", "GEO"));
+    					}
+    				}
+    				if (! granule.hasProducts) {
+    					continue;
+    				}
+    				if (isNOAA) {
+    					if (granule.instrument != null) {
+    						instrumentName = new Attribute("Instrument_Short_Name", granule.instrument);
+    					}
+    					if (granule.edrBand != null) {
+    						whichEDR = granule.edrBand;
+    					}
+    					for (String name : granule.productNames) {
+    						productName = name;
+    						// every granule of a product shares its XML Product Profile
+    						if (! profilesLoaded.add(productName)) {
+    							continue;
+    						}
+    						String productProfileFileName = nppPP.getProfileFileName(productName);
+    						logger.trace("Found profile: " + productProfileFileName);
+    						if (productProfileFileName == null) {
+    							throw new Exception("XML Product Profile not found in catalog");
+    						}
+    						try {
+    							nppPP.addMetaDataFromFile(productProfileFileName);
+    						} catch (Exception nppppe) {
+    							logger.error("Error parsing XML Product Profile: " + productProfileFileName);
+    							throw new Exception("XML Product Profile Error", nppppe);
     						}
     					}
-    					Group rg = ncfile.getRootGroup();
-
-    					List<Group> gl = rg.getGroups();
-    					if (gl != null) {
-    						for (Group g : gl) {
-    							logger.trace("Group name: " + g.getFullName());
-    							if (isNOAA) {
-									// when we find the Data_Products group, go down another group level and pull out 
-									// what we will use for nominal day and time (for now anyway).
-									// XXX TJJ fileCount check is so we don't count the GEO file in time array!
-									if (g.getFullName().contains("Data_Products")
-											&& (fileCount != fileNames.size())) {
-										List<Group> dpg = g.getGroups();
-
-										// cycle through once looking for XML Product Profiles
-										for (Group subG : dpg) {
-
-											String subName = subG.getFullName();
-											// use actual product, not geolocation, to id XML Product Profile
-											if (!subName.contains("-GEO")) {
-												// determine the instrument name (VIIRS, ATMS, CrIS, OMPS)
-												instrumentName = subG.findAttribute("Instrument_Short_Name");
-
-												// note any EDR products, will need to check for and remove
-												// fill scans later
-												Attribute adtt = subG.findAttribute("N_Dataset_Type_Tag");
-												if (adtt != null) {
-													String baseName = adtt.getStringValue();
-													if ((baseName != null) && (baseName.equals("EDR"))) {
-														// have to loop through sub groups variables to determine band
-														List<Variable> tmpVar = subG.getVariables();
-														for (Variable v : tmpVar) {
-															// if Imagery EDR attribute for band is specified, save it
-															Attribute mBand = v.findAttribute("Band_ID");
-															if (mBand != null) {
-																whichEDR = mBand.getStringValue();
-															}
-														}
-													}
-												}
-
-												// This is also where we find the attribute which tells us which
-												// XML Product Profile to use!
-												Attribute axpp = subG.findAttribute("N_Collection_Short_Name");
-												if (axpp != null) {
-													String baseName = axpp.getStringValue();
-													productName = baseName;
-													
-													// TJJ Apr 2018
-													// Hack so we can look at CrIS Full Spectrum, until we can
-													// track down existence of an official Product Profile for it.
-													// http://mcidas.ssec.wisc.edu/inquiry-v/?inquiry=2634
-													// The regular SDR profile lets us visualize it.
-													if (productName.equals("CrIS-FS-SDR")) productName = "CrIS-SDR";
-													
-													String productProfileFileName = nppPP
-															.getProfileFileName(productName);
-													logger.trace("Found profile: " + productProfileFileName);
-													if (productProfileFileName == null) {
-														throw new Exception(
-																"XML Product Profile not found in catalog");
-													}
-													try {
-														nppPP.addMetaDataFromFile(productProfileFileName);
-													} catch (Exception nppppe) {
-														logger.error("Error parsing XML Product Profile: "
-																+ productProfileFileName);
-														throw new Exception(
-																"XML Product Profile Error",
-																nppppe);
-													}
-												}
-											}
-										}
-
-										// 2nd pass through sub-group to extract date/time for aggregation
-										for (Group subG : dpg) {
-											List<Variable> vl = subG.getVariables();
-											for (Variable v : vl) {
-												Attribute aDate = v.findAttribute("AggregateBeginningDate");
-												Attribute aTime = v.findAttribute("AggregateBeginningTime");
-												// did we find the attributes we are looking for?
-												if ((aDate != null) && (aTime != null)) {
-													// set time for display to day/time of 1st granule examined
-												    if (! nameHasBeenSet) {
-												        String sDate = aDate.getStringValue();
-												        String sTime = aTime.getStringValue();
-												        logger.debug("For day/time, using: " + sDate
-												                + sTime.substring(0, sTime.indexOf('Z') - 3));
-												        Date d = sdf.parse(sDate
-												                + sTime.substring(0, sTime.indexOf('Z') - 3));
-												        theDate = d;
-												        setName(instrumentName.getStringValue() + " "
-												                + sdfOut.format(d));
-												        nameHasBeenSet = true;
-												    }
-													break;
-												}
-											}
-										}
-										if (! nameHasBeenSet) {
-											throw new VisADException(
-													"No date time found in Suomi NPP granule");
-										}
-									} 
-								} else {
-									// NASA data - date/time from global attribute
-									// set time for display to day/time of 1st granule examined
-									Attribute timeStartNASA = ncfile.findGlobalAttribute("time_coverage_start");
-									Date d = sdfNASA.parse(timeStartNASA.getStringValue());
-									theDate = d;
-									if (! nameHasBeenSet) {
-										instrumentName = ncfile.findGlobalAttribute("instrument");
-										setName(instrumentName.getStringValue() + " " + sdfOut.format(d));
-										nameHasBeenSet = true;
-									}
-								}    	    			
+    					// set time for display to day/time of 1st granule examined
+    					if (! nameHasBeenSet) {
+    						if (granule.beginTime == null) {
+    							throw new VisADException("No date time found in Suomi NPP granule");
     						}
+    						logger.debug("For day/time, using: " + granule.beginTime);
+    						Date d = sdf.parse(granule.beginTime);
+    						theDate = d;
+    						setName(instrumentName.getStringValue() + " " + sdfOut.format(d));
+    						nameHasBeenSet = true;
+    					}
+    				} else {
+    					// NASA data - set time for display to day/time of 1st granule examined
+    					Date d = sdfNASA.parse(granule.beginTime);
+    					theDate = d;
+    					if (! nameHasBeenSet) {
+    						instrumentName = new Attribute("instrument", granule.instrument);
+    						setName(instrumentName.getStringValue() + " " + sdfOut.format(d));
+    						nameHasBeenSet = true;
     					}
-    				} catch (Exception e) {
-    					logger.warn("Exception during processing of file: " + fileAbsPath);
-    					throw (e);
-    				} finally {
-    					ncfile.close();
     				}
     			}
-
     		}
     		
     		// build each union aggregation element
@@ -542,128 +470,17 @@ public class SuomiNPPDataSource extends HydraDataSource {
     			
     			if (! isCombinedProduct) {
 	
-	    			if (isNOAA) {
-						geoFilename = s.substring(0,
-								s.lastIndexOf(File.separatorChar) + 1);
-						// check if we have the whole file name or just the prefix
-						String geoProductID = iterator.next();
-						if (geoProductID.endsWith("h5")) {
-							geoFilename += geoProductID;
-						} else {
-							geoFilename += geoProductID;
-							geoFilename += s.substring(s
-									.lastIndexOf(File.separatorChar) + 6);
-						}
-						// Be sure file as specified by N_GEO_Ref global attribute really is there.
-						File tmpGeo = new File(geoFilename);
-						if (!tmpGeo.exists()) {
-							// Ok, the expected file defined (supposedly) exactly by a global att is not there...
-							// We need to check for similar geo files with different creation dates
-							String geoFileRelative = geoFilename
-									.substring(geoFilename
-											.lastIndexOf(File.separatorChar) + 1);
-							// also check for Terrain Corrected version of geo
-							String geoTerrainCorrected = geoFileRelative;
-							geoTerrainCorrected = geoTerrainCorrected.replace(
-									"OD", "TC");
-							geoTerrainCorrected = geoTerrainCorrected.replace(
-									"MG", "TC");
-
-							// now we make a file filter, and see if a matching geo file is present
-							File fList = new File(
-									geoFilename.substring(
-											0,
-											geoFilename
-													.lastIndexOf(File.separatorChar) + 1)); // current directory
-
-							FilenameFilter geoFilter = new FilenameFilter() {
-								public boolean accept(File dir, String name) {
-									if (name.matches(JPSSUtilities.SUOMI_GEO_REGEX_NOAA)) {
-										return true;
-									} else {
-										return false;
-									}
-								}
-							};
-
-							File[] files = fList.listFiles(geoFilter);
-							for (File file : files) {
-								if (file.isDirectory()) {
-									continue;
-								}
-								// get the file name for convenience
-								String fName = file.getName();
-								// is it one of the standard Ellipsoid geo types we are looking for?
-								if (fName.substring(0, 5).equals(
-										geoFileRelative.substring(0, 5))) {
-									int geoStartIdx = geoFileRelative
-											.indexOf("_d");
-									int prdStartIdx = fName.indexOf("_d");
-									String s1 = geoFileRelative.substring(
-											geoStartIdx, geoStartIdx + JPSSUtilities.NOAA_CREATION_DATE_INDEX);
-									String s2 = fName.substring(prdStartIdx,
-											prdStartIdx + JPSSUtilities.NOAA_CREATION_DATE_INDEX);
-									if (s1.equals(s2)) {
-										geoFilename = s
-												.substring(
-														0,
-														s.lastIndexOf(File.separatorChar) + 1)
-												+ fName;
-										break;
-									}
-								}
-								// same check, but for Terrain Corrected version
-								if (fName.substring(0, 5).equals(
-										geoTerrainCorrected.substring(0, 5))) {
-									int geoStartIdx = geoTerrainCorrected
-											.indexOf("_d");
-									int prdStartIdx = fName.indexOf("_d");
-									String s1 = geoTerrainCorrected.substring(
-											geoStartIdx, geoStartIdx + JPSSUtilities.NOAA_CREATION_DATE_INDEX);
-									String s2 = fName.substring(prdStartIdx,
-											prdStartIdx + JPSSUtilities.NOAA_CREATION_DATE_INDEX);
-									if (s1.equals(s2)) {
-										geoFilename = s
-												.substring(
-														0,
-														s.lastIndexOf(File.separatorChar) + 1)
-												+ fName;
-										break;
-									}
-								}
-							}
-						} 
-					} else {
-						// NASA format
-						geoFilename = JPSSUtilities.replaceLast(s, "L1B", "GEO");
-						// get list of files in current directory
-						File fList = 
-							new File(geoFilename.substring(0, geoFilename.lastIndexOf(File.separatorChar) + 1)); 
-						// make a NASA style file filter, and see if a matching geo file is present
-						FilenameFilter geoFilter = new FilenameFilter() {
-							public boolean accept(File dir, String name) {
-								if (name.matches(JPSSUtilities.SUOMI_GEO_REGEX_NASA)) {
-									return true;
-								} else {
-									return false;
-								}
-							}
-						};
-						File[] files = fList.listFiles(geoFilter);
-						for (File file : files) {
-							if (file.isDirectory()) {
-								continue;
-							}
-							// get the file name for convenience
-							String fName = file.getName();
-							String tmpStr = geoFilename.substring(s.lastIndexOf(File.separatorChar) + 1,
-									s.lastIndexOf(File.separatorChar) + (JPSSUtilities.NASA_CREATION_DATE_INDEX + 1));
-							if (fName.substring(0, JPSSUtilities.NASA_CREATION_DATE_INDEX).equals(tmpStr.substring(0, JPSSUtilities.NASA_CREATION_DATE_INDEX))) {
-								geoFilename = s.substring(0, s.lastIndexOf(File.separatorChar) + 1) + fName;
-								break;
-							}
-						}
-					}
+	    			String geoProductID = isNOAA ? iterator.next() : null;
+	    			GranuleIndex.Entry granule = granules.get(s);
+	    			if (granule != null) {
+	    				geoFilename = GranuleIndex.getGeoFile(granule);
+	    			}
+	    			if (geoFilename == null) {
+	    				geoFilename = findGeoFilename(s, geoProductID);
+	    				if (granule != null) {
+	    					GranuleIndex.setGeoFile(granule, geoFilename);
+	    				}
+	    			}
 					logger.debug("Determined GEO file name should be: " + geoFilename);
 	    			fGeo.setAttribute("location", geoFilename);
 	    			// add this to list used if we create a zipped bundle
@@ -1298,6 +1115,9 @@ public class SuomiNPPDataSource extends HydraDataSource {
     		    ncdfal.add((NetCDFFile) netCDFReader);
     		}
     		
+    		// keep the geolocation pairings for the next time these files are opened
+    		GranuleIndex.save();
+    		
     	} catch (Exception e) {
     		logger.error("cannot create NetCDF reader for files selected", e);
     		if (e.getMessage() != null && e.getMessage().equals("XML Product Profile Error")) {
@@ -1582,6 +1402,245 @@ public class SuomiNPPDataSource extends HydraDataSource {
     	setProperties(tmpHt);
     }
 
+	/*
+	 * Reads the granule-level metadata of one source file. Runs on the
+	 * GranuleIndex scanner threads, so it must not touch shared state.
+	 */
+	private GranuleIndex.Entry scanGranule(String fileAbsPath) throws Exception {
+		GranuleIndex.Entry granule = new GranuleIndex.Entry(new File(fileAbsPath));
+		NetcdfFile ncfile = null;
+		try {
+			logger.debug("Trying to open file: " + fileAbsPath);
+			ncfile = NetcdfFile.open(fileAbsPath);
+			if (isNOAA) {
+				Attribute a = ncfile.findGlobalAttribute("N_GEO_Ref");
+				if (a != null) {
+					logger.debug("Value of GEO global attribute: " + a.getStringValue());
+					granule.geoRef = a.getStringValue();
+				}
+			}
+			List<Group> gl = ncfile.getRootGroup().getGroups();
+			if (gl == null) {
+				return granule;
+			}
+			for (Group g : gl) {
+				logger.trace("Group name: " + g.getFullName());
+				if (isNOAA) {
+					// when we find the Data_Products group, go down another group level and pull out 
+					// what we will use for nominal day and time (for now anyway).
+					if (g.getFullName().contains("Data_Products")) {
+						granule.hasProducts = true;
+						List<Group> dpg = g.getGroups();
+
+						// cycle through once looking for XML Product Profiles
+						for (Group subG : dpg) {
+							// use actual product, not geolocation, to id XML Product Profile
+							if (subG.getFullName().contains("-GEO")) {
+								continue;
+							}
+							// determine the instrument name (VIIRS, ATMS, CrIS, OMPS)
+							Attribute ain = subG.findAttribute("Instrument_Short_Name");
+							granule.instrument = (ain == null) ? null : ain.getStringValue();
+
+							// note any EDR products, will need to check for and remove
+							// fill scans later
+							Attribute adtt = subG.findAttribute("N_Dataset_Type_Tag");
+							if ((adtt != null) && "EDR".equals(adtt.getStringValue())) {
+								// have to loop through sub groups variables to determine band
+								for (Variable v : subG.getVariables()) {
+									// if Imagery EDR attribute for band is specified, save it
+									Attribute mBand = v.findAttribute("Band_ID");
+									if (mBand != null) {
+										granule.edrBand = mBand.getStringValue();
+									}
+								}
+							}
+
+							// This is also where we find the attribute which tells us which
+							// XML Product Profile to use!
+							Attribute axpp = subG.findAttribute("N_Collection_Short_Name");
+							if (axpp != null) {
+								String baseName = axpp.getStringValue();
+								// TJJ Apr 2018
+								// Hack so we can look at CrIS Full Spectrum, until we can
+								// track down existence of an official Product Profile for it.
+								// http://mcidas.ssec.wisc.edu/inquiry-v/?inquiry=2634
+								// The regular SDR profile lets us visualize it.
+								if (baseName.equals("CrIS-FS-SDR")) baseName = "CrIS-SDR";
+								granule.productNames.add(baseName);
+							}
+						}
+
+						// 2nd pass through sub-group to extract date/time for aggregation
+						for (Group subG : dpg) {
+							if (granule.beginTime != null) {
+								break;
+							}
+							for (Variable v : subG.getVariables()) {
+								Attribute aDate = v.findAttribute("AggregateBeginningDate");
+								Attribute aTime = v.findAttribute("AggregateBeginningTime");
+								// did we find the attributes we are looking for?
+								if ((aDate != null) && (aTime != null)) {
+									String sTime = aTime.getStringValue();
+									granule.beginTime = aDate.getStringValue()
+											+ sTime.substring(0, sTime.indexOf('Z') - 3);
+									break;
+								}
+							}
+						}
+					}
+				} else {
+					// NASA data - date/time and instrument from global attributes
+					granule.hasProducts = true;
+					Attribute timeStartNASA = ncfile.findGlobalAttribute("time_coverage_start");
+					granule.beginTime = timeStartNASA.getStringValue();
+					Attribute ain = ncfile.findGlobalAttribute("instrument");
+					granule.instrument = (ain == null) ? null : ain.getStringValue();
+					break;
+				}
+			}
+		} catch (Exception e) {
+			logger.warn("Exception during processing of file: " + fileAbsPath);
+			throw (e);
+		} finally {
+			if (ncfile != null) {
+				ncfile.close();
+			}
+		}
+		return granule;
+	}
+
+	/*
+	 * Geolocation file for data granule s. NOAA geolocation is named by the
+	 * granule's N_GEO_Ref attribute, possibly with a different creation date,
+	 * NASA geolocation by the granule name.
+	 */
+	private String findGeoFilename(String s, String geoProductID) {
+		String geoFilename = null;
+		if (isNOAA) {
+			geoFilename = s.substring(0,
+					s.lastIndexOf(File.separatorChar) + 1);
+			// check if we have the whole file name or just the prefix
+			if (geoProductID.endsWith("h5")) {
+				geoFilename += geoProductID;
+			} else {
+				geoFilename += geoProductID;
+				geoFilename += s.substring(s
+						.lastIndexOf(File.separatorChar) + 6);
+			}
+			// Be sure file as specified by N_GEO_Ref global attribute really is there.
+			File tmpGeo = new File(geoFilename);
+			if (!tmpGeo.exists()) {
+				// Ok, the expected file defined (supposedly) exactly by a global att is not there...
+				// We need to check for similar geo files with different creation dates
+				String geoFileRelative = geoFilename
+						.substring(geoFilename
+								.lastIndexOf(File.separatorChar) + 1);
+				// also check for Terrain Corrected version of geo
+				String geoTerrainCorrected = geoFileRelative;
+				geoTerrainCorrected = geoTerrainCorrected.replace(
+						"OD", "TC");
+				geoTerrainCorrected = geoTerrainCorrected.replace(
+						"MG", "TC");
+
+				// now we make a file filter, and see if a matching geo file is present
+				File fList = new File(
+						geoFilename.substring(
+								0,
+								geoFilename
+										.lastIndexOf(File.separatorChar) + 1)); // current directory
+
+				FilenameFilter geoFilter = new FilenameFilter() {
+					public boolean accept(File dir, String name) {
+						if (name.matches(JPSSUtilities.SUOMI_GEO_REGEX_NOAA)) {
+							return true;
+						} else {
+							return false;
+						}
+					}
+				};
+
+				File[] files = fList.listFiles(geoFilter);
+				for (File file : files) {
+					if (file.isDirectory()) {
+						continue;
+					}
+					// get the file name for convenience
+					String fName = file.getName();
+					// is it one of the standard Ellipsoid geo types we are looking for?
+					if (fName.substring(0, 5).equals(
+							geoFileRelative.substring(0, 5))) {
+						int geoStartIdx = geoFileRelative
+								.indexOf("_d");
+						int prdStartIdx = fName.indexOf("_d");
+						String s1 = geoFileRelative.substring(
+								geoStartIdx, geoStartIdx + JPSSUtilities.NOAA_CREATION_DATE_INDEX);
+						String s2 = fName.substring(prdStartIdx,
+								prdStartIdx + JPSSUtilities.NOAA_CREATION_DATE_INDEX);
+						if (s1.equals(s2)) {
+							geoFilename = s
+									.substring(
+											0,
+											s.lastIndexOf(File.separatorChar) + 1)
+									+ fName;
+							break;
+						}
+					}
+					// same check, but for Terrain Corrected version
+					if (fName.substring(0, 5).equals(
+							geoTerrainCorrected.substring(0, 5))) {
+						int geoStartIdx = geoTerrainCorrected
+								.indexOf("_d");
+						int prdStartIdx = fName.indexOf("_d");
+						String s1 = geoTerrainCorrected.substring(
+								geoStartIdx, geoStartIdx + JPSSUtilities.NOAA_CREATION_DATE_INDEX);
+						String s2 = fName.substring(prdStartIdx,
+								prdStartIdx + JPSSUtilities.NOAA_CREATION_DATE_INDEX);
+						if (s1.equals(s2)) {
+							geoFilename = s
+									.substring(
+											0,
+											s.lastIndexOf(File.separatorChar) + 1)
+									+ fName;
+							break;
+						}
+					}
+				}
+			} 
+		} else {
+			// NASA format
+			geoFilename = JPSSUtilities.replaceLast(s, "L1B", "GEO");
+			// get list of files in current directory
+			File fList = 
+				new File(geoFilename.substring(0, geoFilename.lastIndexOf(File.separatorChar) + 1)); 
+			// make a NASA style file filter, and see if a matching geo file is present
+			FilenameFilter geoFilter = new FilenameFilter() {
+				public boolean accept(File dir, String name) {
+					if (name.matches(JPSSUtilities.SUOMI_GEO_REGEX_NASA)) {
+						return true;
+					} else {
+						return false;
+					}
+				}
+			};
+			File[] files = fList.listFiles(geoFilter);
+			for (File file : files) {
+				if (file.isDirectory()) {
+					continue;
+				}
+				// get the file name for convenience
+				String fName = file.getName();
+				String tmpStr = geoFilename.substring(s.lastIndexOf(File.separatorChar) + 1,
+						s.lastIndexOf(File.separatorChar) + (JPSSUtilities.NASA_CREATION_DATE_INDEX + 1));
+				if (fName.substring(0, JPSSUtilities.NASA_CREATION_DATE_INDEX).equals(tmpStr.substring(0, JPSSUtilities.NASA_CREATION_DATE_INDEX))) {
+					geoFilename = s.substring(0, s.lastIndexOf(File.separatorChar) + 1) + fName;
+					break;
+				}
+			}
+		}
+		return geoFilename;
+	}
+
     /* (non-Javadoc)
      * @see ucar.unidata.data.DataSourceImpl#initDataChoice(ucar.unidata.data.DataChoice)
      */
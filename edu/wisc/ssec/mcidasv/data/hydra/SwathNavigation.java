@@ -280,12 +280,11 @@ public class SwathNavigation implements Navigation  {
 
   Gridded2DSet createInterpSet() throws Exception {
     Gridded2DSet gset = null;
-    if (type == Float.TYPE) {
-      float[] lonValues = reader.getFloatArray(lon_array_name, geo_start, geo_count, geo_stride);
-      float[] latValues = reader.getFloatArray(lat_array_name, geo_start, geo_count, geo_stride);
+    if ((type == Float.TYPE) || (type == Short.TYPE)) {
+      float[][] lonlat = readLonLat(geo_start, geo_count, geo_stride);
                                                                                                                                              
       gset = new Gridded2DSet(RealTupleType.SpatialEarth2DTuple,
-                     new float[][] {lonValues, latValues},
+                     lonlat,
                          geo_count[idx_order[0]], geo_count[idx_order[1]],
                             null, null, null, false, false);
     }
@@ -298,8 +297,26 @@ public class SwathNavigation implements Navigation  {
                        geo_count[idx_order[0]], geo_count[idx_order[1]],
                            null, null, null, false);
     }
-    else if (type == Short.TYPE) {
-      short[] values = reader.getShortArray(lon_array_name, geo_start, geo_count, geo_stride);
+    return gset;
+  }
+
+  /**
+   * Longitudes and latitudes at the given geolocation indices. They are cut
+   * out of the full resolution geolocation shared by every navigation on the
+   * same reader, which is read from the file only the first time.
+   */
+  float[][] readLonLat(int[] start, int[] count, int[] stride) throws Exception {
+    String processing = type.getName();
+    if (type == Short.TYPE) {
+      processing += ":" + scale_name + ":" + offset_name + ":" + fillValue_name;
+    }
+    return GeolocationStore.get(reader, lon_array_name, lat_array_name, processing,
+                                start, count, stride, this::loadLonLat);
+  }
+
+  private float[][] loadLonLat(int[] start, int[] count, int[] stride) throws Exception {
+    if (type == Short.TYPE) {
+      short[] values = reader.getShortArray(lon_array_name, start, count, stride);
       Map<String, Object> metadata = new HashMap<>();
       metadata.put(SwathAdapter.array_name, lon_array_name);
       metadata.put(SwathAdapter.scale_name, scale_name);
@@ -308,7 +325,7 @@ public class SwathNavigation implements Navigation  {
       RangeProcessor rangeProcessor = RangeProcessor.createRangeProcessor(reader, metadata);
       float[] lonValues = rangeProcessor.processRange(values, null);
       
-      values = reader.getShortArray(lat_array_name, geo_start, geo_count, geo_stride);
+      values = reader.getShortArray(lat_array_name, start, count, stride);
       metadata = new HashMap<>();
       metadata.put(SwathAdapter.array_name, lat_array_name);
       metadata.put(SwathAdapter.scale_name, scale_name);
@@ -317,17 +334,33 @@ public class SwathNavigation implements Navigation  {
       rangeProcessor = RangeProcessor.createRangeProcessor(reader, metadata);
       float[] latValues = rangeProcessor.processRange(values, null);
 
-
-      gset = new Gridded2DSet(RealTupleType.SpatialEarth2DTuple,
-                     new float[][] {lonValues, latValues},
-                         geo_count[idx_order[0]], geo_count[idx_order[1]],
-                            null, null, null, false, false);
-
+      return new float[][] {lonValues, latValues};
     }
-    return gset;
+    float[] lonValues = reader.getFloatArray(lon_array_name, start, count, stride);
+    float[] latValues = reader.getFloatArray(lat_array_name, start, count, stride);
+    return new float[][] {lonValues, latValues};
   }
 
+  /** Default for {@link #setGeolocationCacheSize(int)}, in megabytes. */
+  public static final int DEFAULT_GEOLOCATION_CACHE_MB = GeolocationStore.DEFAULT_SIZE_MB;
+
+  /**
+   * Set how much full resolution geolocation is kept for reuse by later
+   * subsets and strides of the same swaths.
+   *
+   * @param megabytes Store size. Zero turns the store off.
+   */
+  public static void setGeolocationCacheSize(int megabytes) {
+    GeolocationStore.setMaxBytes(megabytes * 1024L * 1024L);
+  }
 
+  /**
+   * @param offHeap Whether stored geolocation is kept in direct buffers,
+   *                outside the Java heap.
+   */
+  public static void setGeolocationOffHeap(boolean offHeap) {
+    GeolocationStore.setOffHeap(offHeap);
+  }
 
   public static Linear2DSet getNavigationDomain(double data_x_start, double data_x_stop, double data_x_stride,
                                          double data_y_start, double data_y_stop, double data_y_stride,
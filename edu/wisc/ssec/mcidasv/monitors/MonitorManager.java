@@ -27,6 +27,7 @@
  */
 package edu.wisc.ssec.mcidasv.monitors;
 
+import java.lang.management.ManagementFactory;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
@@ -34,14 +35,29 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
+import javax.management.NotificationEmitter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.wisc.ssec.mcidasv.monitors.cache.CacheMonitor;
 import edu.wisc.ssec.mcidasv.monitors.memory.MemoryMonitor;
 import edu.wisc.ssec.mcidasv.monitors.time.TimeMonitor;
 
 import ucar.unidata.util.CacheManager;
 
+/**
+ * Owns the McIDAS-V monitors. Monitors are only polled while something is
+ * listening to them; the memory monitor also subscribes to the JVM's
+ * memory threshold notifications so that the cache is cleared as soon as
+ * the old generation fills up, whether or not anybody is listening.
+ */
 public class MonitorManager {
 
-    public enum MonitorType { MEMORY, TIME };
+    private static final Logger logger =
+        LoggerFactory.getLogger(MonitorManager.class);
+
+    public enum MonitorType { MEMORY, TIME, CACHE };
 
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(3);
 
@@ -50,8 +66,17 @@ public class MonitorManager {
     private final Map<Monitorable, ScheduledFuture<?>> woot = new ConcurrentHashMap<>();
 
     public MonitorManager() {
-        monitors.put(MonitorType.MEMORY, new MemoryMonitor(this, 75, 95));
+        MemoryMonitor memory = new MemoryMonitor(this, 75, 95);
+        monitors.put(MonitorType.MEMORY, memory);
         monitors.put(MonitorType.TIME, new TimeMonitor());
+        monitors.put(MonitorType.CACHE, new CacheMonitor());
+        try {
+            NotificationEmitter emitter =
+                (NotificationEmitter)ManagementFactory.getMemoryMXBean();
+            emitter.addNotificationListener(memory, null, null);
+        } catch (Exception e) {
+            logger.warn("Could not listen for memory notifications", e);
+        }
     }
 
     public void addListener(final MonitorType type, final Monitoring listener) {
@@ -0,0 +1,126 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+package edu.wisc.ssec.mcidasv.monitors.cache;
+
+import java.text.DecimalFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.swing.SwingUtilities;
+
+import visad.data.DataCacheManager;
+
+import edu.wisc.ssec.mcidasv.monitors.Monitorable;
+import edu.wisc.ssec.mcidasv.monitors.Monitoring;
+
+/**
+ * Polls the {@link DataCacheManager} statistics while something is
+ * listening. The same numbers are available over JMX, see
+ * {@link visad.data.DataCacheManagerMXBean}.
+ */
+public class CacheMonitor implements Monitorable {
+
+    private final DecimalFormat fmt = new DecimalFormat("#0.0");
+
+    private final List<Monitoring> listeners = new CopyOnWriteArrayList<>();
+
+    public CacheMonitor() {
+        // nothin!
+    }
+
+    public void addMonitor(final Monitoring listener) {
+        listeners.add(listener);
+    }
+
+    public void removeMonitor(final Monitoring listener) {
+        if (!listeners.isEmpty()) {
+            listeners.remove(listener);
+        }
+    }
+
+    public boolean hasMonitors() {
+        return !listeners.isEmpty();
+    }
+
+    public void run() {
+        DataCacheManager cache = DataCacheManager.getCacheManager();
+        long hits = cache.getHitCount();
+        long misses = cache.getMissCount();
+        long requests = hits + misses;
+        String hitRatio = (requests == 0) ? "-" : fmt.format(100.0 * hits / requests) + '%';
+
+        String usage = " Cache: " + mb(cache.getTotalSize()) + '/' + mb(cache.getMaxSize()) + " MB"
+                       + "  off-heap: " + mb(cache.getOffHeapSize()) + '/' + mb(cache.getOffHeapBudget()) + " MB"
+                       + "  waiting to spill: " + mb(cache.getPendingSpillSize()) + " MB"
+                       + "  entries: " + cache.getEntryCount();
+        String traffic = " Hits: " + hits + "  misses: " + misses + " (off-heap " + cache.getOffHeapReloadCount()
+                         + ", disk " + cache.getDiskReloadCount() + ")  hit ratio: " + hitRatio
+                         + "  spilled: " + mb(cache.getBytesSpilled()) + " MB"
+                         + "  reloaded: " + mb(cache.getBytesReloaded()) + " MB";
+        long[] bounds = cache.getLatencyBucketsMillis();
+        String latency = " Spill: " + histogram(bounds, cache.getSpillLatencyCounts())
+                         + "   Disk reload: " + histogram(bounds, cache.getDiskReloadLatencyCounts());
+
+        final CacheMonitorEvent event = new CacheMonitorEvent(this, usage, traffic, latency,
+            cache.getResidentBytesByOwner(), cache.getResidentBytesByLabel());
+        for (final Monitoring listener : listeners) {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    listener.monitorUpdated(event);
+                }
+            });
+        }
+    }
+
+    private String mb(final long bytes) {
+        return fmt.format(bytes / 1048576.0);
+    }
+
+    /**
+     * Formats the non-empty buckets of a latency histogram, e.g.
+     * {@code "<5ms:12 <20ms:3"}.
+     */
+    private static String histogram(final long[] bounds, final long[] counts) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            if (i < bounds.length) {
+                sb.append('<').append(bounds[i]);
+            } else {
+                sb.append(">=").append(bounds[bounds.length - 1]);
+            }
+            sb.append("ms:").append(counts[i]);
+        }
+        return (sb.length() == 0) ? "-" : sb.toString();
+    }
+}
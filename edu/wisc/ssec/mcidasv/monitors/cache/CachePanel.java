@@ -0,0 +1,120 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+package edu.wisc.ssec.mcidasv.monitors.cache;
+
+import static javax.swing.GroupLayout.DEFAULT_SIZE;
+import static javax.swing.GroupLayout.Alignment.LEADING;
+
+import java.util.Map;
+
+import javax.swing.GroupLayout;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.table.DefaultTableModel;
+
+import edu.wisc.ssec.mcidasv.monitors.MonitorEvent;
+import edu.wisc.ssec.mcidasv.monitors.MonitorManager.MonitorType;
+import edu.wisc.ssec.mcidasv.monitors.Monitoring;
+
+/**
+ * Live view of the data cache: usage, hits and misses, spill and reload
+ * times, and how much of the heap is held by each data source and by
+ * each kind of entry.
+ */
+@SuppressWarnings("serial")
+public class CachePanel extends JPanel implements Monitoring {
+    private final JLabel usageLabel = new JLabel("");
+    private final JLabel trafficLabel = new JLabel("");
+    private final JLabel latencyLabel = new JLabel("");
+    private final DefaultTableModel residency =
+        new DefaultTableModel(new Object[] { "Resident by", "Name", "MB" }, 0) {
+            @Override public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+    public CachePanel() {
+        initComponents();
+    }
+
+    // runs in the EDT! be cautious!
+    public void monitorUpdated(final MonitorEvent event) {
+        if (event.getType() != MonitorType.CACHE)
+            return;
+
+        CacheMonitorEvent cacheEvent = (CacheMonitorEvent)event;
+        usageLabel.setText(cacheEvent.getUsage());
+        trafficLabel.setText(cacheEvent.getTraffic());
+        latencyLabel.setText(cacheEvent.getLatency());
+        residency.setRowCount(0);
+        addRows("Data source", cacheEvent.getBytesByOwner());
+        addRows("Label", cacheEvent.getBytesByLabel());
+        repaint();
+    }
+
+    private void addRows(final String group, final Map<String, Long> bytes) {
+        for (Map.Entry<String, Long> entry : bytes.entrySet()) {
+            residency.addRow(new Object[] {
+                group, entry.getKey(), String.format("%.1f", entry.getValue() / 1048576.0)
+            });
+        }
+    }
+
+    private void initComponents() {
+        JTable table = new JTable(residency);
+        table.setFillsViewportHeight(true);
+        JScrollPane tableScroller = new JScrollPane(table);
+
+        GroupLayout layout = new GroupLayout(this);
+        this.setLayout(layout);
+        layout.setHorizontalGroup(
+            layout.createParallelGroup(LEADING)
+            .addGroup(layout.createSequentialGroup()
+                .addContainerGap()
+                .addGroup(layout.createParallelGroup(LEADING)
+                    .addComponent(usageLabel)
+                    .addComponent(trafficLabel)
+                    .addComponent(latencyLabel)
+                    .addComponent(tableScroller, DEFAULT_SIZE, DEFAULT_SIZE, Short.MAX_VALUE))
+                .addContainerGap()));
+
+        layout.setVerticalGroup(
+            layout.createParallelGroup(LEADING)
+            .addGroup(layout.createSequentialGroup()
+                .addComponent(usageLabel)
+                .addComponent(trafficLabel)
+                .addComponent(latencyLabel)
+                .addComponent(tableScroller, DEFAULT_SIZE, DEFAULT_SIZE, Short.MAX_VALUE)));
+
+        usageLabel.setToolTipText("Heap used/max, off-heap used/max, data waiting to be written to disk");
+        trafficLabel.setToolTipText("Hits are served from the heap; misses are reloaded from off-heap memory or disk");
+        latencyLabel.setToolTipText("How many writes and reloads took less than each time");
+    }
+}
@@ -28,19 +28,39 @@
 package edu.wisc.ssec.mcidasv.monitors.memory;
 
 import java.awt.Color;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryUsage;
 import java.text.DecimalFormat;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
 import javax.swing.SwingUtilities;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import ucar.unidata.util.Msg;
 
+import visad.data.DataCacheManager;
+
 import edu.wisc.ssec.mcidasv.monitors.MonitorManager;
 import edu.wisc.ssec.mcidasv.monitors.Monitorable;
 import edu.wisc.ssec.mcidasv.monitors.Monitoring;
 
-public class MemoryMonitor implements Monitorable {
+/**
+ * Reports memory use to its listeners and clears the cache when the heap
+ * gets full. Rather than counting how often a polled sample was over the
+ * threshold, this arms the JVM's usage and collection usage thresholds on
+ * the old generation and reacts to the notifications, which arrive as
+ * soon as the threshold is crossed. See {@link MonitorManager}.
+ */
+public class MemoryMonitor implements Monitorable, NotificationListener {
+
+    private static final Logger logger =
+        LoggerFactory.getLogger(MemoryMonitor.class);
 
     private final DecimalFormat fmt = new DecimalFormat("#0");
 
@@ -50,9 +70,7 @@ public class MemoryMonitor implements Monitorable {
 
     private final int percentCancel;
 
-    private int timesAboveThreshold;
-
-    private long lastTimeRanGC = -1;
+    private volatile long lastTimeRanGC = -1;
 
     private final List<Monitoring> listeners = new CopyOnWriteArrayList<>();
 
@@ -60,6 +78,71 @@ public class MemoryMonitor implements Monitorable {
         this.manager = manager;
         percentThreshold = threshold;
         percentCancel = cancel;
+        armThresholds(percentThreshold);
+    }
+
+    /**
+     * Set the usage and collection usage thresholds of the old generation
+     * pools to {@code percentThreshold}; see
+     * {@link DataCacheManager#armMemoryThresholds(double)}. Listeners have to
+     * check the reported usage against their own limit; see
+     * {@link #percentUsed(Notification)}.
+     *
+     * @param percentThreshold Percentage of the pool maximum.
+     */
+    public static void armThresholds(final int percentThreshold) {
+        try {
+            DataCacheManager.armMemoryThresholds(percentThreshold / 100.0);
+        } catch (Exception e) {
+            logger.warn("Could not set memory pool thresholds", e);
+        }
+    }
+
+    /**
+     * How full the pool behind a threshold notification was.
+     *
+     * @param notification Notification from the {@code MemoryMXBean}.
+     *
+     * @return Percentage of the pool maximum (or of its committed size, if
+     *         it has no maximum) in use, or -1 if {@code notification} is
+     *         not a usage or collection usage threshold notification.
+     */
+    public static int percentUsed(final Notification notification) {
+        String type = notification.getType();
+        if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+            && !MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+            return -1;
+        }
+        MemoryUsage usage = MemoryNotificationInfo.from((CompositeData)notification.getUserData()).getUsage();
+        long limit = (usage.getMax() > 0) ? usage.getMax() : usage.getCommitted();
+        if (limit <= 0) {
+            return -1;
+        }
+        return (int)(100.0 * usage.getUsed() / limit);
+    }
+
+    /**
+     * Called on a JVM thread when an old generation pool crosses its
+     * threshold. If the pool is over this monitor's own threshold, clears
+     * the cache (at most every 5 seconds) and gives the listeners an update
+     * right away.
+     *
+     * @param notification The memory notification.
+     * @param handback Not used.
+     */
+    public void handleNotification(final Notification notification, final Object handback) {
+        // the pool threshold may have been armed lower by someone else
+        if (percentUsed(notification) < percentThreshold) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastTimeRanGC > 5000) {
+            manager.scheduleClearCache();
+            lastTimeRanGC = now;
+        }
+        if (hasMonitors()) {
+            run();
+        }
     }
 
     public void addMonitor(final Monitoring listener) {
@@ -89,23 +172,8 @@ public class MemoryMonitor implements Monitorable {
         int percent = (int)(100.0f * (usedMem / totalMem));
         int stretchedPercent = 0;
 
-        long now = System.currentTimeMillis();
-        if (lastTimeRanGC < 0) {
-            lastTimeRanGC = now;
-        }
-
         if (percent > percentThreshold) {
-            timesAboveThreshold++;
-            if (timesAboveThreshold > 5) {
-                if (now - lastTimeRanGC > 5000) {
-                    manager.scheduleClearCache();
-                    lastTimeRanGC = now;
-                }
-            }
             stretchedPercent = Math.round((percent - percentThreshold) * (100.0f / (100.0f - percentThreshold)));
-        } else {
-            timesAboveThreshold = 0;
-            lastTimeRanGC = now;
         }
 
         String output = " " + Msg.msg("Memory:") + " " +
@@ -38,11 +38,17 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 
+import java.lang.management.ManagementFactory;
+
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 
 import java.util.Date;
 
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
 import javax.swing.GroupLayout;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -58,7 +64,15 @@ import ucar.unidata.util.CacheManager;
 import ucar.unidata.util.GuiUtils;
 import ucar.unidata.util.Msg;
 
-public class MemoryMonitor extends JPanel implements Runnable {
+/**
+ * Memory (or clock) readout for the status bar. The readout is refreshed
+ * every couple of seconds while running. Clearing the cache when memory
+ * gets low is not driven by that refresh: the monitor listens for the
+ * JVM's old generation threshold notifications, arming the threshold
+ * itself if none lower is set, and reacts to those immediately when usage
+ * is over its own threshold.
+ */
+public class MemoryMonitor extends JPanel implements Runnable, NotificationListener {
     
     private static final Logger logger =
         LoggerFactory.getLogger(MemoryMonitor.class);
@@ -77,9 +91,6 @@ public class MemoryMonitor extends JPanel implements Runnable {
     /** percent threshold */
     private final int percentThreshold;
 
-    /** number of times above the threshold */
-    private int timesAboveThreshold = 0;
-    
     /** percent cancel */
     private final int percentCancel;
     
@@ -93,7 +104,7 @@ public class MemoryMonitor extends JPanel implements Runnable {
     private JLabel label = new JLabel("");
     
     /** Keep track of the last time we ran the gc and cleared the cache */
-    private static long lastTimeRanGC = -1;
+    private static volatile long lastTimeRanGC = -1;
     
 //    /** Keep track of the IDV so we can try to cancel loads if mem usage gets high */
 //    private IntegratedDataViewer idv;
@@ -263,6 +274,11 @@ public class MemoryMonitor extends JPanel implements Runnable {
     public synchronized void stop() {
         running = false;
         label.setEnabled(false);
+        try {
+            ((NotificationEmitter)ManagementFactory.getMemoryMXBean()).removeNotificationListener(this);
+        } catch (ListenerNotFoundException e) {
+            // was never added
+        }
     }
 
     /**
@@ -275,9 +291,38 @@ public class MemoryMonitor extends JPanel implements Runnable {
             triedToCancel = false;
             thread = new Thread(this, "Memory monitor");
             thread.start();
+            edu.wisc.ssec.mcidasv.monitors.memory.MemoryMonitor.armThresholds(percentThreshold);
+            try {
+                ((NotificationEmitter)ManagementFactory.getMemoryMXBean()).addNotificationListener(this, null, null);
+            } catch (Exception e) {
+                logger.warn("Could not listen for memory notifications", e);
+            }
         }
     }
 
+    /**
+     * Called on a JVM thread when the old generation crosses its usage or
+     * collection usage threshold. If it is over this monitor's own
+     * threshold, clears the cache, at most every 5 seconds, and refreshes
+     * the readout right away.
+     *
+     * @param notification The memory notification.
+     * @param handback Not used.
+     */
+    public void handleNotification(Notification notification, Object handback) {
+        // the pool threshold is shared, and may have been armed lower
+        if (edu.wisc.ssec.mcidasv.monitors.memory.MemoryMonitor.percentUsed(notification) < percentThreshold) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastTimeRanGC > 5000) {
+            // For now just clear the cache. Don't run the gc
+            CacheManager.clearCache();
+            lastTimeRanGC = now;
+        }
+        SwingUtilities.invokeLater(this::showStats);
+    }
+
     /**
      * Run the GC and clear the cache
      */
@@ -309,29 +354,13 @@ public class MemoryMonitor extends JPanel implements Runnable {
         usedMemory = usedMemory / MEGABYTE;
         highWaterMark = highWaterMark / MEGABYTE;
 
-        long now = System.currentTimeMillis();
-        if (lastTimeRanGC < 0) {
-            lastTimeRanGC = now;
-        }
-
-        // For the threshold use the physical memory
+        // For the threshold use the physical memory. Clearing the cache is
+        // left to handleNotification.
         int percent = (int)(100.0f * (usedMemory / totalMemory));
         if (percent > percentThreshold) {
-            timesAboveThreshold++;
-            if (timesAboveThreshold > 5) {
-                // Only run every 5 seconds
-                if (now - lastTimeRanGC > 5000) {
-                    // For now just clear the cache. Don't run the gc
-                    CacheManager.clearCache();
-                    // runGC();
-                    lastTimeRanGC = now;
-                }
-            }
             int stretchedPercent = Math.round(((float)percent - (float)percentThreshold) * (100.0f / (100.0f - (float)percentThreshold)));
             label.setBackground(doColorThing(stretchedPercent));
         } else {
-            timesAboveThreshold = 0;
-            lastTimeRanGC = now;
             label.setBackground(doColorThing(0));
         }
         
@@ -0,0 +1,198 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+package ucar.unidata.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Equality and area coverage of {@link DataCacheKey}.
+ */
+public class DataCacheKeyTest {
+
+    private static DataSelection selection(double minLat, double maxLat,
+                                           double minLon, double maxLon,
+                                           int stride) {
+        DataSelection selection = new DataSelection();
+        GeoSelection  geo       = selection.getGeoSelection(true);
+        geo.setBoundingBox(new GeoLocationInfo(minLat, minLon, maxLat,
+                maxLon));
+        geo.setXStride(stride);
+        geo.setYStride(stride);
+        return selection;
+    }
+
+    private static DataCacheKey key(double minLat, double maxLat,
+                                    double minLon, double maxLon,
+                                    int stride) {
+        return DataCacheKey.create(null,
+                                   selection(minLat, maxLat, minLon,
+                                             maxLon, stride), null);
+    }
+
+    @Test public void equalValuesMakeEqualKeys() {
+        DataCacheKey a = new DataCacheKey("choice", new int[] { 1, 2 }, null);
+        DataCacheKey b = new DataCacheKey("choice", new int[] { 1, 2 }, null);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, new DataCacheKey("choice", new int[] { 1, 3 },
+                null));
+        assertNotEquals(a, new DataCacheKey("other", new int[] { 1, 2 },
+                null));
+        assertFalse(a.equals("choice"));
+    }
+
+    @Test public void varargsAreCopied() {
+        Object[]     parts = { "a", "b" };
+        DataCacheKey key   = new DataCacheKey(parts);
+        int          hash  = key.hashCode();
+        parts[1] = "c";
+        assertEquals(new DataCacheKey("a", "b"), key);
+        assertEquals(hash, key.hashCode());
+    }
+
+    @Test public void selectionsAreCopied() {
+        List<Object> times = new ArrayList<Object>();
+        times.add(Integer.valueOf(0));
+        DataSelection selection = selection(10, 20, 30, 40, 1);
+        selection.setTimes(times);
+        DataCacheKey key = DataCacheKey.create(null, selection, null);
+        times.add(Integer.valueOf(1));
+        assertNotEquals(key, DataCacheKey.create(null, selection, null));
+    }
+
+    @Test public void requesterIsNotPartOfTheKey() {
+        Hashtable<Object, Object> props = new Hashtable<Object, Object>();
+        props.put(DataChoice.PROP_REQUESTER, "display 1");
+        DataCacheKey a = DataCacheKey.create(null, selection(10, 20, 30, 40, 1), props);
+        props.put(DataChoice.PROP_REQUESTER, "display 2");
+        DataCacheKey b = DataCacheKey.create(null, selection(10, 20, 30, 40, 1), props);
+        assertEquals(a, b);
+        assertEquals(a, key(10, 20, 30, 40, 1));
+    }
+
+    @Test public void areaFreeKeyIgnoresBoxAndStrides() {
+        DataCacheKey a = key(10, 20, 30, 40, 1);
+        DataCacheKey b = key(0, 50, -10, 80, 2);
+        assertNotEquals(a, b);
+        assertEquals(a.getAreaFreeKey(), b.getAreaFreeKey());
+        assertSame(a.getAreaFreeKey(), a.getAreaFreeKey().getAreaFreeKey());
+    }
+
+    @Test public void coversSmallerBoxesAndCoarserStrides() {
+        DataCacheKey big = key(0, 50, -120, -60, 2);
+        assertTrue(big.covers(big));
+        assertTrue(big.covers(key(10, 40, -110, -70, 2)));
+        assertTrue(big.covers(key(10, 40, -110, -70, 4)));
+        assertFalse(big.covers(key(10, 40, -110, -70, 1)));
+        assertFalse(big.covers(key(10, 40, -110, -70, 3)));
+        assertFalse(big.covers(key(-10, 40, -110, -70, 2)));
+        assertFalse(big.covers(key(10, 60, -110, -70, 2)));
+        assertFalse(big.covers(key(10, 40, -130, -70, 2)));
+        assertFalse(big.covers(key(10, 40, -110, -50, 2)));
+        assertFalse(key(10, 40, -110, -70, 2).covers(big));
+    }
+
+    @Test public void coversAcrossLongitudeConventions() {
+        // the same area as 0..360 and as -180..180
+        DataCacheKey east = key(0, 50, 240, 300, 1);
+        assertTrue(east.covers(key(10, 40, -110, -70, 1)));
+        assertTrue(key(0, 50, -120, -60, 1).covers(key(10, 40, 250, 290, 1)));
+        assertFalse(east.covers(key(10, 40, -130, -70, 1)));
+    }
+
+    @Test public void coversAcrossTheDateline() {
+        DataCacheKey pacific = key(-30, 30, 150, 210, 1);
+        assertTrue(pacific.covers(key(-10, 10, 170, 190, 1)));
+        assertTrue(pacific.covers(key(-10, 10, -175, -160, 1)));
+        assertTrue(pacific.covers(key(-10, 10, 155, 165, 1)));
+        assertFalse(pacific.covers(key(-10, 10, -160, -140, 1)));
+        assertFalse(pacific.covers(key(-10, 10, 140, 160, 1)));
+    }
+
+    @Test public void wholeGlobeCoversAnyLongitude() {
+        DataCacheKey globe = key(-90, 90, -180, 180, 1);
+        assertTrue(globe.covers(key(-10, 10, 170, 190, 1)));
+        assertTrue(globe.covers(key(-10, 10, 300, 350, 1)));
+        assertTrue(key(-90, 90, 0, 360, 1).covers(key(-10, 10, -30, 30, 1)));
+    }
+
+    @Test public void differentDataIsNeverCovered() {
+        DataSelection other = selection(10, 40, -110, -70, 2);
+        other.setFromLevel("500");
+        assertFalse(key(0, 50, -120, -60, 2).covers(
+            DataCacheKey.create(null, other, null)));
+        assertFalse(new DataCacheKey("a").covers(new DataCacheKey("a")));
+    }
+
+    @Test public void stableKeysOfSeparatelyBuiltSelectionsMatch() {
+        // same contents, different iteration order
+        Hashtable small = new Hashtable(7);
+        Hashtable large = new Hashtable(101);
+        for (int i = 0; i < 20; i++) {
+            small.put("p" + i, i);
+            large.put("p" + (19 - i), 19 - i);
+        }
+        DataSelection a = selection(10, 20, -100, -90, 2);
+        a.putProperty("level", "500");
+        DataSelection b = selection(10, 20, -100, -90, 2);
+        b.putProperty("level", "500");
+
+        String key = DataCacheKey.createStable(null, a, small);
+        assertNotNull(key);
+        assertEquals(key, DataCacheKey.createStable(null, b, large));
+        assertNotEquals(key, DataCacheKey.createStable(null,
+                selection(10, 20, -100, -90, 3), large));
+    }
+
+    @Test public void stableStringsIgnoreSetOrder() {
+        Set<String> a = new LinkedHashSet<String>(Arrays.asList("x", "y", "z"));
+        Set<String> b = new LinkedHashSet<String>(Arrays.asList("z", "x", "y"));
+        assertEquals(DataCacheKey.toStableString(a),
+                     DataCacheKey.toStableString(b));
+    }
+
+    @Test public void identityStringsAreNotStable() {
+        assertNull(DataCacheKey.toStableString(
+            Arrays.asList("a", new Object())));
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+package ucar.unidata.data.grid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Cutting a request out of a cached grid's index range with
+ * {@link GridUtil#getSubRange}.
+ */
+public class GridUtilTest {
+
+    /**
+     * The grid indices a read of first..last with the given stride
+     * returns, as a netCDF {@code Range} would.
+     */
+    private static int[] coldRead(int first, int last, int stride) {
+        int[] indices = new int[(last - first) / stride + 1];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = first + i * stride;
+        }
+        return indices;
+    }
+
+    /**
+     * The grid indices of the samples picked out of a cached read of
+     * haveFirst..haveLast.
+     */
+    private static int[] cacheHit(int haveFirst, int haveLast,
+                                  int haveStride, int wantFirst,
+                                  int wantLast, int wantStride) {
+        int[] have = coldRead(haveFirst, haveLast, haveStride);
+        int[] want = coldRead(wantFirst, wantLast, wantStride);
+        int[] sub  = GridUtil.getSubRange(haveFirst, have.length,
+                                          haveStride, wantFirst,
+                                          want.length, wantStride);
+        if (sub == null) {
+            return null;
+        }
+        int[] indices = new int[(sub[1] - sub[0]) / sub[2] + 1];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = have[sub[0] + i * sub[2]];
+        }
+        return indices;
+    }
+
+    /**
+     * Was every point of a read of want also read for have?
+     */
+    private static boolean isCovered(int[] have, int[] want) {
+        boolean[] read = new boolean[have[have.length - 1] + 1];
+        for (int index : have) {
+            read[index] = true;
+        }
+        for (int index : want) {
+            if ((index >= read.length) || !read[index]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test public void cacheHitMatchesColdRead() {
+        int size = 24;
+        for (int haveStride = 1; haveStride <= 3; haveStride++) {
+            for (int haveFirst = 0; haveFirst < size; haveFirst++) {
+                for (int haveLast = haveFirst; haveLast < size;
+                        haveLast++) {
+                    for (int wantStride = 1; wantStride <= 6;
+                            wantStride++) {
+                        for (int wantFirst = 0; wantFirst < size;
+                                wantFirst++) {
+                            for (int wantLast = wantFirst; wantLast < size;
+                                    wantLast++) {
+                                int[] hit = cacheHit(haveFirst, haveLast,
+                                                haveStride, wantFirst,
+                                                wantLast, wantStride);
+                                int[] read = coldRead(wantFirst, wantLast,
+                                                 wantStride);
+                                assertEquals(isCovered(coldRead(haveFirst,
+                                        haveLast, haveStride), read),
+                                             hit != null);
+                                if (hit != null) {
+                                    assertArrayEquals(read, hit);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test public void insideAndInPhase() {
+        // cached 2..20 every 2nd point, want 6..18 every 4th
+        assertArrayEquals(new int[] { 2, 8, 2 },
+                          GridUtil.getSubRange(2, 10, 2, 6, 4, 4));
+        assertNotNull(cacheHit(0, 23, 1, 5, 17, 3));
+    }
+
+    @Test public void outOfPhaseFallsBackToRead() {
+        // cached even points can't answer a request starting on an odd one
+        assertNull(GridUtil.getSubRange(0, 12, 2, 3, 4, 2));
+        // nor a stride that is not a multiple of the cached one
+        assertNull(GridUtil.getSubRange(0, 12, 2, 0, 4, 3));
+    }
+
+    @Test public void outsideFallsBackToRead() {
+        assertNull(GridUtil.getSubRange(4, 10, 1, 2, 4, 1));
+        assertNull(GridUtil.getSubRange(4, 10, 1, 10, 5, 1));
+        // the last cached point is 4 + 9 * 2 = 22
+        assertNull(GridUtil.getSubRange(4, 10, 2, 20, 3, 2));
+        assertNotNull(GridUtil.getSubRange(4, 10, 2, 20, 2, 2));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+package visad.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+
+import org.junit.Test;
+
+/**
+ * Round trips through {@link DataCacheCodec}.
+ */
+public class DataCacheCodecTest {
+
+    private static Object roundTrip(Object array, Object empty) throws Exception {
+        int length = java.lang.reflect.Array.getLength(array);
+        for (int block = 0; block < DataCacheCodec.blockCount(length); block++) {
+            byte[] bytes = DataCacheCodec.encode(array, block);
+            DataCacheCodec.decode(bytes, 0, bytes.length, empty, block);
+        }
+        return empty;
+    }
+
+    private static void assertSameBits(float[] expected, float[] actual) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("value " + i, Float.floatToRawIntBits(expected[i]),
+                Float.floatToRawIntBits(actual[i]));
+        }
+    }
+
+    @Test public void floatsWithNaNRuns() throws Exception {
+        Random random = new Random(1);
+        // more than two blocks, the last one partial
+        float[] values = new float[2 * DataCacheCodec.BLOCK_SIZE + 1234];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (float)Math.sin(i * 0.001) * 300f;
+        }
+        // short and long fill runs, including one across a block boundary
+        Arrays.fill(values, 10, 12, Float.NaN);
+        Arrays.fill(values, 500, 5000, Float.NaN);
+        Arrays.fill(values, DataCacheCodec.BLOCK_SIZE - 100,
+            DataCacheCodec.BLOCK_SIZE + 100, Float.NaN);
+        for (int i = 0; i < 1000; i++) {
+            values[random.nextInt(values.length)] = Float.NaN;
+        }
+        values[20] = Float.POSITIVE_INFINITY;
+        values[21] = -0f;
+        values[22] = Float.MIN_VALUE;
+        values[23] = -Float.MAX_VALUE;
+        float[] decoded = (float[])roundTrip(values, new float[values.length]);
+        assertSameBits(values, decoded);
+    }
+
+    @Test public void nonCanonicalNaNsKeepTheirBits() throws Exception {
+        float[] values = { 1f, Float.intBitsToFloat(0x7fc00001),
+            Float.intBitsToFloat(0xffc00000), Float.NaN, 2f };
+        assertSameBits(values, (float[])roundTrip(values, new float[values.length]));
+    }
+
+    @Test public void alternatingNaNsFitTheRawBound() throws Exception {
+        // the worst case for the transformed size: every value is its own run
+        float[] values = new float[DataCacheCodec.BLOCK_SIZE];
+        Random random = new Random(2);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (i % 2 == 0)
+                      ? Float.NaN
+                      : Float.intBitsToFloat(random.nextInt() & 0x7f7fffff);
+        }
+        assertSameBits(values, (float[])roundTrip(values, new float[values.length]));
+    }
+
+    @Test public void allNaN() throws Exception {
+        float[] values = new float[DataCacheCodec.BLOCK_SIZE + 1];
+        Arrays.fill(values, Float.NaN);
+        assertSameBits(values, (float[])roundTrip(values, new float[values.length]));
+    }
+
+    @Test public void shorts() throws Exception {
+        Random random = new Random(3);
+        short[] values = new short[DataCacheCodec.BLOCK_SIZE + 77];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (short)random.nextInt();
+        }
+        values[0] = Short.MIN_VALUE;
+        values[1] = Short.MAX_VALUE;
+        values[2] = Short.MIN_VALUE;
+        assertArrayEquals(values, (short[])roundTrip(values, new short[values.length]));
+    }
+
+    @Test public void bytes() throws Exception {
+        Random random = new Random(4);
+        byte[] values = new byte[DataCacheCodec.BLOCK_SIZE + 5];
+        random.nextBytes(values);
+        values[0] = Byte.MIN_VALUE;
+        values[1] = Byte.MAX_VALUE;
+        assertArrayEquals(values, (byte[])roundTrip(values, new byte[values.length]));
+    }
+
+    @Test(expected = DataFormatException.class) public void runPastTheBlock() throws Exception {
+        float[] values = new float[100];
+        Arrays.fill(values, Float.NaN);
+        byte[] bytes = DataCacheCodec.encode(values, 0);
+        DataCacheCodec.decode(bytes, 0, bytes.length, new float[50], 0);
+    }
+
+    @Test(expected = DataFormatException.class) public void truncatedFloats() throws Exception {
+        float[] values = new float[100];
+        byte[] bytes = DataCacheCodec.encode(values, 0);
+        DataCacheCodec.decode(bytes, 0, bytes.length, new float[200], 0);
+    }
+
+    @Test(expected = DataFormatException.class) public void truncatedShorts() throws Exception {
+        short[] values = new short[10];
+        byte[] bytes = DataCacheCodec.encode(values, 0);
+        DataCacheCodec.decode(bytes, 0, bytes.length, new short[20], 0);
+    }
+
+    @Test(expected = DataFormatException.class) public void truncatedBytes() throws Exception {
+        byte[] values = new byte[10];
+        byte[] bytes = DataCacheCodec.encode(values, 0);
+        DataCacheCodec.decode(bytes, 0, bytes.length, new byte[20], 0);
+    }
+
+    @Test public void empty() throws Exception {
+        assertEquals(0, DataCacheCodec.blockCount(0));
+        assertEquals(1, DataCacheCodec.blockCount(1));
+        assertEquals(1, DataCacheCodec.blockCount(DataCacheCodec.BLOCK_SIZE));
+        assertEquals(2, DataCacheCodec.blockCount(DataCacheCodec.BLOCK_SIZE + 1));
+    }
+}
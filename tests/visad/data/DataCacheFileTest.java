@@ -0,0 +1,170 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+package visad.data;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Round trips through the {@link DataCacheFile} spill format.
+ */
+public class DataCacheFileTest {
+
+    private File file;
+
+    @Before public void createFile() throws IOException {
+        file = File.createTempFile("datacachefile", ".dat");
+    }
+
+    @After public void deleteFile() {
+        file.delete();
+    }
+
+    private Object throughFile(int type, Object data, boolean compress)
+        throws IOException
+    {
+        DataCacheFile.write(file, type, data, compress);
+        return DataCacheFile.read(file);
+    }
+
+    private static Object throughBuffer(int type, Object data)
+        throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(
+            (int)DataCacheFile.rawSize(type, data));
+        DataCacheFile.write(buffer, type, data);
+        assertEquals("rawSize", buffer.capacity(), buffer.position());
+        buffer.flip();
+        return DataCacheFile.read(buffer);
+    }
+
+    private static float[] floats(int length, Random random) {
+        float[] values = new float[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = (random.nextInt(10) == 0) ? Float.NaN : random.nextFloat();
+        }
+        return values;
+    }
+
+    @Test public void oneDimensionalTypes() throws IOException {
+        Random random = new Random(5);
+        double[] doubles = { 1.5, Double.NaN, -Double.MAX_VALUE, 0 };
+        int[] ints = { Integer.MIN_VALUE, 0, 42, Integer.MAX_VALUE };
+        short[] shorts = { Short.MIN_VALUE, -1, 0, Short.MAX_VALUE };
+        byte[] bytes = { Byte.MIN_VALUE, -1, 0, Byte.MAX_VALUE };
+        float[] floats = floats(100000, random);
+
+        for (boolean compress : new boolean[] { false, true }) {
+            assertArrayEquals(doubles, (double[])throughFile(
+                DataCacheManager.TYPE_DOUBLE1D, doubles, compress), 0.0);
+            assertArrayEquals(ints, (int[])throughFile(
+                DataCacheManager.TYPE_INT1D, ints, compress));
+            assertArrayEquals(shorts, (short[])throughFile(
+                DataCacheManager.TYPE_SHORT1D, shorts, compress));
+            assertArrayEquals(bytes, (byte[])throughFile(
+                DataCacheManager.TYPE_BYTE1D, bytes, compress));
+            assertArrayEquals(floats, (float[])throughFile(
+                DataCacheManager.TYPE_FLOAT1D, floats, compress), 0f);
+        }
+        assertArrayEquals(floats, (float[])throughBuffer(
+            DataCacheManager.TYPE_FLOAT1D, floats), 0f);
+        assertArrayEquals(ints, (int[])throughBuffer(
+            DataCacheManager.TYPE_INT1D, ints));
+    }
+
+    @Test public void ragged2DWithNullRows() throws IOException {
+        Random random = new Random(6);
+        float[][] values = { floats(70000, random), null, new float[0],
+            floats(3, random) };
+
+        for (boolean compress : new boolean[] { false, true }) {
+            float[][] read = (float[][])throughFile(
+                DataCacheManager.TYPE_FLOAT2D, values, compress);
+            assertEquals(values.length, read.length);
+            assertArrayEquals(values[0], read[0], 0f);
+            assertNull(read[1]);
+            assertEquals(0, read[2].length);
+            assertArrayEquals(values[3], read[3], 0f);
+        }
+        float[][] read = (float[][])throughBuffer(
+            DataCacheManager.TYPE_FLOAT2D, values);
+        assertNull(read[1]);
+        assertArrayEquals(values[0], read[0], 0f);
+    }
+
+    @Test public void threeDimensionalShorts() throws IOException {
+        short[][][] values = new short[3][4][5];
+        short v = -30;
+        for (short[][] plane : values) {
+            for (short[] row : plane) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = v++;
+                }
+            }
+        }
+        for (boolean compress : new boolean[] { false, true }) {
+            short[][][] read = (short[][][])throughFile(
+                DataCacheManager.TYPE_SHORT3D, values, compress);
+            for (int p = 0; p < values.length; p++) {
+                for (int r = 0; r < values[p].length; r++) {
+                    assertArrayEquals(values[p][r], read[p][r]);
+                }
+            }
+        }
+    }
+
+    @Test public void compressionShrinksFillValues() throws IOException {
+        float[] values = new float[200000];
+        java.util.Arrays.fill(values, Float.NaN);
+        long raw = DataCacheFile.write(file, DataCacheManager.TYPE_FLOAT1D, values, false);
+        long compressed = DataCacheFile.write(file, DataCacheManager.TYPE_FLOAT1D, values, true);
+        assertEquals(DataCacheFile.rawSize(DataCacheManager.TYPE_FLOAT1D, values), raw);
+        if (compressed * 10 > raw) {
+            fail("compressed " + compressed + " bytes, raw " + raw);
+        }
+    }
+
+    @Test(expected = IOException.class) public void rejectsOtherFiles() throws IOException {
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.writeBytes("not a cache file at all");
+        }
+        DataCacheFile.read(file);
+    }
+}
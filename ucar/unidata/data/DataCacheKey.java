@@ -0,0 +1,504 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+
+package ucar.unidata.data;
+
+
+import java.lang.reflect.Array;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+
+/**
+ * An immutable key for the data source cache. The selection is reduced
+ * once, when the key is made, to the values that decide what data comes
+ * back (times, geographic subset, strides, levels and properties) and the
+ * hash code is computed up front. Looking a key up is then a comparison
+ * of ints, and a full comparison only happens when the hashes match.
+ *
+ * <p>Data sources use this by overriding
+ * {@link DataSourceImpl#createCacheKey(DataChoice, DataSelection, Hashtable)}
+ * and returning {@link #create(DataChoice, DataSelection, Hashtable)}.
+ * Since the key already covers the request properties, getData does not
+ * add them again.</p>
+ *
+ * <p>The bounding box and strides are kept apart from the other values so
+ * that {@link #covers(DataCacheKey)} can tell when data cached for one key
+ * can be cut down to answer another.</p>
+ *
+ * @author IDV development team
+ */
+public final class DataCacheKey {
+
+    /** The values that make up the key, other than the area */
+    private final Object[] parts;
+
+    /** min lat, max lat, min lon and max lon or null for the whole domain */
+    private final double[] bbox;
+
+    /** x, y and z strides or null */
+    private final int[] strides;
+
+    /** Can the area of this key be compared with others? */
+    private final boolean subsettable;
+
+    /** This key without the bounding box and strides */
+    private final DataCacheKey areaFreeKey;
+
+    /** The precomputed hash code */
+    private final int hash;
+
+    /**
+     * Create a key from the given values. The values should not change
+     * while the key is in use.
+     *
+     * @param parts the values
+     */
+    public DataCacheKey(Object... parts) {
+        this(parts.clone(), Arrays.deepHashCode(parts), null, null, false);
+    }
+
+    /**
+     * Create a key
+     *
+     * @param parts the values other than the area
+     * @param partsHash hash code of parts
+     * @param bbox the bounding box, may be null
+     * @param strides the strides, may be null
+     * @param subsettable can the area be compared with other keys
+     */
+    private DataCacheKey(Object[] parts, int partsHash, double[] bbox,
+                         int[] strides, boolean subsettable) {
+        this.parts       = parts;
+        this.bbox        = bbox;
+        this.strides     = strides;
+        this.subsettable = subsettable;
+        this.hash = 31 * (31 * partsHash + Arrays.hashCode(bbox))
+                    + Arrays.hashCode(strides);
+        this.areaFreeKey = ((bbox == null) && (strides == null))
+                           ? this
+                           : new DataCacheKey(parts, partsHash, null, null,
+                                              subsettable);
+    }
+
+    /**
+     * Create the key for a getData request
+     *
+     * @param dataChoice data choice
+     * @param dataSelection data selection
+     * @param requestProperties properties on request, may be null
+     * @param extra anything else the data depends on
+     *
+     * @return the key
+     */
+    public static DataCacheKey create(DataChoice dataChoice,
+                                      DataSelection dataSelection,
+                                      Hashtable requestProperties,
+                                      Object... extra) {
+        List<Object> parts = new ArrayList<Object>(16 + extra.length);
+        double[]     bbox        = null;
+        int[]        strides     = null;
+        boolean      subsettable = false;
+        parts.add(dataChoice);
+        if (dataSelection != null) {
+            parts.add(copy(dataSelection.getTimes()));
+            parts.add(copy(dataSelection.getTimeDriverTimes()));
+            parts.add(dataSelection.getFromLevel());
+            parts.add(dataSelection.getToLevel());
+            parts.add(copy(dataSelection.getProperties()));
+            GeoSelection geoSelection = dataSelection.getGeoSelection();
+            if (geoSelection != null) {
+                GeoLocationInfo box = geoSelection.getBoundingBox();
+                if (box != null) {
+                    bbox = new double[] { box.getMinLat(), box.getMaxLat(),
+                                          box.getMinLon(),
+                                          box.getMaxLon() };
+                }
+                strides = new int[] { geoSelection.getXStride(),
+                                      geoSelection.getYStride(),
+                                      geoSelection.getZStride() };
+                parts.add(geoSelection.getUseFullBounds());
+                parts.add(geoSelection.getUseViewBounds());
+                parts.add(geoSelection.getScreenBound());
+                Object[] rbb = geoSelection.getRubberBandBoxPoints();
+                parts.add((rbb != null)
+                          ? Arrays.asList(rbb)
+                          : null);
+                // the area of view bounds and rubber band requests is
+                // only worked out when the data is read
+                subsettable = !geoSelection.getUseViewBounds()
+                              && (rbb == null);
+            }
+        }
+        if ((requestProperties != null) && !requestProperties.isEmpty()) {
+            Map<Object, Object> props = copy(requestProperties);
+            props.remove(DataChoice.PROP_REQUESTER);
+            if ( !props.isEmpty()) {
+                parts.add(props);
+            }
+        }
+        parts.addAll(Arrays.asList(extra));
+        Object[] array = parts.toArray();
+        return new DataCacheKey(array, Arrays.deepHashCode(array), bbox,
+                                strides, subsettable);
+    }
+
+    /**
+     * Create a string key for a getData request that is the same from one
+     * session to the next, for {@link PersistentDataCache}. It is made from
+     * the same values as {@link #create}, each written out explicitly:
+     * maps are sorted by key, and values whose class does not define its
+     * own toString (so would print an identity hash) make the request
+     * uncacheable.
+     *
+     * @param dataChoice data choice
+     * @param dataSelection data selection, may be null
+     * @param requestProperties properties on request, may be null
+     *
+     * @return the key or null if the request has no stable form, e.g. it
+     *         uses the view bounds or a rubber band box
+     */
+    public static String createStable(DataChoice dataChoice,
+                                      DataSelection dataSelection,
+                                      Hashtable requestProperties) {
+        List<Object> parts = new ArrayList<Object>();
+        parts.add((dataChoice != null)
+                  ? dataChoice.getId()
+                  : null);
+        if (dataSelection != null) {
+            parts.add(dataSelection.getTimes());
+            parts.add(dataSelection.getTimeDriverTimes());
+            parts.add(dataSelection.getFromLevel());
+            parts.add(dataSelection.getToLevel());
+            parts.add(dataSelection.getProperties());
+            GeoSelection geoSelection = dataSelection.getGeoSelection();
+            if (geoSelection != null) {
+                // these areas depend on the display the data was asked for
+                if (geoSelection.getUseViewBounds()
+                        || (geoSelection.getRubberBandBoxPoints() != null)) {
+                    return null;
+                }
+                GeoLocationInfo box = geoSelection.getBoundingBox();
+                parts.add((box != null)
+                          ? new double[] { box.getMinLat(), box.getMaxLat(),
+                                           box.getMinLon(), box.getMaxLon() }
+                          : null);
+                parts.add(new int[] { geoSelection.getXStride(),
+                                      geoSelection.getYStride(),
+                                      geoSelection.getZStride() });
+                parts.add(geoSelection.getUseFullBounds());
+                parts.add(geoSelection.getScreenBound());
+            }
+        }
+        if ((requestProperties != null) && !requestProperties.isEmpty()) {
+            Map<Object, Object> props = copy(requestProperties);
+            props.remove(DataChoice.PROP_REQUESTER);
+            parts.add(props);
+        }
+        return toStableString(parts);
+    }
+
+    /**
+     * Write a value out so that equal values give the same string in
+     * every session
+     *
+     * @param value the value, may be null
+     *
+     * @return the string or null if the value has no stable form
+     */
+    static String toStableString(Object value) {
+        StringBuilder sb = new StringBuilder();
+        return appendStable(sb, value)
+               ? sb.toString()
+               : null;
+    }
+
+    /**
+     * Append the stable form of a value
+     *
+     * @param sb where to append
+     * @param value the value, may be null
+     *
+     * @return false if the value has no stable form
+     */
+    private static boolean appendStable(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value.getClass().isArray()) {
+            sb.append('[');
+            for (int i = 0; i < Array.getLength(value); i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                if ( !appendStable(sb, Array.get(value, i))) {
+                    return false;
+                }
+            }
+            sb.append(']');
+        } else if (value instanceof List) {
+            return appendStable(sb, ((List) value).toArray());
+        } else if (value instanceof Collection) {
+            // nor is that of a set
+            TreeSet<String> sorted = new TreeSet<String>();
+            for (Object o : (Collection) value) {
+                String element = toStableString(o);
+                if (element == null) {
+                    return false;
+                }
+                sorted.add(element);
+            }
+            sb.append(sorted);
+        } else if (value instanceof Map) {
+            // hash map iteration order is not stable, so sort the entries
+            TreeMap<String, String> sorted = new TreeMap<String, String>();
+            for (Object o : ((Map) value).entrySet()) {
+                Map.Entry e = (Map.Entry) o;
+                String    k = toStableString(e.getKey());
+                String    v = toStableString(e.getValue());
+                if ((k == null) || (v == null)) {
+                    return false;
+                }
+                sorted.put(k, v);
+            }
+            sb.append(sorted);
+        } else {
+            try {
+                if (value.getClass().getMethod("toString").getDeclaringClass()
+                        == Object.class) {
+                    return false;
+                }
+            } catch (NoSuchMethodException exc) {
+                return false;
+            }
+            sb.append(value);
+        }
+        return true;
+    }
+
+    /**
+     * Get this key without its bounding box and strides. Keys that
+     * differ only in area have the same area free key.
+     *
+     * @return the key without the area
+     */
+    public DataCacheKey getAreaFreeKey() {
+        return areaFreeKey;
+    }
+
+    /**
+     * Is the area of this key something other keys can be compared to?
+     *
+     * @return true if {@link #covers(DataCacheKey)} can be true
+     */
+    public boolean isSubsettable() {
+        return subsettable;
+    }
+
+    /**
+     * Does the data for this key hold the data for the given key? That is
+     * the case when the keys only differ in area, this key's bounding box
+     * holds the other one (whatever longitude convention either uses) and
+     * the other key's x and y strides are
+     * multiples of ours. The z strides have to be the same.
+     *
+     * @param other the other key
+     *
+     * @return true if the other key's data can be cut from this key's
+     */
+    public boolean covers(DataCacheKey other) {
+        if ( !subsettable || !other.subsettable
+                || !areaFreeKey.equals(other.areaFreeKey)) {
+            return false;
+        }
+        if (bbox != null) {
+            if ((other.bbox == null) || (other.bbox[0] < bbox[0])
+                    || (other.bbox[1] > bbox[1])) {
+                return false;
+            }
+            // compare longitudes as distances east of our western edge so
+            // that boxes across the dateline or in 0..360 and -180..180
+            // work. The data source still checks that the request's index
+            // ranges line up with the cached ones when it cuts the subset.
+            double span = lonSpan(bbox);
+            if (span < 360) {
+                double east = other.bbox[2] - bbox[2];
+                east -= 360 * Math.floor(east / 360);
+                if (east + lonSpan(other.bbox) > span) {
+                    return false;
+                }
+            }
+        }
+        return ((other.getXStride() % getXStride()) == 0)
+               && ((other.getYStride() % getYStride()) == 0)
+               && (other.getZStride() == getZStride());
+    }
+
+    /**
+     * Get the width in longitude of a bounding box
+     *
+     * @param box min lat, max lat, min lon and max lon
+     *
+     * @return degrees east from min lon to max lon, 360 for the whole
+     *         globe
+     */
+    private static double lonSpan(double[] box) {
+        double span = box[3] - box[2];
+        if (span >= 360) {
+            return 360;
+        }
+        // max lon west of min lon means the box crosses the dateline
+        return span - 360 * Math.floor(span / 360);
+    }
+
+    /**
+     * Get the bounding box
+     *
+     * @return min lat, max lat, min lon and max lon or null if there
+     *         is no bounding box
+     */
+    public double[] getBoundingBox() {
+        return (bbox != null)
+               ? bbox.clone()
+               : null;
+    }
+
+    /**
+     * Get the x stride
+     *
+     * @return the x stride, at least 1
+     */
+    public int getXStride() {
+        return getStride(0);
+    }
+
+    /**
+     * Get the y stride
+     *
+     * @return the y stride, at least 1
+     */
+    public int getYStride() {
+        return getStride(1);
+    }
+
+    /**
+     * Get the z stride
+     *
+     * @return the z stride, at least 1
+     */
+    public int getZStride() {
+        return getStride(2);
+    }
+
+    /**
+     * Get one of the strides
+     *
+     * @param index which one
+     *
+     * @return the stride, at least 1
+     */
+    private int getStride(int index) {
+        return ((strides == null) || (strides[index] < 1))
+               ? 1
+               : strides[index];
+    }
+
+    /**
+     * Copy a list so later changes to it do not change the key
+     *
+     * @param list the list, may be null
+     *
+     * @return the copy or null
+     */
+    private static List<Object> copy(List list) {
+        return (list != null)
+               ? new ArrayList<Object>(list)
+               : null;
+    }
+
+    /**
+     * Copy a map so later changes to it do not change the key
+     *
+     * @param map the map, may be null
+     *
+     * @return the copy or null
+     */
+    private static Map<Object, Object> copy(Map map) {
+        return (map != null)
+               ? new HashMap<Object, Object>(map)
+               : null;
+    }
+
+    /**
+     * Get the hash code
+     *
+     * @return the precomputed hash code
+     */
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Is the given object an equal key?
+     *
+     * @param o the object
+     *
+     * @return true if it is a key with the same values
+     */
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if ( !(o instanceof DataCacheKey)) {
+            return false;
+        }
+        DataCacheKey that = (DataCacheKey) o;
+        return (hash == that.hash) && Arrays.equals(bbox, that.bbox)
+               && Arrays.equals(strides, that.strides)
+               && Arrays.deepEquals(parts, that.parts);
+    }
+
+    /**
+     * Get a string representation
+     *
+     * @return the values of the key
+     */
+    public String toString() {
+        return "DataCacheKey" + Arrays.deepToString(parts) + " bbox="
+               + Arrays.toString(bbox) + " strides="
+               + Arrays.toString(strides);
+    }
+}
@@ -70,6 +70,7 @@ import ucar.unidata.xml.XmlUtil;
 import visad.Data;
 import visad.DateTime;
 import visad.VisADException;
+import visad.data.DataCacheManager;
 
 
 import java.awt.*;
@@ -84,6 +85,10 @@ import java.rmi.RemoteException;
 
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
@@ -148,6 +153,20 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
     /** Use this so this object is unique in the data cache */
     protected Object dataCacheKey = ucar.unidata.util.Misc.getUniqueId();
 
+    /** The getData loads that are running, by cache key */
+    private final Map<Object, Load> loadsInProgress =
+        new ConcurrentHashMap<Object, Load>();
+
+    /** How many cached areas to remember for each area free key */
+    private static final int MAX_CACHED_AREAS = 8;
+
+    /**
+     * Keys of cached data that could be cut down to answer other
+     * requests, by their area free key
+     */
+    private final Map<DataCacheKey, List<DataCacheKey>> cachedAreas =
+        new ConcurrentHashMap<DataCacheKey, List<DataCacheKey>>();
+
     /**
      *  The alias property.
      */
@@ -272,6 +291,12 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
     /** To synchronize around dataCachePath creation */
     private Object DATACACHEPATH_MUTEX = new Object();
 
+    /**
+     * Set by reloadData so that we go back to the source instead of the
+     * {@link PersistentDataCache}
+     */
+    private boolean skipPersistentCache = false;
+
     /** list of params to show */
     private List paramsToShow;
     
@@ -1125,6 +1150,7 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
     protected void flushCache() {
         // System.out.println("flushing cache");
         CacheManager.remove(dataCacheKey);
+        cachedAreas.clear();
     }
 
 
@@ -1449,6 +1475,9 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
         dataCachePath = null;
 
         timesList     = null;
+        // the data has changed; whatever we read from now on replaces
+        // what is in the persistent cache
+        skipPersistentCache = true;
         flushCache();
         notifyDataChange();
         getDataContext().dataSourceChanged(this);
@@ -2350,7 +2379,8 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
     }
 
     /**
-     * Utility to create the key used when caching
+     * Utility to create the key used when caching. Derived classes can
+     * return a {@link DataCacheKey}, which is cheaper to look up.
      *
      * @param dataChoice data choice
      * @param dataSelection data selection
@@ -2364,9 +2394,69 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
         return Misc.newList(dataChoice, dataSelection);
     }
 
+    /**
+     * Create the key used for the {@link PersistentDataCache}. Unlike
+     * {@link #createCacheKey} this has to be the same from one session to
+     * the next, so it is a string built from this data source's class and
+     * data paths, the size and modification time of each path that is a
+     * local file, the request as written out by
+     * {@link DataCacheKey#createStable} and the times we have. Data sources
+     * without data paths, ones that are polling, and requests without a
+     * stable form are not cached across sessions. Derived classes whose
+     * data can change without the key changing should return null.
+     *
+     * @param dataChoice data choice
+     * @param dataSelection data selection
+     * @param requestProperties properties on request
+     *
+     * @return The key or null if this data should not be cached on disk
+     */
+    protected String createPersistentCacheKey(DataChoice dataChoice,
+            DataSelection dataSelection, Hashtable requestProperties) {
+        List paths = getDataPaths();
+        if ((paths == null) || paths.isEmpty()
+                || ((pollers != null) && !pollers.isEmpty())) {
+            return null;
+        }
+        String request = DataCacheKey.createStable(dataChoice,
+                             dataSelection, requestProperties);
+        // relative time selections resolve against these
+        String times = DataCacheKey.toStableString(getAllDateTimes());
+        if ((request == null) || (times == null)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(getClass().getName());
+        sb.append('\n').append(paths);
+        // a file rewritten in place must not give back the old data
+        for (Object path : paths) {
+            File file = new File(path.toString());
+            if (file.isFile()) {
+                sb.append('\n').append(file.length()).append(' ').append(
+                    file.lastModified());
+            }
+        }
+        sb.append('\n').append(request);
+        sb.append('\n').append(times);
+        return sb.toString();
+    }
+
 
     //    boolean first = true;
 
+    /**
+     * Can {@link #getData(DataChoice, DataCategory, DataSelection, Hashtable)}
+     * be called from several threads at once? If so, requests for different
+     * data run in parallel and concurrent requests for the same data share
+     * one call to getDataInner. Otherwise getData synchronizes on this data
+     * source. Derived classes whose getDataInner has been checked to be
+     * thread safe can return true.
+     *
+     * @return false
+     */
+    protected boolean isGetDataThreadSafe() {
+        return false;
+    }
+
     /**
      * Get the data applicable to the DataChoice and selection criteria.
      *
@@ -2378,11 +2468,38 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
      *
      * @throws RemoteException    Java RMI problem
      * @throws VisADException     VisAD problem
+     *
+     * @see #isGetDataThreadSafe()
+     */
+    public Data getData(DataChoice dataChoice, DataCategory category,
+                        DataSelection incomingDataSelection,
+                        Hashtable requestProperties)
+            throws VisADException, RemoteException {
+        if ( !isGetDataThreadSafe()) {
+            synchronized (this) {
+                return getDataImpl(dataChoice, category,
+                                   incomingDataSelection, requestProperties);
+            }
+        }
+        return getDataImpl(dataChoice, category, incomingDataSelection,
+                           requestProperties);
+    }
+
+    /**
+     * Does the work of getData
+     *
+     * @param dataChoice         choice that defines the data
+     * @param category           the data category
+     * @param incomingDataSelection   DataSelection for subsetting
+     * @param requestProperties  extra request properties
+     * @return  the associated data
+     *
+     * @throws RemoteException    Java RMI problem
+     * @throws VisADException     VisAD problem
      */
-    public synchronized Data getData(DataChoice dataChoice,
-                                     DataCategory category,
-                                     DataSelection incomingDataSelection,
-                                     Hashtable requestProperties)
+    private Data getDataImpl(DataChoice dataChoice, DataCategory category,
+                             DataSelection incomingDataSelection,
+                             Hashtable requestProperties)
             throws VisADException, RemoteException {
 
 
@@ -2415,16 +2532,23 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
 
         Object baseCacheKey = createCacheKey(dataChoice, lselection,
                                              requestProperties);
-        List cacheKey = ((baseCacheKey != null)
-                         ? Misc.newList(baseCacheKey)
-                         : null);
-
-        if (requestProperties != null) {
-            Hashtable newProperties = (Hashtable) requestProperties.clone();
-            newProperties.remove(DataChoice.PROP_REQUESTER);
-            if ((cacheKey != null) && (newProperties.size() > 0)) {
-                cacheKey.add(newProperties.toString());
+        Object cacheKey;
+        if (baseCacheKey instanceof DataCacheKey) {
+            // already covers the request properties
+            cacheKey = baseCacheKey;
+        } else if (baseCacheKey != null) {
+            List keyList = Misc.newList(baseCacheKey);
+            if (requestProperties != null) {
+                Hashtable newProperties =
+                    (Hashtable) requestProperties.clone();
+                newProperties.remove(DataChoice.PROP_REQUESTER);
+                if (newProperties.size() > 0) {
+                    keyList.add(newProperties.toString());
+                }
             }
+            cacheKey = keyList;
+        } else {
+            cacheKey = null;
         }
 
         /**
@@ -2439,8 +2563,141 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
         Data cachedData = ((cacheKey != null)
                            ? (Data) getCache(cacheKey)
                            : null);
+        if (cachedData != null) {
+            return cachedData;
+        }
+        if (cacheKey == null) {
+            return loadData(dataChoice, category, selection, lselection,
+                            requestProperties, null);
+        }
+
+        // only one thread loads a given key, the rest wait for it
+        Load load     = new Load();
+        Load existing = loadsInProgress.putIfAbsent(cacheKey, load);
+        if (existing != null) {
+            if (existing.thread == Thread.currentThread()) {
+                // getDataInner asked for its own data; waiting would hang
+                return loadData(dataChoice, category, selection, lselection,
+                                requestProperties, cacheKey);
+            }
+            return waitForLoad(existing);
+        }
+        try {
+            cachedData = loadData(dataChoice, category, selection,
+                                  lselection, requestProperties, cacheKey);
+            load.complete(cachedData);
+            return cachedData;
+        } catch (VisADException | RemoteException | RuntimeException
+                 | Error exc) {
+            load.completeExceptionally(exc);
+            throw exc;
+        } finally {
+            loadsInProgress.remove(cacheKey, load);
+        }
+    }
+
+    /**
+     * Wait for a load started by another thread
+     *
+     * @param load the other thread's load
+     *
+     * @return the data it got
+     *
+     * @throws RemoteException    Java RMI problem
+     * @throws VisADException     VisAD problem
+     */
+    private static Data waitForLoad(CompletableFuture<Data> load)
+            throws VisADException, RemoteException {
+        try {
+            return load.get();
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new VisADException("Interrupted while waiting for data");
+        } catch (ExecutionException exc) {
+            Throwable cause = exc.getCause();
+            if (cause instanceof VisADException) {
+                throw (VisADException) cause;
+            }
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    /**
+     * A getData load that other threads can wait for
+     */
+    private static class Load extends CompletableFuture<Data> {
+
+        /** The thread doing the load */
+        final Thread thread = Thread.currentThread();
+    }
+
+    /**
+     * Load data that was not in the cache, from the persistent cache or
+     * with getDataInner, and cache it.
+     *
+     * @param dataChoice         choice that defines the data
+     * @param category           the data category
+     * @param selection          merged DataSelection
+     * @param lselection         copy of the selection used for the keys
+     * @param requestProperties  extra request properties
+     * @param cacheKey           the cache key or null to not cache
+     * @return  the associated data
+     *
+     * @throws RemoteException    Java RMI problem
+     * @throws VisADException     VisAD problem
+     */
+    private Data loadData(DataChoice dataChoice, DataCategory category,
+                          DataSelection selection, DataSelection lselection,
+                          Hashtable requestProperties, Object cacheKey)
+            throws VisADException, RemoteException {
+        Data   cachedData    = null;
+        String persistentKey = null;
+        if ((cacheKey instanceof DataCacheKey)
+                && !selection.getProperty(
+                    DataSelection.PROP_PROGRESSIVERESOLUTION, false)
+                && canSubsetCachedData(dataChoice)) {
+            cachedData = getCoveringData(dataChoice, (DataCacheKey) cacheKey);
+            if (cachedData != null) {
+                putCache(cacheKey, cachedData);
+                rememberArea(dataChoice, cacheKey);
+                return cachedData;
+            }
+        }
+        if ((cacheKey != null)
+                && PersistentDataCache.getCache().getEnabled()) {
+            persistentKey = createPersistentCacheKey(dataChoice, lselection,
+                    requestProperties);
+            if ((persistentKey != null) && !skipPersistentCache) {
+                String previousOwner =
+                    DataCacheManager.getCacheManager().setOwner(
+                        toStringTruncated());
+                try {
+                    cachedData =
+                        PersistentDataCache.getCache().get(persistentKey);
+                } finally {
+                    DataCacheManager.getCacheManager().setOwner(
+                        previousOwner);
+                }
+                if ((cachedData != null)
+                        && shouldCache(dataChoice, cachedData)) {
+                    putCache(cacheKey, cachedData);
+                    rememberArea(dataChoice, cacheKey);
+                }
+            }
+        }
+
         if (cachedData == null) {
             incrOutstandingGetDataCalls();
+            // so the data cache can tell how much of it is ours
+            String previousOwner =
+                DataCacheManager.getCacheManager().setOwner(
+                    toStringTruncated());
             try {
                 LogUtil.message("Data: " + toStringTruncated() + ": "
                                 + dataChoice);
@@ -2449,18 +2706,132 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
 
                 LogUtil.message("");
             } finally {
+                DataCacheManager.getCacheManager().setOwner(previousOwner);
                 decrOutstandingGetDataCalls();
             }
             if ((cacheKey != null) && (cachedData != null)
                     && shouldCache(dataChoice, cachedData)) {
                 // System.out.println(cacheKey.hashCode());
                 putCache(cacheKey, cachedData);
+                rememberArea(dataChoice, cacheKey);
+                if (persistentKey != null) {
+                    PersistentDataCache.getCache().put(persistentKey,
+                            cachedData);
+                }
             }
-        } else {}
+        }
         return cachedData;
     }
 
 
+    /**
+     * Can data cached for a larger area or a finer stride be cut down
+     * to answer requests for the given data choice? Derived classes that
+     * return true implement {@link #subsetCachedData}.
+     *
+     * @param dataChoice the data choice
+     *
+     * @return false
+     */
+    protected boolean canSubsetCachedData(DataChoice dataChoice) {
+        return false;
+    }
+
+    /**
+     * Cut cached data down to what a request asks for. This is called
+     * with data whose key {@link DataCacheKey#covers covers} the request
+     * key, so the two only differ in bounding box and strides.
+     *
+     * @param dataChoice the data choice
+     * @param data the cached data
+     * @param dataKey the key the data was cached under
+     * @param requestKey the key of the request
+     *
+     * @return the data for the request or null to read it as usual
+     *
+     * @throws RemoteException    Java RMI problem
+     * @throws VisADException     VisAD problem
+     */
+    protected Data subsetCachedData(DataChoice dataChoice, Data data,
+                                    DataCacheKey dataKey,
+                                    DataCacheKey requestKey)
+            throws VisADException, RemoteException {
+        return null;
+    }
+
+    /**
+     * Look for cached data that covers the request and cut it down
+     *
+     * @param dataChoice the data choice
+     * @param requestKey the key of the request
+     *
+     * @return the data or null if nothing cached covers the request
+     */
+    private Data getCoveringData(DataChoice dataChoice,
+                                 DataCacheKey requestKey) {
+        if ( !requestKey.isSubsettable()) {
+            return null;
+        }
+        List<DataCacheKey> keys =
+            cachedAreas.get(requestKey.getAreaFreeKey());
+        if (keys == null) {
+            return null;
+        }
+        for (DataCacheKey key : keys) {
+            if ( !key.covers(requestKey)) {
+                continue;
+            }
+            Data data = (Data) getCache(key);
+            if (data == null) {
+                // the cache let it go
+                keys.remove(key);
+                continue;
+            }
+            try {
+                Data subset = subsetCachedData(dataChoice, data, key,
+                                               requestKey);
+                if (subset != null) {
+                    return subset;
+                }
+            } catch (Exception exc) {
+                log_.debug("subsetting cached data failed:" + exc);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Remember the key of data we cached so later requests for part of
+     * it can be answered from it.
+     *
+     * @param dataChoice the data choice
+     * @param cacheKey the key
+     */
+    private void rememberArea(DataChoice dataChoice, Object cacheKey) {
+        if ( !(cacheKey instanceof DataCacheKey)
+                || !((DataCacheKey) cacheKey).isSubsettable()
+                || !canSubsetCachedData(dataChoice)) {
+            return;
+        }
+        DataCacheKey       key  = (DataCacheKey) cacheKey;
+        List<DataCacheKey> keys = cachedAreas.get(key.getAreaFreeKey());
+        if (keys == null) {
+            List<DataCacheKey> newKeys =
+                new CopyOnWriteArrayList<DataCacheKey>();
+            keys = cachedAreas.putIfAbsent(key.getAreaFreeKey(), newKeys);
+            if (keys == null) {
+                keys = newKeys;
+            }
+        }
+        if ( !keys.contains(key)) {
+            keys.add(key);
+            while (keys.size() > MAX_CACHED_AREAS) {
+                keys.remove(0);
+            }
+        }
+    }
+
+
     /**
      * Have this one around for other, non-unidata, datasource implementations.
      *
@@ -3536,7 +3907,7 @@ public class DataSourceImpl extends SharableImpl implements DataSource,
     /**
      * Called after created or unpersisted to strat up polling if need be.
      */
-    private void initPolling() {
+    private synchronized void initPolling() {
         if (haveInitedPolling) {
             return;
         }
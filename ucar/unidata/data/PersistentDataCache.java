@@ -0,0 +1,592 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+
+package ucar.unidata.data;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import visad.Data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Keeps the {@link Data} loaded by data sources on local disk so that it
+ * survives from one session to the next. Reloading a bundle or rerunning a
+ * script can then read the data back from disk instead of going back to
+ * the server or the original files.
+ *
+ * <p>Entries are keyed by a stable string built from the data source, the
+ * data choice and the data selection (see
+ * {@link DataSourceImpl#createPersistentCacheKey}). Each entry is one file
+ * named after the SHA-256 of its key. A small index file in the cache
+ * directory remembers the size and the last access time of every entry;
+ * when the cache gets bigger than its max size the least recently used
+ * entries are deleted.</p>
+ *
+ * <p>The cache is off until {@link #setEnabled(boolean)} is called.</p>
+ *
+ * @author IDV development team
+ */
+public class PersistentDataCache {
+
+    /** logger */
+    private static final Logger logger =
+        LoggerFactory.getLogger(PersistentDataCache.class);
+
+    /** Name of the index file */
+    private static final String INDEX_FILE = "index.txt";
+
+    /** Suffix of the entry files */
+    private static final String SUFFIX = ".ser";
+
+    /** Most index writes that can be waiting */
+    private static final int WRITE_QUEUE_SIZE = 8;
+
+    /** the singleton */
+    private static volatile PersistentDataCache cache;
+
+    /** Where the entries and the index live */
+    private File cacheDir;
+
+    /** Is the cache in use */
+    private volatile boolean enabled = false;
+
+    /** Max size of the cache in bytes */
+    private volatile long maxSize = 2048L * 1024 * 1024;
+
+    /** Entries by key hash, least recently used first */
+    private final LinkedHashMap<String, Entry> index =
+        new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+    /** Total bytes on disk */
+    private long totalSize = 0;
+
+    /** Has the index been read from disk */
+    private boolean indexLoaded = false;
+
+    /** Set while a write of the index is waiting to run */
+    private final AtomicBoolean indexSavePending = new AtomicBoolean();
+
+    /** Writes the index in the background */
+    private final ThreadPoolExecutor writer =
+        new ThreadPoolExecutor(1, 1, 30L, TimeUnit.SECONDS,
+                               new ArrayBlockingQueue<Runnable>(WRITE_QUEUE_SIZE),
+                               r -> {
+        Thread t = new Thread(r, "Persistent data cache writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * ctor
+     */
+    private PersistentDataCache() {
+        writer.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The singleton access
+     *
+     * @return the persistent cache
+     */
+    public static PersistentDataCache getCache() {
+        PersistentDataCache result = cache;
+        if (result == null) {
+            synchronized (PersistentDataCache.class) {
+                result = cache;
+                if (result == null) {
+                    cache = result = new PersistentDataCache();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Set the directory the cache lives in. The index is read from it the
+     * next time the cache is used.
+     *
+     * @param dir the directory
+     */
+    public synchronized void setCacheDir(File dir) {
+        if ((cacheDir != null) && cacheDir.equals(dir)) {
+            return;
+        }
+        cacheDir    = dir;
+        indexLoaded = false;
+        index.clear();
+        totalSize = 0;
+    }
+
+    /**
+     * Get the directory the cache lives in
+     *
+     * @return the directory, or null if none was set
+     */
+    public synchronized File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Turn the cache on or off. Turning it off leaves the files in place.
+     *
+     * @param value true to use the cache
+     */
+    public void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Is the cache in use
+     *
+     * @return true if there is a directory and the cache is turned on
+     */
+    public boolean getEnabled() {
+        return enabled && (getCacheDir() != null);
+    }
+
+    /**
+     * Set the max size of the cache. Least recently used entries are
+     * deleted until it fits.
+     *
+     * @param bytes max size in bytes
+     */
+    public void setMaxSize(long bytes) {
+        maxSize = bytes;
+        List<File> toDelete;
+        synchronized (this) {
+            if ( !indexLoaded) {
+                return;
+            }
+            toDelete = trim();
+        }
+        delete(toDelete);
+        saveIndexLater();
+    }
+
+    /**
+     * Get the max size of the cache
+     *
+     * @return max size in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Get the number of bytes on disk
+     *
+     * @return the total size of the entries
+     */
+    public synchronized long getTotalSize() {
+        loadIndex();
+        return totalSize;
+    }
+
+    /**
+     * Look up an entry
+     *
+     * @param key the stable key of the entry
+     *
+     * @return the data, or null if it is not in the cache or could not be
+     *         read
+     */
+    public Data get(String key) {
+        if ( !getEnabled()) {
+            return null;
+        }
+        String hash = hash(key);
+        File   file;
+        synchronized (this) {
+            loadIndex();
+            Entry entry = index.get(hash);
+            if (entry == null) {
+                return null;
+            }
+            entry.lastTime = System.currentTimeMillis();
+            file           = entryFile(hash);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            // different keys could hash the same; make sure it is ours
+            if ( !key.equals(in.readObject())) {
+                return null;
+            }
+            Data data = (Data) in.readObject();
+            saveIndexLater();
+            return data;
+        } catch (Exception exc) {
+            logger.warn("Could not read cached data from " + file, exc);
+            remove(hash);
+            return null;
+        }
+    }
+
+    /**
+     * Add an entry. The data is written on the calling thread, so that the
+     * entry holds the data as it is now rather than as some other thread
+     * may later change it. Values held by the data cache are copied out of
+     * it without being read back onto the heap (see
+     * {@link visad.data.CachedFlatField}). Only the index is written in the
+     * background.
+     *
+     * @param key the stable key of the entry
+     * @param data the data
+     */
+    public void put(String key, Data data) {
+        if ( !getEnabled()) {
+            return;
+        }
+        write(key, data);
+    }
+
+    /**
+     * Delete all of the entries
+     */
+    public void clear() {
+        List<File> toDelete = new ArrayList<File>();
+        synchronized (this) {
+            loadIndex();
+            for (String hash : index.keySet()) {
+                toDelete.add(entryFile(hash));
+            }
+            index.clear();
+            totalSize = 0;
+        }
+        delete(toDelete);
+        saveIndexLater();
+    }
+
+    /**
+     * Write the entry to a temp file and move it into place, then trim the
+     * cache.
+     *
+     * @param key the stable key of the entry
+     * @param data the data
+     */
+    private void write(String key, Data data) {
+        String hash = hash(key);
+        File   dir  = getCacheDir();
+        if (dir == null) {
+            return;
+        }
+        synchronized (this) {
+            // loading the index deletes leftover temp files, ours included
+            loadIndex();
+        }
+        File tmp  = null;
+        File file = new File(dir, hash + SUFFIX);
+        try {
+            dir.mkdirs();
+            tmp = File.createTempFile(hash, ".tmp", dir);
+            try (ObjectOutputStream out = new ObjectOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeObject(key);
+                out.writeObject(data);
+            }
+            if ((tmp.length() > maxSize) || ( !file.delete() && file.exists())
+                    || !tmp.renameTo(file)) {
+                tmp.delete();
+                return;
+            }
+        } catch (Exception exc) {
+            logger.warn("Could not write cached data for " + key, exc);
+            if (tmp != null) {
+                tmp.delete();
+            }
+            return;
+        }
+        List<File> toDelete;
+        synchronized (this) {
+            loadIndex();
+            Entry old = index.remove(hash);
+            if (old != null) {
+                totalSize -= old.size;
+            }
+            Entry entry = new Entry(file.length(), System.currentTimeMillis());
+            index.put(hash, entry);
+            totalSize += entry.size;
+            toDelete  = trim();
+        }
+        delete(toDelete);
+        saveIndexLater();
+    }
+
+    /**
+     * Drop the least recently used entries until we fit. Must be called
+     * while holding the lock on this.
+     *
+     * @return the files to delete
+     */
+    private List<File> trim() {
+        List<File>                      toDelete = new ArrayList<File>();
+        Iterator<Map.Entry<String, Entry>> iter  =
+            index.entrySet().iterator();
+        while ((totalSize > maxSize) && iter.hasNext()) {
+            Map.Entry<String, Entry> e = iter.next();
+            totalSize -= e.getValue().size;
+            toDelete.add(entryFile(e.getKey()));
+            iter.remove();
+        }
+        return toDelete;
+    }
+
+    /**
+     * Forget about an entry and delete its file
+     *
+     * @param hash hash of the key
+     */
+    private void remove(String hash) {
+        File file;
+        synchronized (this) {
+            Entry entry = index.remove(hash);
+            if (entry == null) {
+                return;
+            }
+            totalSize -= entry.size;
+            file      = entryFile(hash);
+        }
+        file.delete();
+        saveIndexLater();
+    }
+
+    /**
+     * Delete the given files
+     *
+     * @param files the files
+     */
+    private static void delete(List<File> files) {
+        for (File f : files) {
+            f.delete();
+        }
+    }
+
+    /**
+     * Get the file for an entry. Must be called while holding the lock on
+     * this.
+     *
+     * @param hash hash of the key
+     *
+     * @return the file
+     */
+    private File entryFile(String hash) {
+        return new File(cacheDir, hash + SUFFIX);
+    }
+
+    /**
+     * Read the index if we have not done so yet. Entries that are in the
+     * directory but not in the index (e.g., the index could not be written
+     * last time) are picked up by their modification time, and index lines
+     * without a file are dropped. Must be called while holding the lock on
+     * this.
+     */
+    private void loadIndex() {
+        if (indexLoaded || (cacheDir == null)) {
+            return;
+        }
+        indexLoaded = true;
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        Map<String, Entry> found = new LinkedHashMap<String, Entry>();
+        // oldest first so that they end up at the lru end
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(),
+                b.lastModified()));
+        for (File f : files) {
+            String name = f.getName();
+            if (name.endsWith(".tmp")) {
+                // left over from a write that did not finish
+                f.delete();
+            } else if (name.endsWith(SUFFIX)) {
+                found.put(name.substring(0, name.length() - SUFFIX.length()),
+                          new Entry(f.length(), f.lastModified()));
+            }
+        }
+        File indexFile = new File(cacheDir, INDEX_FILE);
+        if (indexFile.exists()) {
+            try (BufferedReader in =
+                    new BufferedReader(new FileReader(indexFile))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String[] toks = line.split("\t");
+                    if (toks.length != 2) {
+                        continue;
+                    }
+                    Entry entry = found.get(toks[0]);
+                    if (entry != null) {
+                        entry.lastTime = Long.parseLong(toks[1]);
+                    }
+                }
+            } catch (Exception exc) {
+                logger.warn("Could not read " + indexFile
+                            + ", using the file times", exc);
+            }
+        }
+        List<Map.Entry<String, Entry>> entries =
+            new ArrayList<Map.Entry<String, Entry>>(found.entrySet());
+        entries.sort((a, b) -> Long.compare(a.getValue().lastTime,
+                b.getValue().lastTime));
+        for (Map.Entry<String, Entry> e : entries) {
+            index.put(e.getKey(), e.getValue());
+            totalSize += e.getValue().size;
+        }
+        delete(trim());
+    }
+
+    /**
+     * Write the index on the writer thread, unless that is already pending
+     */
+    private void saveIndexLater() {
+        if ( !indexSavePending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writer.execute(this::saveIndex);
+        } catch (RejectedExecutionException exc) {
+            // one that is already queued will save it
+            indexSavePending.set(false);
+        }
+    }
+
+    /**
+     * Write the index, least recently used first
+     */
+    private void saveIndex() {
+        indexSavePending.set(false);
+        File                          dir;
+        List<Map.Entry<String, Long>> lines =
+            new ArrayList<Map.Entry<String, Long>>();
+        synchronized (this) {
+            if ( !indexLoaded || (cacheDir == null)) {
+                return;
+            }
+            dir = cacheDir;
+            for (Map.Entry<String, Entry> e : index.entrySet()) {
+                lines.add(new AbstractMap.SimpleEntry<String, Long>(
+                    e.getKey(), e.getValue().lastTime));
+            }
+        }
+        File tmp       = new File(dir, INDEX_FILE + ".new");
+        File indexFile = new File(dir, INDEX_FILE);
+        try {
+            try (BufferedWriter out =
+                    new BufferedWriter(new FileWriter(tmp))) {
+                for (Map.Entry<String, Long> line : lines) {
+                    out.write(line.getKey() + "\t" + line.getValue());
+                    out.newLine();
+                }
+            }
+            indexFile.delete();
+            if ( !tmp.renameTo(indexFile)) {
+                tmp.delete();
+            }
+        } catch (IOException exc) {
+            logger.warn("Could not write " + indexFile, exc);
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Get the name an entry is stored under
+     *
+     * @param key the stable key
+     *
+     * @return hex SHA-256 of the key
+     */
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(
+                                key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                sb.append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException exc) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    /**
+     * What the index knows about an entry
+     */
+    private static class Entry {
+
+        /** size of the file */
+        final long size;
+
+        /** last time the entry was read or written */
+        long lastTime;
+
+        /**
+         * ctor
+         *
+         * @param size size of the file
+         * @param lastTime last access time
+         */
+        Entry(long size, long lastTime) {
+            this.size     = size;
+            this.lastTime = lastTime;
+        }
+    }
+}
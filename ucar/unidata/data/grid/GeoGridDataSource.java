@@ -94,6 +94,7 @@ import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateRange;
 import ucar.nc2.util.NamedAnything;
 import ucar.unidata.data.BadDataException;
+import ucar.unidata.data.DataCacheKey;
 import ucar.unidata.data.DataCategory;
 import ucar.unidata.data.DataChoice;
 import ucar.unidata.data.DataManager;
@@ -131,7 +132,9 @@ import ucar.visad.data.CalendarDateTime;
 import visad.Data;
 import visad.DateTime;
 import visad.FieldImpl;
+import visad.GriddedSet;
 import visad.Real;
+import visad.SampledSet;
 import visad.VisADException;
 import visad.georef.EarthLocation;
 import visad.georef.EarthLocationTuple;
@@ -183,7 +186,10 @@ public class GeoGridDataSource extends GridDataSource {
             GeoGridDataSource.class.getName());
 
     /** the dataset */
-    private GridDataset dataset;
+    private volatile GridDataset dataset;
+
+    /** Held while the dataset is opened */
+    private final Object datasetLock = new Object();
 
     /** list of times for this dataset */
     private List myTimes = new ArrayList();
@@ -1233,18 +1239,39 @@ public class GeoGridDataSource extends GridDataSource {
         }
     }
 
+    /**
+     * The dataset is opened under {@code datasetLock} and grids of local
+     * files are read under their read lock, so requests for local files can
+     * run in parallel. Remote (OPeNDAP, THREDDS, ...) reads have no such lock
+     * and the remote readers are not known to be thread safe, so those
+     * requests are made one at a time.
+     *
+     * @return true if this is a local file
+     */
+    @Override protected boolean isGetDataThreadSafe() {
+        return isLocalFile();
+    }
+
     /**
      * Return the GridDataset associated with this DataSource.
      *
      * @return dataset
      */
     public GridDataset getDataset() {
-        if (dataset == null) {
-            Trace.call1("GeoGridDataSource.getDataSet", " name = " + sources);
-            dataset = doMakeDataSet();
-            Trace.call2("GeoGridDataSource.getDataSet");
+        GridDataset result = dataset;
+        if (result == null) {
+            // getData can run on several threads at once
+            synchronized (datasetLock) {
+                result = dataset;
+                if (result == null) {
+                    Trace.call1("GeoGridDataSource.getDataSet",
+                                " name = " + sources);
+                    dataset = result = doMakeDataSet();
+                    Trace.call2("GeoGridDataSource.getDataSet");
+                }
+            }
         }
-        return dataset;
+        return result;
     }
 
 
@@ -1412,6 +1439,110 @@ public class GeoGridDataSource extends GridDataSource {
     }
 
 
+    /**
+     * Create the key used when caching
+     *
+     * @param dataChoice data choice
+     * @param dataSelection data selection
+     * @param requestProperties properties on request
+     *
+     * @return a {@link DataCacheKey}
+     */
+    protected Object createCacheKey(DataChoice dataChoice,
+                                    DataSelection dataSelection,
+                                    Hashtable requestProperties) {
+        return DataCacheKey.create(dataChoice, dataSelection,
+                                   requestProperties);
+    }
+
+    /**
+     * Grids cached for a larger area or a finer stride can be cut down
+     * to answer a request.
+     *
+     * @param dataChoice data choice
+     *
+     * @return true
+     */
+    protected boolean canSubsetCachedData(DataChoice dataChoice) {
+        return true;
+    }
+
+    /**
+     * Cut a cached grid down to the bounding box and strides of the
+     * request instead of reading it again. The x and y index ranges of
+     * both keys are worked out the way {@link #makeGeoGridAdapter} works
+     * them out for a read, so the subset has the same points as reading
+     * the request from the file.
+     *
+     * @param dataChoice data choice
+     * @param data the cached grid
+     * @param dataKey the key the grid was cached under
+     * @param requestKey the key of the request
+     *
+     * @return the subset or null if the grid can't be subset
+     *
+     * @throws VisADException  couldn't create Data object
+     * @throws RemoteException  couldn't create remote Data object
+     */
+    protected Data subsetCachedData(DataChoice dataChoice, Data data,
+                                    DataCacheKey dataKey,
+                                    DataCacheKey requestKey)
+            throws VisADException, RemoteException {
+        // subsetting reads every value of the cached grid
+        if ( !(data instanceof FieldImpl) || !GridUtil.isResident(data)) {
+            return null;
+        }
+        GeoGrid geoGrid = findGridForDataChoice(getDataset(), dataChoice);
+        if (geoGrid == null) {
+            return null;
+        }
+        Range[] have;
+        Range[] want;
+        try {
+            have = makeYXRanges(geoGrid, makeLatLonRect(dataKey),
+                                dataKey.getYStride());
+            want = makeYXRanges(geoGrid, makeLatLonRect(requestKey),
+                                requestKey.getYStride());
+        } catch (InvalidRangeException ire) {
+            return null;
+        }
+        // the cached grid must have been read with the ranges of its key
+        SampledSet domain = GridUtil.getSpatialDomain((FieldImpl) data);
+        if ((have[0] == null) || (have[1] == null)
+                || !(domain instanceof GriddedSet)
+                || (((GriddedSet) domain).getLength(0) != have[1].length())
+                || (((GriddedSet) domain).getLength(1)
+                    != have[0].length())) {
+            return null;
+        }
+        int[] y = GridUtil.getSubRange(have[0].first(), have[0].length(),
+                                       have[0].stride(), want[0].first(),
+                                       want[0].length(), want[0].stride());
+        int[] x = GridUtil.getSubRange(have[1].first(), have[1].length(),
+                                       have[1].stride(), want[1].first(),
+                                       want[1].length(), want[1].stride());
+        if ((x == null) || (y == null)) {
+            return null;
+        }
+        int[] box = { x[0], x[1], y[0], y[1] };
+        return GridUtil.subsetToIndexBox((FieldImpl) data, box, x[2], y[2]);
+    }
+
+    /**
+     * Make the lat/lon box of a cache key
+     *
+     * @param key the key
+     *
+     * @return the box or null if the key has no bounding box
+     */
+    private static LatLonRect makeLatLonRect(DataCacheKey key) {
+        double[] bbox = key.getBoundingBox();
+        return (bbox == null)
+               ? null
+               : new GeoLocationInfo(bbox[0], bbox[2], bbox[1],
+                                     bbox[3]).getLatLonRect();
+    }
+
     /**
      * Get the Data object specified by the particular selection criteria.
      *
@@ -1777,15 +1908,10 @@ public class GeoGridDataSource extends GridDataSource {
                         }
                     }
                     filename.append("_rect_" + cleanBBoxName(bbox));
-                    List yx_ranges =
-                        geoGrid.getCoordinateSystem().getRangesFromLatLonRect(
-                            bbox);
-                    yRange = makeRange(geoGrid.getYDimension(),
-                                       (Range) yx_ranges.get(0),
-                                       geoSelection.getYStrideToUse());
-                    xRange = makeRange(geoGrid.getXDimension(),
-                                       (Range) yx_ranges.get(1),
-                                       geoSelection.getYStrideToUse());
+                    Range[] yx_ranges = makeYXRanges(geoGrid, bbox,
+                                            geoSelection.getYStrideToUse());
+                    yRange = yx_ranges[0];
+                    xRange = yx_ranges[1];
                 } else if (geoSelection.getHasNonOneStride()) {
                     yRange = makeRange(geoGrid.getYDimension(), yRange,
                                        geoSelection.getYStrideToUse());
@@ -1937,6 +2063,35 @@ public class GeoGridDataSource extends GridDataSource {
         return range;
     }
 
+    /**
+     * Make the y and x ranges that read a lat/lon box of a grid. The
+     * stride is used for both ranges.
+     *
+     * @param geoGrid the grid
+     * @param bbox  the box or null for the whole grid
+     * @param stride  the stride
+     *
+     * @return the y and x ranges
+     *
+     * @throws InvalidRangeException not a valid range
+     */
+    private Range[] makeYXRanges(GeoGrid geoGrid, LatLonRect bbox,
+                                 int stride)
+            throws InvalidRangeException {
+        Range yRange = null;
+        Range xRange = null;
+        if (bbox != null) {
+            List yx_ranges =
+                geoGrid.getCoordinateSystem().getRangesFromLatLonRect(bbox);
+            yRange = (Range) yx_ranges.get(0);
+            xRange = (Range) yx_ranges.get(1);
+        }
+        return new Range[] { makeRange(geoGrid.getYDimension(), yRange,
+                                       stride),
+                             makeRange(geoGrid.getXDimension(), xRange,
+                                       stride) };
+    }
+
     /**
      * Clean up the bounding box name so it can be used in a file name.
      * change : and + and any other strange chars to _
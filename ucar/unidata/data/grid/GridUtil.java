@@ -1275,6 +1275,242 @@ public class GridUtil {
         return fi;
     }
 
+    /**
+     * Create a subset of the grid from a range of x and y indices,
+     * skipping every i'th x and j'th y point. The values are copied from
+     * the grid rather than resampled, so the subset has the grid's own
+     * points and navigation. All levels are kept.
+     *
+     * @param grid     grid to subset, or a sequence of them
+     * @param box      first x, last x, first y and last y index
+     * @param skipx    x skip factor
+     * @param skipy    y skip factor
+     * @return   the subset or null if the grid is not a gridded field
+     *           (or a sequence of them) or the box does not fit in it
+     *
+     * @throws VisADException   unable to subset the grid
+     */
+    public static FieldImpl subsetToIndexBox(FieldImpl grid, int[] box,
+                                             int skipx, int skipy)
+            throws VisADException {
+        Set timeSet = getTimeSet(grid);
+        if (timeSet == null) {
+            return (grid instanceof FlatField) && fitsIndexBox(grid, box)
+                   ? subsetToIndexBox((FlatField) grid, box, skipx, skipy)
+                   : null;
+        }
+        try {
+            FieldImpl fi = new FieldImpl((FunctionType) grid.getType(),
+                                         timeSet);
+            fi.setMetadataMap(grid.getMetadataMap());
+            for (int i = 0; i < timeSet.getLength(); i++) {
+                Data sample = grid.getSample(i);
+                if (sample.isMissing()) {
+                    fi.setSample(i, sample, false);
+                    continue;
+                }
+                if ( !(sample instanceof FlatField)
+                        || !fitsIndexBox((FlatField) sample, box)) {
+                    return null;
+                }
+                fi.setSample(i,
+                             subsetToIndexBox((FlatField) sample, box,
+                                 skipx, skipy), false);
+            }
+            return fi;
+        } catch (RemoteException re) {}  // won't happen - grids are local
+        return null;
+    }
+
+    /**
+     * Are all the values of a grid on the heap? Cutting a subset out of a
+     * grid reads all of its values, so for grids whose values are still to
+     * be read, or that the data cache has spilled, it is cheaper to read
+     * the subset from the source.
+     *
+     * @param grid   grid, or a sequence of grids
+     * @return  true if no {@link CachedFlatField} in the grid would have to
+     *          read or reload its values
+     *
+     * @throws VisADException   unable to get the samples of the grid
+     */
+    public static boolean isResident(Data grid) throws VisADException {
+        if (grid instanceof CachedFlatField) {
+            return ((CachedFlatField) grid).isResident();
+        }
+        if ((grid instanceof FlatField) || !(grid instanceof FieldImpl)) {
+            return true;
+        }
+        FieldImpl field = (FieldImpl) grid;
+        try {
+            for (int i = 0; i < field.getLength(); i++) {
+                if ( !isResident(field.getSample(i, false))) {
+                    return false;
+                }
+            }
+        } catch (RemoteException re) {}  // won't happen - grids are local
+        return true;
+    }
+
+    /**
+     * Where does one strided index range sit within another? Both ranges
+     * index the same full grid dimension, e.g. the range a cached grid was
+     * read with and the range a new request would read. The result picks
+     * the requested samples out of the samples of the first range.
+     *
+     * @param haveFirst   first index of the range we have
+     * @param haveLength  number of samples in the range we have
+     * @param haveStride  stride of the range we have
+     * @param wantFirst   first index of the range we want
+     * @param wantLength  number of samples in the range we want
+     * @param wantStride  stride of the range we want
+     * @return  first index, last index and skip factor within the samples
+     *          we have or null if some wanted sample is not one of them
+     */
+    public static int[] getSubRange(int haveFirst, int haveLength,
+                                    int haveStride, int wantFirst,
+                                    int wantLength, int wantStride) {
+        // the stride of a single point doesn't matter
+        int stride = (wantLength == 1)
+                     ? haveStride
+                     : wantStride;
+        int offset = wantFirst - haveFirst;
+        int end    = offset + (wantLength - 1) * stride;
+        if ((wantLength < 1) || (offset < 0) || (offset % haveStride != 0)
+                || (stride % haveStride != 0)
+                || (end > (haveLength - 1) * haveStride)) {
+            return null;
+        }
+        return new int[] { offset / haveStride, end / haveStride,
+                           stride / haveStride };
+    }
+
+    /**
+     * Is an index box inside a gridded domain?
+     *
+     * @param grid  the grid
+     * @param box   first x, last x, first y and last y index
+     * @return  true if the grid is gridded and the box fits
+     */
+    private static boolean fitsIndexBox(FieldImpl grid, int[] box) {
+        Set domainSet = grid.getDomainSet();
+        if ( !(domainSet instanceof GriddedSet)
+                || (domainSet.getManifoldDimension() < 2)) {
+            return false;
+        }
+        GriddedSet domain = (GriddedSet) domainSet;
+        return (box[0] >= 0) && (box[1] < domain.getLength(0))
+               && (box[2] >= 0) && (box[3] < domain.getLength(1));
+    }
+
+    /**
+     * Create a subset of a grid from a range of x and y indices, skipping
+     * every i'th x and j'th y point. All levels are kept.
+     *
+     * @param grid     grid to subset
+     * @param box      first x, last x, first y and last y index
+     * @param skipx    x skip factor
+     * @param skipy    y skip factor
+     * @return   the subset
+     *
+     * @throws VisADException   unable to subset the grid
+     */
+    private static FlatField subsetToIndexBox(FlatField grid, int[] box,
+            int skipx, int skipy)
+            throws VisADException {
+        GriddedSet domainSet = (GriddedSet) grid.getDomainSet();
+        int        sizeX     = domainSet.getLength(0);
+        int        sizeY     = domainSet.getLength(1);
+        int        sizeZ     = (domainSet.getManifoldDimension() == 3)
+                               ? domainSet.getLength(2)
+                               : 1;
+        int        newSizeX  = 1 + (box[1] - box[0]) / skipx;
+        int        newSizeY  = 1 + (box[3] - box[2]) / skipy;
+        int[]      indices   = new int[newSizeX * newSizeY * sizeZ];
+        int        l         = 0;
+        for (int k = 0; k < sizeZ; k++) {
+            for (int j = box[2]; j <= box[3]; j += skipy) {
+                for (int i = box[0]; i <= box[1]; i += skipx) {
+                    //compute stride into 1D array of 3D data
+                    indices[l++] = i + (j + k * sizeY) * sizeX;
+                }
+            }
+        }
+
+        GriddedSet subDomain = null;
+        if ((domainSet instanceof Linear2DSet)
+                || (domainSet instanceof Linear3DSet)) {
+            Linear1DSet xSet =
+                ((LinearSet) domainSet).getLinear1DComponent(0);
+            Linear1DSet ySet =
+                ((LinearSet) domainSet).getLinear1DComponent(1);
+            double      firstX = xSet.getFirst() + box[0] * xSet.getStep();
+            double      firstY = ySet.getFirst() + box[2] * ySet.getStep();
+            Linear1DSet newX   = new Linear1DSet(xSet.getType(), firstX,
+                                     firstX
+                                     + (newSizeX - 1) * xSet.getStep()
+                                       * skipx, newSizeX);
+            Linear1DSet newY = new Linear1DSet(ySet.getType(), firstY,
+                                   firstY
+                                   + (newSizeY - 1) * ySet.getStep()
+                                     * skipy, newSizeY);
+            if (domainSet instanceof LinearLatLonSet) {
+                subDomain = new LinearLatLonSet(domainSet.getType(),
+                        new Linear1DSet[] { newX,
+                                            newY }, domainSet.getCoordinateSystem(),
+                                            domainSet.getSetUnits(),
+                                            domainSet.getSetErrors());
+            } else if (domainSet instanceof Linear2DSet) {
+                subDomain = new Linear2DSet(domainSet.getType(),
+                                            new Linear1DSet[] { newX,
+                                                    newY }, domainSet.getCoordinateSystem(),
+                                                    domainSet.getSetUnits(),
+                                                        domainSet.getSetErrors());
+            } else {
+                subDomain = new Linear3DSet(domainSet.getType(),
+                                            new Linear1DSet[] { newX,
+                        newY,
+                        ((LinearSet) domainSet).getLinear1DComponent(
+                            2) }, domainSet.getCoordinateSystem(),
+                                  domainSet.getSetUnits(),
+                                  domainSet.getSetErrors());
+            }
+        } else {
+            float[][] samples    = domainSet.getSamples(false);
+            float[][] subSamples = new float[samples.length][indices.length];
+            for (int c = 0; c < samples.length; c++) {
+                for (l = 0; l < indices.length; l++) {
+                    subSamples[c][l] = samples[c][indices[l]];
+                }
+            }
+            int[] newSizes = (domainSet.getManifoldDimension() == 3)
+                             ? new int[] { newSizeX, newSizeY, sizeZ }
+                             : new int[] { newSizeX, newSizeY };
+            // a piece of a valid grid is valid, so don't test it
+            subDomain = GriddedSet.create(domainSet.getType(), subSamples,
+                                          newSizes,
+                                          domainSet.getCoordinateSystem(),
+                                          domainSet.getSetUnits(),
+                                          domainSet.getSetErrors(), false,
+                                          false);
+        }
+
+        float[][] values    = grid.getFloats(false);
+        float[][] subValues = new float[values.length][indices.length];
+        for (int c = 0; c < values.length; c++) {
+            for (l = 0; l < indices.length; l++) {
+                subValues[c][l] = values[c][indices[l]];
+            }
+        }
+        FlatField subGrid =
+            new CachedFlatField((FunctionType) grid.getType(), subDomain,
+                                grid.getRangeCoordinateSystem()[0],
+                                grid.getRangeSets(),
+                                Util.getRangeUnits(grid), subValues);
+        subGrid.setMetadataMap(grid.getMetadataMap());
+        return subGrid;
+    }
+
     /**
      * Create a subset of the grid skipping every i'th x and
      * j'th y point.
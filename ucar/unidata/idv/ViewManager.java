@@ -88,6 +88,7 @@ import ucar.unidata.xml.XmlUtil;
 import ucar.visad.Util;
 import ucar.visad.display.Animation;
 import ucar.visad.display.AnimationInfo;
+import ucar.visad.display.AnimationPrefetcher;
 import ucar.visad.display.AnimationSetInfo;
 import ucar.visad.display.AnimationWidget;
 import ucar.visad.display.CompositeDisplayable;
@@ -224,6 +225,9 @@ public class ViewManager extends SharableImpl implements ActionListener,
     /** Preference for showing the time string in the display */
     public static final String PREF_ANIREADOUT = "View.AniReadout";
 
+    /** Preference for how many animation steps to read ahead */
+    public static final String PREF_ANIPREFETCH = "View.AniPrefetch";
+
     /** For the bg color */
     public static final String PREF_BGCOLOR = "View.BackgroundColor";
 
@@ -620,6 +624,9 @@ public class ViewManager extends SharableImpl implements ActionListener,
     /** We create this Animation and add it into the DisplayMaster */
     private Animation animation;
 
+    /** Reads ahead the data for the upcoming animation steps */
+    private AnimationPrefetcher animationPrefetcher;
+
     /** The GUI component to show the visiblity toggle animation */
     private JCheckBoxMenuItem animationCB;
 
@@ -5029,6 +5036,18 @@ public class ViewManager extends SharableImpl implements ActionListener,
                 animationWidget.setUniqueId(getUniqueId() + "_anim");
                 animation = new Animation();
                 animationWidget.setAnimation(animation);
+                int prefetchSteps =
+                    getStore().get(PREF_ANIPREFETCH,
+                                   AnimationPrefetcher.DEFAULT_STEPS);
+                if (prefetchSteps > 0) {
+                    animationPrefetcher = new AnimationPrefetcher(animation,
+                            new AnimationPrefetcher.DataProvider() {
+                        public List<Data> getAnimatedData() {
+                            return getDisplayedData();
+                        }
+                    });
+                    animationPrefetcher.setNumSteps(prefetchSteps);
+                }
                 animation.addPropertyChangeListener(
                     new PropertyChangeListener() {
                     public void propertyChange(PropertyChangeEvent evt) {
@@ -5194,6 +5213,11 @@ public class ViewManager extends SharableImpl implements ActionListener,
             animationWidget = null;
         }
 
+        if (animationPrefetcher != null) {
+            animationPrefetcher.dispose();
+            animationPrefetcher = null;
+        }
+
         if (master != null) {
             try {
                 if (displayListDisplayables != null) {
@@ -5273,6 +5297,26 @@ public class ViewManager extends SharableImpl implements ActionListener,
         }
     }
 
+    /**
+     * Get the data of the displayables shown in this view
+     *
+     * @return  the data
+     */
+    private List<Data> getDisplayedData() {
+        List<Data> data = new ArrayList<Data>();
+        for (DisplayInfo info : getDisplayInfos()) {
+            try {
+                Data d = info.getDisplayable().getData();
+                if (d != null) {
+                    data.add(d);
+                }
+            } catch (Exception exc) {
+                // skip it, the display has its own error handling
+            }
+        }
+        return data;
+    }
+
     /**
      * Return the string representation of this object
      *
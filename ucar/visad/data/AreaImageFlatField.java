@@ -89,7 +89,7 @@ public class AreaImageFlatField extends CachedFlatField implements SingleBandedI
         LoggerFactory.getLogger(AreaImageFlatField.class);
     
     /** _more_ */
-    private Object READMUTEX = new Object();
+    private transient Object READMUTEX = new Object();
 
 
     /** _more_ */
@@ -449,18 +449,34 @@ public class AreaImageFlatField extends CachedFlatField implements SingleBandedI
 
 
 
+    /**
+     * Restore the read lock; the values themselves come back through
+     * CachedFlatField.
+     *
+     * @param in stream to read from
+     *
+     * @throws IOException On badness
+     * @throws ClassNotFoundException On badness
+     */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        READMUTEX = new Object();
+    }
+
     /**
      * _more_
      */
     private void checkReadData() {
-        synchronized (READMUTEX) {
-            if ( !haveData()) {
-                //Force the read
-                try {
-                    unpackFloats(false);
-                } catch (VisADException ve) {
-                    throw new RuntimeException(ve);
-                }
+        // CachedFlatField makes sure only one thread reads. Holding
+        // READMUTEX here would take the locks in the opposite order
+        // from readData.
+        if ( !haveData()) {
+            //Force the read
+            try {
+                unpackFloats(false);
+            } catch (VisADException ve) {
+                throw new RuntimeException(ve);
             }
         }
     }
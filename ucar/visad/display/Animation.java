@@ -924,6 +924,77 @@ public class Animation extends Displayable {
     }
 
 
+    /**
+     * Get the direction of looping.
+     *
+     * @return FORWARD or REVERSE
+     */
+    public int getDirection() {
+        return direction
+               ? FORWARD
+               : REVERSE;
+    }
+
+    /**
+     * Get the indices of the time steps that will be shown after the
+     * current one, in the order they will be shown. This follows the
+     * direction, rocking and the steps that are turned off the same way
+     * the running animation does.
+     *
+     * @param count  how many steps to get
+     *
+     * @return the indices, fewer than count if there are not that many
+     *         other steps
+     */
+    public int[] getUpcomingSteps(int count) {
+        int numSteps = getNumSteps();
+        int current  = getCurrent();
+        count = Math.min(count, numSteps - 1);
+        if (count <= 0) {
+            return new int[0];
+        }
+        int[]   steps   = new int[count];
+        int     found   = 0;
+        int     index   = current;
+        boolean forward = direction;
+        // rocking pauses on the end frames and turned off steps are
+        // skipped, so it can take more than count moves
+        for (int tries = 0; (found < count) && (tries < 2 * numSteps);
+                tries++) {
+            if (forward) {
+                if (anyStepsForward(index)) {
+                    index++;
+                } else if (rocking) {
+                    forward = false;
+                } else {
+                    index = 0;
+                }
+            } else {
+                if (anyStepsBack(index)) {
+                    index--;
+                } else if (rocking) {
+                    forward = true;
+                } else {
+                    index = numSteps - 1;
+                }
+            }
+            index = clipIndex(index, forward);
+            boolean seen = (index == current);
+            for (int i = 0; !seen && (i < found); i++) {
+                seen = (steps[i] == index);
+            }
+            if ( !seen) {
+                steps[found++] = index;
+            }
+        }
+        if (found < count) {
+            int[] tmp = new int[found];
+            System.arraycopy(steps, 0, tmp, 0, found);
+            steps = tmp;
+        }
+        return steps;
+    }
+
     /**
      * Step one time forward.
      */
@@ -1089,7 +1160,17 @@ public class Animation extends Displayable {
      * @return valid time steps forward
      */
     private boolean anyStepsForward() {
-        int current = getCurrent();
+        return anyStepsForward(getCurrent());
+    }
+
+    /**
+     * Are there any ok time steps forward of the given index
+     *
+     * @param current the index
+     *
+     * @return valid time steps forward
+     */
+    private boolean anyStepsForward(int current) {
         if (stepsOk != null) {
             for (int i = current + 1; i < stepsOk.length; i++) {
                 if (stepsOk[i]) {
@@ -1107,7 +1188,17 @@ public class Animation extends Displayable {
      * @return valid time steps back
      */
     private boolean anyStepsBack() {
-        int current = getCurrent();
+        return anyStepsBack(getCurrent());
+    }
+
+    /**
+     * Are there any ok time steps back of the given index
+     *
+     * @param current the index
+     *
+     * @return valid time steps back
+     */
+    private boolean anyStepsBack(int current) {
         if (stepsOk != null) {
             for (int i = current - 1; i >= 0; i--) {
                 if (stepsOk[i]) {
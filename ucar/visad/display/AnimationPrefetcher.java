@@ -0,0 +1,351 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ * 
+ * All Rights Reserved
+ * 
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.  
+ * 
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ * 
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package ucar.visad.display;
+
+
+import visad.Data;
+import visad.FieldImpl;
+import visad.FlatField;
+import visad.Real;
+import visad.RealTuple;
+import visad.Set;
+import visad.SetType;
+import visad.Unit;
+import visad.VisADException;
+
+import visad.data.CachedFlatField;
+
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+
+import java.rmi.RemoteException;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Reads ahead the data for the time steps an {@link Animation} is about
+ * to show. Data that is only read when its time step is first displayed,
+ * like the images and grids held in {@link CachedFlatField}s, makes the
+ * first pass through a long loop stutter on every frame. This listens to
+ * the animation and, each time it moves, loads the next few steps in the
+ * looping direction on low priority background threads. Loads for steps
+ * that are no longer coming up, because the user jumped to another time
+ * or the times changed, are cancelled.
+ *
+ * @author IDV development team
+ */
+public class AnimationPrefetcher implements PropertyChangeListener {
+
+    /**
+     * Where the prefetcher gets the data being animated
+     */
+    public interface DataProvider {
+
+        /**
+         * Get the data being animated. Time sequences in this list have
+         * the steps for upcoming times loaded.
+         *
+         * @return the data
+         */
+        List<Data> getAnimatedData();
+    }
+
+    /** Default number of steps to read ahead */
+    public static final int DEFAULT_STEPS = 3;
+
+    /** Threads shared by all prefetchers */
+    private static final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(2, 2, 30, TimeUnit.SECONDS,
+                               new LinkedBlockingQueue<Runnable>(),
+                               new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "Animation prefetch");
+            thread.setDaemon(true);
+            // stay out of the way of the display
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        }
+    });
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** The animation we follow */
+    private final Animation animation;
+
+    /** Where the data comes from */
+    private final DataProvider provider;
+
+    /** How many steps to read ahead */
+    private volatile int numSteps = DEFAULT_STEPS;
+
+    /** The loads we started, by time step index */
+    private final Map<Integer, Future<?>> loads =
+        new HashMap<Integer, Future<?>>();
+
+    /** Changes when all the loads are cancelled */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    /**
+     * Create a prefetcher that follows the given animation
+     *
+     * @param animation the animation
+     * @param provider where the data comes from
+     */
+    public AnimationPrefetcher(Animation animation, DataProvider provider) {
+        this.animation = animation;
+        this.provider  = provider;
+        animation.addPropertyChangeListener(this);
+    }
+
+    /**
+     * Set how many steps to read ahead
+     *
+     * @param steps the number of steps, 0 to turn reading ahead off
+     */
+    public void setNumSteps(int steps) {
+        numSteps = steps;
+        if (steps <= 0) {
+            cancel();
+        }
+    }
+
+    /**
+     * Get how many steps are read ahead
+     *
+     * @return the number of steps
+     */
+    public int getNumSteps() {
+        return numSteps;
+    }
+
+    /**
+     * Stop following the animation and cancel the loads
+     */
+    public void dispose() {
+        animation.removePropertyChangeListener(this);
+        cancel();
+    }
+
+    /**
+     * Cancel the loads that have not finished
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        synchronized (loads) {
+            for (Future<?> load : loads.values()) {
+                load.cancel(false);
+            }
+            loads.clear();
+        }
+        executor.purge();
+    }
+
+    /**
+     * Handle a change to the animation
+     *
+     * @param evt the event
+     */
+    public void propertyChange(PropertyChangeEvent evt) {
+        String name = evt.getPropertyName();
+        if (Animation.ANI_SET.equals(name)) {
+            // the step indices now mean other times
+            cancel();
+            update();
+        } else if (Animation.ANI_VALUE.equals(name)) {
+            update();
+        }
+    }
+
+    /**
+     * Cancel the loads for steps that are no longer coming up and start
+     * the ones for steps that are
+     */
+    private void update() {
+        Set set = animation.getSet();
+        if ((numSteps <= 0) || (set == null)) {
+            return;
+        }
+        int[] steps = animation.getUpcomingSteps(numSteps);
+        if (steps.length == 0) {
+            return;
+        }
+        List<Data> data = provider.getAnimatedData();
+        if (data.isEmpty()) {
+            return;
+        }
+        int gen = generation.get();
+        synchronized (loads) {
+            Iterator<Map.Entry<Integer, Future<?>>> iter =
+                loads.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<Integer, Future<?>> entry = iter.next();
+                if ( !contains(steps, entry.getKey())) {
+                    entry.getValue().cancel(false);
+                    iter.remove();
+                }
+            }
+            for (int step : steps) {
+                if (loads.containsKey(step)) {
+                    continue;
+                }
+                try {
+                    RealTuple tuple =
+                        visad.util.DataUtility.getSample(set, step);
+                    loads.put(step,
+                              executor.submit(new Load(data,
+                                  (Real) tuple.getComponent(0), gen)));
+                } catch (Exception exc) {
+                    // not worth bothering the user about
+                }
+            }
+        }
+        executor.purge();
+    }
+
+    /**
+     * Is the value in the array?
+     *
+     * @param values the array
+     * @param value the value
+     *
+     * @return true if it is
+     */
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Loads one time step of the data
+     */
+    private class Load implements Runnable {
+
+        /** The data */
+        private final List<Data> data;
+
+        /** The time of the step */
+        private final Real time;
+
+        /** The generation this load belongs to */
+        private final int gen;
+
+        /**
+         * Create the load
+         *
+         * @param data the data
+         * @param time the time of the step
+         * @param gen the generation
+         */
+        Load(List<Data> data, Real time, int gen) {
+            this.data = data;
+            this.time = time;
+            this.gen  = gen;
+        }
+
+        /**
+         * Load the step
+         */
+        public void run() {
+            for (Data d : data) {
+                if (gen != generation.get()) {
+                    return;
+                }
+                try {
+                    load(d, time);
+                } catch (Exception exc) {
+                    // the display reports it when it reads the step itself
+                }
+            }
+        }
+    }
+
+    /**
+     * Load the step of a time sequence at the given time
+     *
+     * @param data the data
+     * @param time the time
+     *
+     * @throws RemoteException Java RMI problem
+     * @throws VisADException VisAD problem
+     */
+    private static void load(Data data, Real time)
+            throws VisADException, RemoteException {
+        if ( !(data instanceof FieldImpl) || (data instanceof FlatField)) {
+            return;
+        }
+        FieldImpl field  = (FieldImpl) data;
+        Set       domain = field.getDomainSet();
+        if ((domain.getDimension() != 1)
+                || !((SetType) domain.getType()).getDomain().getComponent(
+                    0).equals(time.getType())) {
+            return;
+        }
+        Unit   unit  = domain.getSetUnits()[0];
+        double value = (unit == null)
+                       ? time.getValue()
+                       : time.getValue(unit);
+        int index = domain.doubleToIndex(new double[][] {
+            { value }
+        })[0];
+        if (index < 0) {
+            return;
+        }
+        Data step = field.getSample(index);
+        if (step instanceof CachedFlatField) {
+            ((CachedFlatField) step).prefetch();
+        } else if ((step instanceof FieldImpl)
+                   && !(step instanceof FlatField)) {
+            // e.g. the members of an ensemble
+            FieldImpl members = (FieldImpl) step;
+            for (int i = 0; i < members.getLength(); i++) {
+                Data member = members.getSample(i);
+                if (member instanceof CachedFlatField) {
+                    ((CachedFlatField) member).prefetch();
+                }
+            }
+        }
+    }
+}
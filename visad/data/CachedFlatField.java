@@ -65,6 +65,14 @@ import org.slf4j.LoggerFactory;
 
 import visad.*;
 import visad.util.DataUtility;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.rmi.RemoteException;
 
 
@@ -76,10 +84,10 @@ public class CachedFlatField extends FlatField {
     private static final Logger logger =
         LoggerFactory.getLogger(CachedFlatField.class);
 
-    /** the id for this instance */
-    private Object cacheId;
+    /** the id for this instance; only means something in this session */
+    private transient Object cacheId;
 
-    private boolean inCache = false;
+    private transient volatile boolean inCache = false;
 
     /** Mutex */
     transient protected Object MUTEX = new Object();
@@ -262,6 +270,87 @@ public class CachedFlatField extends FlatField {
 
 
 
+    /**
+     * The data cache only lives as long as this session, so write the
+     * values themselves rather than the cache id. They are copied out of
+     * the data cache in its spill format (see
+     * {@link DataCacheManager#writeEntry}), so values that have been
+     * spilled are not read back onto the heap to be written.
+     *
+     * @param out stream to write to
+     *
+     * @throws IOException if the values could not be read or written
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        DataCacheManager manager = DataCacheManager.getCacheManager();
+        File tmp = File.createTempFile("ccf", ".dat", manager.getCacheDir());
+        try {
+            boolean written = false;
+            try {
+                // values not read yet are read, and cached, first
+                if (inCache || (getMyValues() != null)) {
+                    Object id = cacheId;
+                    written = (id != null) && manager.writeEntry(id, tmp);
+                }
+            } catch (VisADException e) {
+                throw new IOException("Could not read values of " + this.getClass().getName(), e);
+            }
+            if ( !written) {
+                out.writeLong(-1);
+                return;
+            }
+            out.writeLong(tmp.length());
+            Files.copy(tmp.toPath(), out);
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Put the values written by {@link #writeObject} into this session's
+     * data cache.
+     *
+     * @param in stream to read from
+     *
+     * @throws IOException if the values could not be read or cached
+     * @throws ClassNotFoundException if a class of the stream is missing
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        MUTEX = new Object();
+        long length = in.readLong();
+        if (length < 0) {
+            return;
+        }
+        File tmp = File.createTempFile("ccf", ".dat",
+                       DataCacheManager.getCacheManager().getCacheDir());
+        float[][] values;
+        try {
+            try (OutputStream copy = new FileOutputStream(tmp)) {
+                byte[] buffer = new byte[64 * 1024];
+                while (length > 0) {
+                    int n = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+                    if (n < 0) {
+                        throw new EOFException("Truncated values of " + this.getClass().getName());
+                    }
+                    copy.write(buffer, 0, n);
+                    length -= n;
+                }
+            }
+            values = (float[][]) DataCacheFile.read(tmp);
+        } finally {
+            if ( !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+        try {
+            initCache(values);
+        } catch (VisADException e) {
+            throw new IOException("Could not cache values of " + this.getClass().getName(), e);
+        }
+    }
+
     public void finalize() throws Throwable {
         super.finalize();
         //        System.err.println("CachedFlatField.finalize");
@@ -482,35 +571,66 @@ public class CachedFlatField extends FlatField {
     private float[][] getMyValues() throws VisADException {
         //        msg("CCF - getMyValues " + inCache);
         if(inCache) {
-            if(cacheId == null) {
-                //                msg("CCF - WHoa, inCache=true but no cacheId");
-                return null;
-            }
-            return DataCacheManager.getCacheManager().getFloatArray2D(cacheId);
+            return getCachedValues();
         }
+        // only one thread reads the data, e.g. when a prefetch and the
+        // display want it at the same time
+        synchronized (this) {
+            if(inCache) {
+                return getCachedValues();
+            }
 
-        float[][] values = null;
+            float[][] values = null;
 
-        //If we don't have the values and we have a ccf that we were cloned from 
-        //then read the data from it and clear it out
-        if(parent!=null) {
-            values = parent.unpackFloats(true);
-            readValuesFromParent(parent);
-            parent = null;
-        }
+            //If we don't have the values and we have a ccf that we were cloned from 
+            //then read the data from it and clear it out
+            if(parent!=null) {
+                values = parent.unpackFloats(true);
+                readValuesFromParent(parent);
+                parent = null;
+            }
 
 
-        if (values == null) {
-            values = readData();
-        }
+            if (values == null) {
+                values = readData();
+            }
 
 
-        if (values == null) {
-            //            msg("Floats still null after readData");
+            if (values == null) {
+                //            msg("Floats still null after readData");
+                return null;
+            }
+            initCache(values);
+            return values;
+        }
+    }
+
+    /**
+     * Get the values from the data cache
+     *
+     * @return the values or null
+     *
+     * @throws VisADException   problem reading data
+     */
+    private float[][] getCachedValues() throws VisADException {
+        if(cacheId == null) {
+            //                msg("CCF - WHoa, inCache=true but no cacheId");
             return null;
         }
-        initCache(values);
-        return values;
+        return DataCacheManager.getCacheManager().getFloatArray2D(cacheId);
+    }
+
+
+    /**
+     * Make sure the values are in memory, reading them or getting them
+     * back from the data cache if need be. This lets the values be loaded
+     * ahead of when they are needed, e.g. for the next steps of an
+     * animation.
+     *
+     * @throws VisADException   problem reading data
+     */
+    public void prefetch() throws VisADException {
+        getMyValues();
     }
 
 
@@ -518,6 +638,18 @@ public class CachedFlatField extends FlatField {
         return inCache;
     }
 
+    /**
+     * Are the values on the heap, so that getting them does not mean
+     * reading the data or loading it back from the data cache?
+     *
+     * @return true if the values can be had without I/O
+     */
+    public boolean isResident() {
+        Object id = cacheId;
+        return inCache && (id != null)
+               && DataCacheManager.getCacheManager().isResident(id);
+    }
+
 
 
     /**
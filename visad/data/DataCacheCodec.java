@@ -0,0 +1,305 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package visad.data;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression for the {@code float}, {@code short} and {@code byte} arrays
+ * that {@link DataCacheFile} writes when spill compression is turned on.
+ *
+ * <p>Arrays are cut into blocks of {@link #BLOCK_SIZE} values that are
+ * coded independently, so both directions can run in parallel by block.
+ * Each block is first transformed and then deflated:</p>
+ * <ul>
+ *   <li>{@code float}: runs of {@code NaN} (the usual fill value) become a
+ *   single run-length token. Other values are stored as the zig-zag varint
+ *   of the difference between their bit pattern and the previous value's
+ *   bit pattern, which is small for smooth fields and for floats made by
+ *   scaling integer counts.</li>
+ *   <li>{@code short}: zig-zag varint of the difference from the previous
+ *   value.</li>
+ *   <li>{@code byte}: difference from the previous value.</li>
+ * </ul>
+ * <p>The coding is lossless, including the bit patterns of any
+ * non-canonical {@code NaN}s.</p>
+ */
+final class DataCacheCodec {
+
+    /** Number of values in a block. */
+    static final int BLOCK_SIZE = 1 << 16;
+
+    private static final int NAN_BITS = Float.floatToRawIntBits(Float.NaN);
+
+    private DataCacheCodec() {
+    }
+
+    /**
+     * Whether arrays of the given element class can be compressed.
+     *
+     * @param elementClass Primitive element class.
+     *
+     * @return {@code true} for {@code float}, {@code short} and {@code byte}.
+     */
+    static boolean supports(Class<?> elementClass) {
+        return (elementClass == float.class)
+            || (elementClass == short.class)
+            || (elementClass == byte.class);
+    }
+
+    /**
+     * Number of blocks needed for an array.
+     *
+     * @param length Array length.
+     *
+     * @return Block count.
+     */
+    static int blockCount(int length) {
+        return (length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    /**
+     * Compress one block of an array.
+     *
+     * @param array {@code float[]}, {@code short[]} or {@code byte[]}.
+     * @param block Block index.
+     *
+     * @return Deflated block.
+     */
+    static byte[] encode(Object array, int block) {
+        int start = block * BLOCK_SIZE;
+        int end = Math.min(start + BLOCK_SIZE, Array.getLength(array));
+        byte[] raw = new byte[maxRawLength(array, end - start)];
+        int length;
+        if (array instanceof float[]) {
+            float[] values = (float[])array;
+            length = encodeFloats(values, start, end, raw);
+        } else if (array instanceof short[]) {
+            short[] values = (short[])array;
+            length = 0;
+            int prev = 0;
+            for (int i = start; i < end; i++) {
+                int delta = (short)(values[i] - prev);
+                prev = values[i];
+                length = putVarint(raw, length, (delta << 1) ^ (delta >> 31));
+            }
+        } else {
+            byte[] values = (byte[])array;
+            length = 0;
+            byte prev = 0;
+            for (int i = start; i < end; i++) {
+                raw[length++] = (byte)(values[i] - prev);
+                prev = values[i];
+            }
+        }
+        return deflate(raw, length);
+    }
+
+    /**
+     * Decompress one block into its place in an array.
+     *
+     * @param bytes Deflated block, as made by {@link #encode(Object, int)}.
+     * @param offset Start of the block within {@code bytes}.
+     * @param length Length of the block within {@code bytes}.
+     * @param array Destination array.
+     * @param block Block index.
+     *
+     * @throws DataFormatException if the block is corrupt.
+     */
+    static void decode(byte[] bytes, int offset, int length, Object array,
+                       int block) throws DataFormatException
+    {
+        int start = block * BLOCK_SIZE;
+        int end = Math.min(start + BLOCK_SIZE, Array.getLength(array));
+        byte[] raw = new byte[maxRawLength(array, end - start)];
+        Inflater inflater = new Inflater(true);
+        int rawLength;
+        try {
+            inflater.setInput(bytes, offset, length);
+            rawLength = 0;
+            while (!inflater.finished() && rawLength < raw.length) {
+                int n = inflater.inflate(raw, rawLength, raw.length - rawLength);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated cache block");
+                }
+                rawLength += n;
+            }
+        } finally {
+            inflater.end();
+        }
+
+        if (array instanceof float[]) {
+            decodeFloats(raw, rawLength, (float[])array, start, end);
+        } else if (array instanceof short[]) {
+            short[] values = (short[])array;
+            int[] pos = { 0 };
+            int prev = 0;
+            for (int i = start; i < end; i++) {
+                int zz = getVarint(raw, rawLength, pos);
+                prev = (short)(prev + ((zz >>> 1) ^ -(zz & 1)));
+                values[i] = (short)prev;
+            }
+        } else {
+            byte[] values = (byte[])array;
+            if (rawLength < end - start) {
+                throw new DataFormatException("Truncated cache block");
+            }
+            byte prev = 0;
+            for (int i = start, j = 0; i < end; i++, j++) {
+                prev += raw[j];
+                values[i] = prev;
+            }
+        }
+    }
+
+    /**
+     * Largest possible size of a transformed block. A float value is at most
+     * a five byte varint. Run tokens are varints of up to three bytes (runs
+     * are at most {@link #BLOCK_SIZE} long), but a token only needs more than
+     * one byte for runs of 64 or more values, so no value carries more than
+     * one byte of token overhead. A short delta is at most a three byte
+     * varint.
+     */
+    private static int maxRawLength(Object array, int count) {
+        if (array instanceof float[]) {
+            return 6 * count + 8;
+        }
+        if (array instanceof short[]) {
+            return 3 * count;
+        }
+        return count;
+    }
+
+    private static int encodeFloats(float[] values, int start, int end,
+                                    byte[] raw)
+    {
+        int length = 0;
+        int prev = 0;
+        int i = start;
+        while (i < end) {
+            int j = i;
+            if (Float.floatToRawIntBits(values[i]) == NAN_BITS) {
+                while (j < end && Float.floatToRawIntBits(values[j]) == NAN_BITS) {
+                    j++;
+                }
+                length = putVarint(raw, length, ((j - i) << 1) | 1);
+            } else {
+                while (j < end && Float.floatToRawIntBits(values[j]) != NAN_BITS) {
+                    j++;
+                }
+                length = putVarint(raw, length, (j - i) << 1);
+                for (int k = i; k < j; k++) {
+                    int bits = Float.floatToRawIntBits(values[k]);
+                    int delta = bits - prev;
+                    prev = bits;
+                    length = putVarint(raw, length, (delta << 1) ^ (delta >> 31));
+                }
+            }
+            i = j;
+        }
+        return length;
+    }
+
+    private static void decodeFloats(byte[] raw, int rawLength,
+                                     float[] values, int start, int end)
+        throws DataFormatException
+    {
+        int[] pos = { 0 };
+        int prev = 0;
+        int i = start;
+        while (i < end) {
+            int token = getVarint(raw, rawLength, pos);
+            int run = token >>> 1;
+            if (run > end - i) {
+                throw new DataFormatException("Run of " + run + " past the end of the cache block");
+            }
+            if ((token & 1) != 0) {
+                Arrays.fill(values, i, i + run, Float.NaN);
+            } else {
+                for (int k = i; k < i + run; k++) {
+                    int zz = getVarint(raw, rawLength, pos);
+                    prev += (zz >>> 1) ^ -(zz & 1);
+                    values[k] = Float.intBitsToFloat(prev);
+                }
+            }
+            i += run;
+        }
+    }
+
+    private static byte[] deflate(byte[] raw, int length) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(raw, 0, length);
+            deflater.finish();
+            byte[] out = new byte[length + (length >> 3) + 64];
+            int n = 0;
+            while (!deflater.finished()) {
+                if (n == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                n += deflater.deflate(out, n, out.length - n);
+            }
+            return Arrays.copyOf(out, n);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static int putVarint(byte[] buf, int pos, int value) {
+        while ((value & ~0x7f) != 0) {
+            buf[pos++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte)value;
+        return pos;
+    }
+
+    private static int getVarint(byte[] buf, int length, int[] pos)
+        throws DataFormatException
+    {
+        int p = pos[0];
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (p >= length || shift > 28) {
+                throw new DataFormatException("Truncated cache block");
+            }
+            b = buf[p++];
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        pos[0] = p;
+        return value;
+    }
+}
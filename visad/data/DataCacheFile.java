@@ -0,0 +1,601 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package visad.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.zip.DataFormatException;
+
+/**
+ * Reads and writes the spill files used by {@link DataCacheManager}.
+ *
+ * <p>A spill file is a 16 byte header (magic number, format version, the
+ * {@code DataCacheManager} type code and the codec) followed by the array
+ * itself. Every array level is written as an {@code int} length (-1 for a
+ * {@code null} row) followed by either its rows or, for the innermost
+ * level, the values. Everything is little-endian.</p>
+ *
+ * <p>With {@link #CODEC_RAW} the values are the raw primitives. With
+ * {@link #CODEC_COMPRESSED} (only used for {@code float}, {@code short} and
+ * {@code byte} data) the values are the compressed lengths of each
+ * {@link DataCacheCodec} block followed by the blocks themselves.</p>
+ *
+ * <p>Reading goes through a {@link java.nio.MappedByteBuffer}, so
+ * reloading an evicted entry is a bulk copy out of the page cache rather
+ * than a Java serialization round-trip.</p>
+ *
+ * <p>The same (uncompressed) layout is used for entries that
+ * {@code DataCacheManager} keeps in direct buffers, see
+ * {@link #write(ByteBuffer, int, Object)}. Such a buffer can be copied to a
+ * file as is.</p>
+ */
+final class DataCacheFile {
+
+    /** {@code "VCDF"} when viewed as little-endian bytes. */
+    private static final int MAGIC = 0x46444356;
+
+    /** Current format version. */
+    private static final int VERSION = 2;
+
+    /** Values are stored as raw primitives. */
+    static final int CODEC_RAW = 0;
+
+    /** Values are stored as {@link DataCacheCodec} blocks. */
+    static final int CODEC_COMPRESSED = 1;
+
+    /** Size of the staging buffer used when writing. */
+    private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+    /** Largest region we will map at one time. */
+    private static final long MAX_MAP_SIZE = Integer.MAX_VALUE & ~7L;
+
+    private DataCacheFile() {
+    }
+
+    /**
+     * Write {@code data} to {@code file} without compression, replacing any
+     * existing contents.
+     *
+     * @param file Destination file.
+     * @param type One of the {@code DataCacheManager.TYPE_*} codes.
+     * @param data Array to write. Must match {@code type}.
+     *
+     * @return Number of bytes written.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    static long write(File file, int type, Object data) throws IOException {
+        return write(file, type, data, false);
+    }
+
+    /**
+     * Write {@code data} to {@code file}, replacing any existing contents.
+     *
+     * @param file Destination file.
+     * @param type One of the {@code DataCacheManager.TYPE_*} codes.
+     * @param data Array to write. Must match {@code type}.
+     * @param compress Whether to compress the values. Ignored for types
+     * that {@link DataCacheCodec} does not support.
+     *
+     * @return Number of bytes written.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    static long write(File file, int type, Object data, boolean compress)
+        throws IOException
+    {
+        int codec = (compress && DataCacheCodec.supports(getElementClass(type)))
+                  ? CODEC_COMPRESSED
+                  : CODEC_RAW;
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            Writer writer = new Writer(channel, codec);
+            writer.putInt(MAGIC);
+            writer.putInt(VERSION);
+            writer.putInt(type);
+            writer.putInt(codec);
+            writer.putArray(data, getRank(type), getElementSize(type));
+            writer.flush();
+            return channel.position();
+        }
+    }
+
+    /**
+     * Write {@code data}, uncompressed, into {@code dst} starting at its
+     * current position.
+     *
+     * @param dst Destination. Needs {@link #rawSize(int, Object)} bytes
+     * remaining.
+     * @param type One of the {@code DataCacheManager.TYPE_*} codes.
+     * @param data Array to write. Must match {@code type}.
+     *
+     * @throws IOException if {@code dst} is too small.
+     */
+    static void write(ByteBuffer dst, int type, Object data)
+        throws IOException
+    {
+        Writer writer = new Writer(dst);
+        writer.putInt(MAGIC);
+        writer.putInt(VERSION);
+        writer.putInt(type);
+        writer.putInt(CODEC_RAW);
+        writer.putArray(data, getRank(type), getElementSize(type));
+    }
+
+    /**
+     * Copy the remaining contents of a buffer filled by
+     * {@link #write(ByteBuffer, int, Object)} to a file.
+     *
+     * @param file Destination file.
+     * @param contents Buffer to copy. Its position is not changed.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    static void write(File file, ByteBuffer contents) throws IOException {
+        ByteBuffer src = contents.duplicate();
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+        {
+            while (src.hasRemaining()) {
+                channel.write(src);
+            }
+        }
+    }
+
+    /**
+     * Number of bytes {@link #write(ByteBuffer, int, Object)} needs.
+     *
+     * @param type One of the {@code DataCacheManager.TYPE_*} codes.
+     * @param data Array to measure. Must match {@code type}.
+     *
+     * @return Size in bytes, header included.
+     */
+    static long rawSize(int type, Object data) {
+        return 16 + rawSize(data, getRank(type), getElementSize(type));
+    }
+
+    private static long rawSize(Object array, int rank, int elementSize) {
+        if (array == null) {
+            return 4;
+        }
+        if (rank == 1) {
+            return 4 + (long)elementSize * Array.getLength(array);
+        }
+        long size = 4;
+        for (Object row : (Object[])array) {
+            size += rawSize(row, rank - 1, elementSize);
+        }
+        return size;
+    }
+
+    /**
+     * Read an array previously written by
+     * {@link #write(File, int, Object, boolean)} or
+     * {@link #write(File, ByteBuffer)}.
+     *
+     * @param file Spill file to read.
+     *
+     * @return The array, typed according to the header's type code.
+     *
+     * @throws IOException if the file could not be read or is not a spill
+     * file.
+     */
+    static Object read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ))
+        {
+            return read(new Reader(channel), file);
+        }
+    }
+
+    /**
+     * Read an array previously written by
+     * {@link #write(ByteBuffer, int, Object)}.
+     *
+     * @param src Buffer to read from. Its position is not changed.
+     *
+     * @return The array, typed according to the header's type code.
+     *
+     * @throws IOException if the buffer does not hold a cache entry.
+     */
+    static Object read(ByteBuffer src) throws IOException {
+        return read(new Reader(src), "buffer");
+    }
+
+    private static Object read(Reader reader, Object source)
+        throws IOException
+    {
+        if (reader.getInt() != MAGIC) {
+            throw new IOException("Not a cache file: " + source);
+        }
+        int version = reader.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported cache file version "
+                + version + ": " + source);
+        }
+        int type = reader.getInt();
+        reader.codec = reader.getInt();
+        if (reader.codec != CODEC_RAW && reader.codec != CODEC_COMPRESSED) {
+            throw new IOException("Unknown cache file codec "
+                + reader.codec + ": " + source);
+        }
+        return reader.getArray(getRank(type), getElementSize(type),
+            getElementClass(type));
+    }
+
+    /**
+     * Number of array dimensions for a type code.
+     *
+     * @param type {@code DataCacheManager} type code.
+     *
+     * @return 1, 2 or 3.
+     */
+    static int getRank(int type) {
+        switch (type) {
+            case DataCacheManager.TYPE_DOUBLE1D:
+            case DataCacheManager.TYPE_FLOAT1D:
+            case DataCacheManager.TYPE_INT1D:
+            case DataCacheManager.TYPE_SHORT1D:
+            case DataCacheManager.TYPE_BYTE1D:
+                return 1;
+            case DataCacheManager.TYPE_DOUBLE2D:
+            case DataCacheManager.TYPE_FLOAT2D:
+            case DataCacheManager.TYPE_INT2D:
+            case DataCacheManager.TYPE_SHORT2D:
+            case DataCacheManager.TYPE_BYTE2D:
+                return 2;
+            case DataCacheManager.TYPE_DOUBLE3D:
+            case DataCacheManager.TYPE_FLOAT3D:
+            case DataCacheManager.TYPE_INT3D:
+            case DataCacheManager.TYPE_SHORT3D:
+            case DataCacheManager.TYPE_BYTE3D:
+                return 3;
+            default:
+                throw new IllegalArgumentException("Unknown type:" + type);
+        }
+    }
+
+    /**
+     * Size in bytes of a single element for a type code.
+     *
+     * @param type {@code DataCacheManager} type code.
+     *
+     * @return 8, 4, 2 or 1.
+     */
+    static int getElementSize(int type) {
+        Class<?> c = getElementClass(type);
+        if (c == double.class) return 8;
+        if (c == float.class || c == int.class) return 4;
+        if (c == short.class) return 2;
+        return 1;
+    }
+
+    /**
+     * Primitive element class for a type code.
+     *
+     * @param type {@code DataCacheManager} type code.
+     *
+     * @return One of the primitive {@code TYPE} classes.
+     */
+    static Class<?> getElementClass(int type) {
+        switch (type) {
+            case DataCacheManager.TYPE_DOUBLE1D:
+            case DataCacheManager.TYPE_DOUBLE2D:
+            case DataCacheManager.TYPE_DOUBLE3D:
+                return double.class;
+            case DataCacheManager.TYPE_FLOAT1D:
+            case DataCacheManager.TYPE_FLOAT2D:
+            case DataCacheManager.TYPE_FLOAT3D:
+                return float.class;
+            case DataCacheManager.TYPE_INT1D:
+            case DataCacheManager.TYPE_INT2D:
+            case DataCacheManager.TYPE_INT3D:
+                return int.class;
+            case DataCacheManager.TYPE_SHORT1D:
+            case DataCacheManager.TYPE_SHORT2D:
+            case DataCacheManager.TYPE_SHORT3D:
+                return short.class;
+            case DataCacheManager.TYPE_BYTE1D:
+            case DataCacheManager.TYPE_BYTE2D:
+            case DataCacheManager.TYPE_BYTE3D:
+                return byte.class;
+            default:
+                throw new IllegalArgumentException("Unknown type:" + type);
+        }
+    }
+
+    /**
+     * Buffers little-endian output to a {@link FileChannel}, or writes it
+     * straight into a caller's buffer.
+     */
+    private static class Writer {
+
+        private final FileChannel channel;
+
+        private final int codec;
+
+        private final ByteBuffer buf;
+
+        Writer(FileChannel channel, int codec) {
+            this.channel = channel;
+            this.codec = codec;
+            this.buf = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE)
+                                 .order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        Writer(ByteBuffer dst) {
+            this.channel = null;
+            this.codec = CODEC_RAW;
+            this.buf = dst.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buf.putInt(value);
+        }
+
+        void putArray(Object array, int rank, int elementSize)
+            throws IOException
+        {
+            if (array == null) {
+                putInt(-1);
+                return;
+            }
+            int length = Array.getLength(array);
+            putInt(length);
+            if (rank > 1) {
+                Object[] rows = (Object[])array;
+                for (Object row : rows) {
+                    putArray(row, rank - 1, elementSize);
+                }
+                return;
+            }
+            if (codec == CODEC_COMPRESSED) {
+                putBlocks(array, length);
+                return;
+            }
+            int offset = 0;
+            while (offset < length) {
+                ensure(elementSize);
+                int n = Math.min(length - offset, buf.remaining() / elementSize);
+                if (array instanceof float[]) {
+                    buf.asFloatBuffer().put((float[])array, offset, n);
+                } else if (array instanceof double[]) {
+                    buf.asDoubleBuffer().put((double[])array, offset, n);
+                } else if (array instanceof int[]) {
+                    buf.asIntBuffer().put((int[])array, offset, n);
+                } else if (array instanceof short[]) {
+                    buf.asShortBuffer().put((short[])array, offset, n);
+                } else {
+                    buf.put((byte[])array, offset, n);
+                    offset += n;
+                    continue;
+                }
+                buf.position(buf.position() + n * elementSize);
+                offset += n;
+            }
+        }
+
+        /** Compress the blocks of a leaf array in parallel and write them. */
+        private void putBlocks(final Object array, int length)
+            throws IOException
+        {
+            final byte[][] blocks =
+                new byte[DataCacheCodec.blockCount(length)][];
+            IntStream.range(0, blocks.length).parallel().forEach(
+                b -> blocks[b] = DataCacheCodec.encode(array, b));
+            for (byte[] block : blocks) {
+                putInt(block.length);
+            }
+            for (byte[] block : blocks) {
+                int offset = 0;
+                while (offset < block.length) {
+                    ensure(1);
+                    int n = Math.min(block.length - offset, buf.remaining());
+                    buf.put(block, offset, n);
+                    offset += n;
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            if (channel == null) {
+                return;
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            buf.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() < bytes) {
+                if (channel == null) {
+                    throw new IOException("Cache buffer too small");
+                }
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Reads little-endian input from a memory-mapped {@link FileChannel}
+     * or from an existing buffer. Files larger than {@link #MAX_MAP_SIZE}
+     * are mapped a window at a time.
+     */
+    private static class Reader {
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        /** File offset of the start of {@link #buf}. */
+        private long base;
+
+        /** Codec from the header. */
+        private int codec = CODEC_RAW;
+
+        private ByteBuffer buf;
+
+        Reader(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            map(0L);
+        }
+
+        Reader(ByteBuffer src) {
+            this.channel = null;
+            this.size = src.remaining();
+            this.buf = src.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buf.getInt();
+        }
+
+        Object getArray(int rank, int elementSize, Class<?> elementClass)
+            throws IOException
+        {
+            int length = getInt();
+            if (length < 0) {
+                return null;
+            }
+            if (rank > 1) {
+                Object[] rows =
+                    (Object[])Array.newInstance(rowClass(rank, elementClass),
+                                                length);
+                for (int i = 0; i < length; i++) {
+                    rows[i] = getArray(rank - 1, elementSize, elementClass);
+                }
+                return rows;
+            }
+            Object array = Array.newInstance(elementClass, length);
+            if (codec == CODEC_COMPRESSED) {
+                getBlocks(array, length);
+                return array;
+            }
+            int offset = 0;
+            while (offset < length) {
+                ensure(elementSize);
+                int n = Math.min(length - offset, buf.remaining() / elementSize);
+                if (elementClass == float.class) {
+                    buf.asFloatBuffer().get((float[])array, offset, n);
+                } else if (elementClass == double.class) {
+                    buf.asDoubleBuffer().get((double[])array, offset, n);
+                } else if (elementClass == int.class) {
+                    buf.asIntBuffer().get((int[])array, offset, n);
+                } else if (elementClass == short.class) {
+                    buf.asShortBuffer().get((short[])array, offset, n);
+                } else {
+                    buf.get((byte[])array, offset, n);
+                    offset += n;
+                    continue;
+                }
+                buf.position(buf.position() + n * elementSize);
+                offset += n;
+            }
+            return array;
+        }
+
+        /** Read the blocks of a leaf array and decompress them in parallel. */
+        private void getBlocks(final Object array, int length)
+            throws IOException
+        {
+            int count = DataCacheCodec.blockCount(length);
+            final int[] offsets = new int[count + 1];
+            for (int b = 0; b < count; b++) {
+                long next = (long)offsets[b] + getInt();
+                if (next > Integer.MAX_VALUE) {
+                    throw new IOException("Compressed row too large");
+                }
+                offsets[b + 1] = (int)next;
+            }
+            final byte[] bytes = new byte[offsets[count]];
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int n = Math.min(bytes.length - offset, buf.remaining());
+                buf.get(bytes, offset, n);
+                offset += n;
+            }
+            try {
+                IntStream.range(0, count).parallel().forEach(b -> {
+                    try {
+                        DataCacheCodec.decode(bytes, offsets[b],
+                            offsets[b + 1] - offsets[b], array, b);
+                    } catch (DataFormatException exc) {
+                        throw new IllegalStateException(exc);
+                    }
+                });
+            } catch (IllegalStateException exc) {
+                throw new IOException("Corrupt cache file block", exc);
+            }
+        }
+
+        /** Class of the rows of an array with the given rank. */
+        private static Class<?> rowClass(int rank, Class<?> elementClass) {
+            Class<?> c = elementClass;
+            for (int i = 1; i < rank; i++) {
+                c = Array.newInstance(c, 0).getClass();
+            }
+            return c;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buf.remaining() >= bytes) {
+                return;
+            }
+            long position = base + buf.position();
+            if (channel == null || size - position < bytes) {
+                throw new IOException("Unexpected end of cache file");
+            }
+            map(position);
+        }
+
+        private void map(long position) throws IOException {
+            base = position;
+            buf = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                              Math.min(size - position, MAX_MAP_SIZE))
+                         .order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -28,20 +28,43 @@
 
 package visad.data;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
-import java.util.Enumeration;
-import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.TreeMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -74,51 +97,186 @@ import org.slf4j.LoggerFactory;
  * </pre>
  *
  * The cachemanager will keep the data arrays in memory until the total size
- * is greater than getMaxSize(). Then it will serialize the data arrays in a
- * least recently used manner until the totalSize less than the max size.
+ * is greater than getMaxSize(). Then it will write the data arrays to disk
+ * (see {@link DataCacheFile}) until the totalSize less than the max size.
+ * Entries added with removeIfNeeded set are dropped before anything is
+ * written out. Which entry goes next is decided by the eviction policy, see
+ * {@link #setEvictionPolicy(String)}; the default is least recently used.
+ *
+ * <p>The cache is safe for concurrent use. There is no global lock: each
+ * entry guards its own state, reloading an evicted entry happens outside
+ * of any shared lock, and concurrent requests for the same evicted entry
+ * share a single disk read. Only one thread at a time walks the cache
+ * looking for entries to evict.</p>
+ *
+ * <p>Entries that have to be written to disk are handed to a background
+ * writer thread rather than written by the thread that pushed the cache
+ * over its limit. Until the write finishes the data stays in memory and is
+ * returned as usual; reading it during that window cancels the eviction.
+ * Evicting threads only write synchronously when the heap is nearly
+ * exhausted.</p>
+ *
+ * <p>Optionally there is a middle tier between the heap and the disk; see
+ * {@link #setOffHeapBudget(long)}. Entries evicted from the heap are then
+ * copied into direct buffers outside of the Java heap, and only go to disk
+ * once that tier is full. Getting an entry back from the off-heap tier is a
+ * bulk memory copy.</p>
+ *
+ * <p>There is no polling thread. The cache is checked whenever something
+ * is added to it, and it listens for the JVM's memory pool threshold
+ * notifications: once the old generation gets more than
+ * TRIM_THRESHOLD full the cache is shrunk to TRIM_FRACTION of its max
+ * size, without waiting for the next add.</p>
+ *
+ * <p>Hits, misses, bytes moved and reload latencies are counted, and the
+ * cache registers itself with the platform MBean server; see
+ * {@link DataCacheManagerMXBean}. Data sources can name themselves with
+ * {@link #setOwner(String)} so that residency can be broken down by who
+ * added the data.</p>
  */
-public class DataCacheManager  implements Runnable {
+public class DataCacheManager implements DataCacheManagerMXBean {
   
   private static final Logger logger =
       LoggerFactory.getLogger(DataCacheManager.class);
+
+  /** Evict the least recently used entry first */
+  public static final String EVICTION_LRU = EvictionPolicy.LRU;
+
+  /** Evict the least frequently used entry first */
+  public static final String EVICTION_LFU = EvictionPolicy.LFU;
+
+  /** Evict large, rarely used entries first, using a frequency sketch */
+  public static final String EVICTION_TINYLFU = EvictionPolicy.TINY_LFU;
   
-  private double memoryPercentage = 0.25;
+  private volatile double memoryPercentage = 0.25;
 
   /** the singleton */
-  private static DataCacheManager cacheManager;
+  private static volatile DataCacheManager cacheManager;
 
   /** Where to store the cached data */
   private File cacheDir;
 
   /** for unique ids */
-  private int idCnt = 0;
+  private final AtomicInteger idCnt = new AtomicInteger();
 
   /** for unique ids */
   private long baseTime;
 
   /** The cache */
-  private Hashtable<Object, CacheInfo> cache = new Hashtable<Object,
-                                                 CacheInfo>();
+  private final ConcurrentHashMap<Object, CacheInfo> cache =
+      new ConcurrentHashMap<Object, CacheInfo>();
+
+  /** Held by the thread that is currently evicting entries */
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  /** Most entries that can be waiting on the spill writer */
+  private static final int SPILL_QUEUE_SIZE = 32;
 
-  /** a mutex */
-  private final Object MUTEX = new Object();
+  /** Fraction of the max heap below which spills are done synchronously */
+  private static final double CRITICAL_HEAP_FRACTION = 0.10;
 
   /** Total number of bytes in memory */
-  private int totalSize = 0;
+  private final AtomicLong totalSize = new AtomicLong();
+
+  /** Bytes still in memory because they are waiting to be written to disk */
+  private final AtomicLong pendingSpillSize = new AtomicLong();
+
+  /** Writes evicted entries to disk in the background */
+  private final ThreadPoolExecutor spillWriter =
+      new ThreadPoolExecutor(1, 1, 30L, TimeUnit.SECONDS,
+          new ArrayBlockingQueue<Runnable>(SPILL_QUEUE_SIZE), r -> {
+            Thread t = new Thread(r, "DataCacheManager spill writer");
+            t.setDaemon(true);
+            return t;
+          });
+
+  /** Fraction of the old generation that triggers a trim of the cache */
+  private static final double TRIM_THRESHOLD = 0.75;
+
+  /** Fraction of the max size the cache is trimmed to on low memory */
+  private static final double TRIM_FRACTION = 0.5;
+
+  /** Set while a trim is waiting to run */
+  private final AtomicBoolean trimPending = new AtomicBoolean();
+
+  /**
+   * Trims the cache when memory runs low. Memory notifications arrive on a
+   * JVM thread that must not be held up, so the work is done here. The
+   * thread goes away when idle.
+   */
+  private final ThreadPoolExecutor trimmer =
+      new ThreadPoolExecutor(0, 1, 30L, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(), r -> {
+            Thread t = new Thread(r, "DataCacheManager trimmer");
+            t.setDaemon(true);
+            return t;
+          });
+
+  /** Name the cache is registered under with the platform MBean server */
+  public static final String OBJECT_NAME = "visad.data:type=DataCacheManager";
+
+  /** Owner given to entries added on this thread */
+  private final ThreadLocal<String> owner = new ThreadLocal<String>();
+
+  /** Requests answered from the heap */
+  private final LongAdder hitCount = new LongAdder();
+
+  /** Requests answered from the off-heap tier */
+  private final LongAdder offHeapReloadCount = new LongAdder();
+
+  /** Requests answered from disk */
+  private final LongAdder diskReloadCount = new LongAdder();
+
+  /** Bytes written to disk */
+  private final LongAdder bytesSpilled = new LongAdder();
+
+  /** Bytes put back on the heap */
+  private final LongAdder bytesReloaded = new LongAdder();
+
+  /** Time taken writing to disk */
+  private final LatencyHistogram spillLatency = new LatencyHistogram();
 
-  private boolean running = false;
+  /** Time taken reading from disk */
+  private final LatencyHistogram diskReloadLatency = new LatencyHistogram();
+
+  /** Time taken copying back from the off-heap tier */
+  private final LatencyHistogram offHeapReloadLatency = new LatencyHistogram();
+
+  /** Most bytes kept in direct buffers. 0 turns the off-heap tier off. */
+  private volatile long offHeapBudget = 0;
+
+  /** Bytes currently held in direct buffers */
+  private final AtomicLong offHeapSize = new AtomicLong();
+
+  /** Orders the entries in the off-heap tier */
+  private final EvictionPolicy<CacheInfo> offHeapPolicy =
+      EvictionPolicy.create(EVICTION_LRU);
+
+  /** Whether float, short and byte data is compressed when written out */
+  private volatile boolean compressSpills = false;
+
+  /** Name of the current eviction policy */
+  private volatile String evictionPolicy = EVICTION_LRU;
+
+  /** Orders the in-memory entries that are dropped when needed */
+  private volatile EvictionPolicy<CacheInfo> removablePolicy =
+      EvictionPolicy.create(EVICTION_LRU);
+
+  /** Orders the in-memory entries that are written to disk when needed */
+  private volatile EvictionPolicy<CacheInfo> spillablePolicy =
+      EvictionPolicy.create(EVICTION_LRU);
 
   /**
    * ctor
    */
   private DataCacheManager() {
     baseTime = System.currentTimeMillis();
+    listenForLowMemory();
     try {
-      //Start  the cache monitor in a thread
-      Thread t = new Thread(this);
-      t.start();
-    } catch(Exception exc) {
-      throw new RuntimeException(exc);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+          new ObjectName(OBJECT_NAME));
+    } catch (Exception exc) {
+      logger.warn("Could not register " + OBJECT_NAME, exc);
     }
   }
 
@@ -128,24 +286,104 @@ public class DataCacheManager  implements Runnable {
    * @return the cache manager
    */
   public static DataCacheManager getCacheManager() {
-    if (cacheManager == null) {
-      cacheManager = new DataCacheManager();
+    DataCacheManager result = cacheManager;
+    if (result == null) {
+      synchronized (DataCacheManager.class) {
+        result = cacheManager;
+        if (result == null) {
+          cacheManager = result = new DataCacheManager();
+        }
+      }
     }
-    return cacheManager;
+    return result;
   }
 
-  public void run() {
-    if(running) return;
-    running= true;
+  /**
+   * Ask the JVM to tell us when the old generation gets more than
+   * TRIM_THRESHOLD full, both as it fills up and after a collection, and
+   * trim the cache when it does. The thresholds are shared by everybody
+   * in the JVM, so an existing lower threshold is left alone.
+   */
+  private void listenForLowMemory() {
     try {
-      while (true) {
-        Thread.currentThread().sleep(5000);
-        checkCache();
+      armMemoryThresholds(TRIM_THRESHOLD);
+      NotificationEmitter emitter =
+          (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+      emitter.addNotificationListener(new NotificationListener() {
+        public void handleNotification(Notification n, Object handback) {
+          memoryNotification(n);
+        }
+      }, null, null);
+    } catch (Exception exc) {
+      logger.warn("Cannot listen for low memory, the cache will only be trimmed as data is added", exc);
+    }
+  }
+
+  /**
+   * Set the usage and collection usage thresholds of the old generation
+   * pools to {@code fraction} of their maximum. The thresholds are shared by
+   * the whole JVM, so a lower threshold that is already set is left alone,
+   * and listeners have to check the reported usage against their own limit.
+   *
+   * @param fraction Fraction of the pool maximum, between 0 and 1.
+   */
+  public static void armMemoryThresholds(double fraction) {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      // only the tenured pools support usage thresholds
+      if (pool.getType() != MemoryType.HEAP
+          || !pool.isUsageThresholdSupported()) {
+        continue;
+      }
+      long max = pool.getUsage().getMax();
+      if (max <= 0) {
+        continue;
+      }
+      long threshold = (long)(fraction * max);
+      long current = pool.getUsageThreshold();
+      if (current == 0 || current > threshold) {
+        pool.setUsageThreshold(threshold);
+      }
+      if (pool.isCollectionUsageThresholdSupported()) {
+        current = pool.getCollectionUsageThreshold();
+        if (current == 0 || current > threshold) {
+          pool.setCollectionUsageThreshold(threshold);
+        }
       }
-    } catch(Exception exc) {
-      logger.error("Error in DataCacheManager", exc);
     }
-    running =false;
+  }
+
+  /**
+   * Called on a JVM thread when a memory pool crosses its threshold.
+   *
+   * @param n  the notification
+   */
+  private void memoryNotification(Notification n) {
+    String type = n.getType();
+    if (!MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED.equals(type)
+        && !MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED.equals(type)) {
+      return;
+    }
+    // somebody else may have set a lower threshold than ours
+    MemoryUsage usage =
+        MemoryNotificationInfo.from((CompositeData) n.getUserData()).getUsage();
+    if (usage.getMax() > 0 && usage.getUsed() < TRIM_THRESHOLD * usage.getMax()) {
+      return;
+    }
+    if (totalSize.get() == 0 || !trimPending.compareAndSet(false, true)) {
+      return;
+    }
+    trimmer.execute(() -> {
+      trimPending.set(false);
+      trimCache();
+    });
+  }
+
+  /**
+   * Shrink the cache to TRIM_FRACTION of its max size. Called when memory
+   * is running low.
+   */
+  public void trimCache() {
+    checkCache((long)(TRIM_FRACTION * getMaxSize()));
   }
 
   /**
@@ -169,13 +407,160 @@ public class DataCacheManager  implements Runnable {
     return cacheDir;
   }
 
+  /**
+   * Set the policy used to pick which entries leave memory first. Entries
+   * that are already in memory are handed to the new policy.
+   *
+   * @param name One of {@link #EVICTION_LRU}, {@link #EVICTION_LFU} or
+   * {@link #EVICTION_TINYLFU}, in any case. Anything else is logged and
+   * means {@link #EVICTION_LRU}.
+   */
+  public void setEvictionPolicy(String name) {
+    String canonical = EvictionPolicy.canonicalName(name);
+    if (canonical == null) {
+      if (name != null) {
+        logger.warn("Unknown eviction policy " + name + ", using " + EVICTION_LRU);
+      }
+      canonical = EVICTION_LRU;
+    }
+    evictionLock.lock();
+    try {
+      if (canonical.equals(evictionPolicy)) {
+        return;
+      }
+      EvictionPolicy<CacheInfo> newRemovable = EvictionPolicy.create(canonical);
+      EvictionPolicy<CacheInfo> newSpillable = EvictionPolicy.create(canonical);
+      EvictionPolicy<CacheInfo> oldRemovable = removablePolicy;
+      EvictionPolicy<CacheInfo> oldSpillable = spillablePolicy;
+      evictionPolicy = canonical;
+      removablePolicy = newRemovable;
+      spillablePolicy = newSpillable;
+      // anything added to the old policies from here on is moved over by
+      // track(), so draining them once is enough
+      movePolicyEntries(oldRemovable);
+      movePolicyEntries(oldSpillable);
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Get the name of the current eviction policy
+   *
+   * @return the policy name
+   */
+  public String getEvictionPolicy() {
+    return evictionPolicy;
+  }
+
+  /**
+   * Set whether float, short and byte arrays are compressed when they are
+   * written to disk. Compressed files are much smaller for typical imagery
+   * (especially with lots of missing values) at the cost of some CPU time
+   * when writing and reloading. Files already written are not changed.
+   *
+   * @param compress true to compress
+   */
+  public void setSpillCompression(boolean compress) {
+    compressSpills = compress;
+  }
+
+  /**
+   * Are float, short and byte arrays compressed when written to disk?
+   *
+   * @return true if they are
+   */
+  public boolean getSpillCompression() {
+    return compressSpills;
+  }
+
+  /**
+   * Set how many bytes of evicted data may be kept in direct buffers
+   * before it is written to disk. Direct buffers do not count against the
+   * Java heap but do count against -XX:MaxDirectMemorySize (which defaults
+   * to the max heap size). Lowering the budget moves the excess to disk.
+   *
+   * @param bytes the budget, or 0 to turn the off-heap tier off
+   */
+  public void setOffHeapBudget(long bytes) {
+    offHeapBudget = Math.max(0, bytes);
+    long excess = offHeapSize.get() - offHeapBudget;
+    if (excess > 0) {
+      demoteOffHeap(excess);
+    }
+  }
+
+  /**
+   * Get the off-heap tier budget
+   *
+   * @return the budget in bytes. 0 means there is no off-heap tier.
+   */
+  public long getOffHeapBudget() {
+    return offHeapBudget;
+  }
+
+  private EvictionPolicy<CacheInfo> policyFor(CacheInfo info) {
+    return info.removeIfNeeded ? removablePolicy : spillablePolicy;
+  }
+
+  /**
+   * Hand an in-memory entry to the current policy. If the policy was
+   * replaced while adding, the entry is moved to the replacement, so an
+   * entry cannot end up tracked only by a discarded policy. Must be called
+   * while holding the lock on info.
+   */
+  private void track(CacheInfo info, int size) {
+    EvictionPolicy<CacheInfo> policy = policyFor(info);
+    policy.add(info, size);
+    EvictionPolicy<CacheInfo> current = policyFor(info);
+    if (current != policy) {
+      policy.remove(info);
+      current.add(info, size);
+    }
+  }
+
+  /**
+   * Move every entry of a replaced policy to the current one, in the order
+   * the old policy would have evicted them.
+   */
+  private void movePolicyEntries(EvictionPolicy<CacheInfo> old) {
+    CacheInfo info;
+    while ((info = old.victim()) != null) {
+      synchronized (info) {
+        old.remove(info);
+        if (info.data != null && !info.removed) {
+          policyFor(info).add(info, info.getSize());
+        }
+      }
+    }
+  }
+
   /**
    * Get a unique id
    *
    * @return unique id
    */
   public Object getId() {
-    return "data_" + baseTime + "_" + (idCnt++);
+    return "data_" + baseTime + "_" + idCnt.getAndIncrement();
+  }
+
+  /**
+   * Set the owner recorded for entries added by the current thread, e.g.
+   * the name of the data source that is loading data. Used to break down
+   * residency by owner.
+   *
+   * @param name the owner, or null for none
+   *
+   * @return the previous owner, so that it can be put back
+   */
+  public String setOwner(String name) {
+    String previous = owner.get();
+    if (name == null) {
+      owner.remove();
+    } else {
+      owner.set(name);
+    }
+    return previous;
   }
 
   /**
@@ -187,16 +572,19 @@ public class DataCacheManager  implements Runnable {
    * @return the unique id
    */
   private Object addToCache(String what, Object data, int type, boolean removeIfNeeded) {
-    synchronized (MUTEX) {
-      CacheInfo info = new CacheInfo(this, getId(), data, type, removeIfNeeded);
-      if (what != null) {
-        info.what = what;
-      }
+    CacheInfo info = new CacheInfo(this, getId(), data, type, removeIfNeeded);
+    if (what != null) {
+      info.what = what;
+      info.label = what;
+    }
+    info.owner = owner.get();
+    synchronized (info) {
       cache.put(info.getId(), info);
-      totalSize += info.getSize();
-      checkCache();
-      return info.getId();
+      totalSize.addAndGet(info.getSize());
+      track(info, info.getSize());
     }
+    checkCache();
+    return info.getId();
   }
 
   /**
@@ -206,76 +594,198 @@ public class DataCacheManager  implements Runnable {
    * @param data  the new data
    */
   public void updateData(Object cacheId, Object data) {
-    synchronized (MUTEX) {
-      //      if(cacheId == null)
-      //          return addToCache(data, findType(data));
-      CacheInfo info = cache.get(cacheId);
+    //      if(cacheId == null)
+    //          return addToCache(data, findType(data));
+    CacheInfo info = cache.get(cacheId);
 //      if(info==null) {
 //        return addToCache(data);
 //      }
 
+    synchronized (info) {
+      cancelSpill(info);
+      releaseOffHeap(info);
       int oldSize = info.data != null
                   ? info.getSize()
                   : 0;
       info.setData(data);
       int newSize = info.getSize();
-      totalSize -= oldSize;
-      totalSize += newSize;
-      checkCache();
+      totalSize.addAndGet(newSize - oldSize);
+      track(info, newSize);
     }
+    checkCache();
   }
 
-  public boolean inMemory(Object cacheId) {
-    synchronized (MUTEX) {
-      CacheInfo info =  cache.get(cacheId);
-      if (info == null) {
+  /**
+   * Are the entry's values on the heap right now? Unlike
+   * {@link #inMemory(Object)} this does not count as a use of the entry.
+   *
+   * @param cacheId  cache id
+   *
+   * @return false if the entry is unknown, spilled or off the heap
+   */
+  public boolean isResident(Object cacheId) {
+    CacheInfo info = cache.get(cacheId);
+    return (info != null) && (info.data != null);
+  }
+
+  /**
+   * Write an entry's values to a file in the spill format, from wherever
+   * they are right now: the heap, the off-heap tier or the entry's own
+   * spill file. A spilled entry is copied file to file, so this does not
+   * bring it back onto the heap, and it does not count as a use of the
+   * entry. The entry is locked while it is written, so the file holds one
+   * version of the values even if they are being replaced.
+   *
+   * @param cacheId  cache id
+   * @param file  file to write
+   *
+   * @return false if the entry is unknown or has no values
+   *
+   * @throws IOException if the file could not be written
+   */
+  public boolean writeEntry(Object cacheId, File file) throws IOException {
+    CacheInfo info = cache.get(cacheId);
+    if (info == null) {
+      return false;
+    }
+    synchronized (info) {
+      if (info.data != null) {
+        DataCacheFile.write(file, info.type, info.data, compressSpills);
+      } else if (info.offHeap != null) {
+        DataCacheFile.write(file, info.offHeap);
+      } else if ((info.cacheFile != null) && info.cacheFile.exists()) {
+        Files.copy(info.cacheFile.toPath(), file.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+      } else {
         return false;
       }
-      info.dataAccessed();
-      return (info.data!=null);
     }
+    return true;
+  }
+
+  public boolean inMemory(Object cacheId) {
+    CacheInfo info =  cache.get(cacheId);
+    if (info == null) {
+      return false;
+    }
+    info.dataAccessed();
+    policyFor(info).access(info);
+    return (info.data!=null);
   }
 
   /**
-   *
+   * Get the data for the given id, reading it back from disk if it has
+   * been evicted. Only the first thread to ask for an evicted entry reads
+   * it; any other thread asking for the same entry waits for that read.
    *
    * @param cacheId  the cache id
    *
-   * @return
+   * @return the data or null if there is no such entry
    */
   private Object getData(Object cacheId) {
-    CacheInfo info = null;
-    Object data = null;
-    synchronized (MUTEX) {
-      info = cache.get(cacheId);
-      if (info == null) {
-        return null;
+    CacheInfo info = cache.get(cacheId);
+    if (info == null) {
+      return null;
+    }
+    info.dataAccessed();
+    Object data = info.data;
+    if (data != null) {
+      if (info.spilling) {
+        // still wanted, keep it in memory
+        synchronized (info) {
+          cancelSpill(info);
+        }
       }
+      policyFor(info).access(info);
+      hitCount.increment();
+      return data;
+    }
+
+    CompletableFuture<Object> loading;
+    File file = null;
+    boolean loader = false;
+    synchronized (info) {
       data = info.data;
-      info.dataAccessed();
       if (data != null) {
         return data;
       }
-      try {
-        long t1 = System.currentTimeMillis();
-        FileInputStream fis = new FileInputStream(info.cacheFile);
-        BufferedInputStream bis = new BufferedInputStream(fis,100000);
-        ObjectInputStream ois = new ObjectInputStream(bis);
-        info.setDataFromCache(data = ois.readObject());
-        long t2 = System.currentTimeMillis();
-        System.err.println("Read " + info.getSize() +" bytes from file in " + (t2-t1) +" ms");
-        totalSize += info.getSize();
-        ois.close();
-        bis.close();
-        fis.close();
-        checkCache();
+      if (info.offHeap != null) {
+        long start = System.nanoTime();
+        try {
+          data = DataCacheFile.read(info.offHeap);
+        } catch (Exception exc) {
+          throw new RuntimeException(exc);
+        }
+        offHeapReloadLatency.record(System.nanoTime() - start);
+        offHeapReloadCount.increment();
+        bytesReloaded.add(info.getSize());
+        releaseOffHeap(info);
+        info.setDataFromCache(data);
+        totalSize.addAndGet(info.getSize());
+        track(info, info.getSize());
         info.cacheMissed();
+      }
+    }
+    if (data != null) {
+      checkCache();
+      return data;
+    }
+
+    synchronized (info) {
+      data = info.data;
+      if (data != null) {
         return data;
       }
-      catch (Exception exc) {
-        throw new RuntimeException(exc);
+      loading = info.loading;
+      if (loading == null) {
+        loading = info.loading = new CompletableFuture<Object>();
+        file = info.cacheFile;
+        loader = true;
+      }
+    }
+
+    if (!loader) {
+      try {
+        return loading.join();
+      } catch (CompletionException exc) {
+        throw new RuntimeException(exc.getCause());
       }
     }
+
+    try {
+      long start = System.nanoTime();
+      data = DataCacheFile.read(file);
+      diskReloadLatency.record(System.nanoTime() - start);
+      diskReloadCount.increment();
+      bytesReloaded.add(info.getSize());
+      synchronized (info) {
+        info.loading = null;
+        if (info.data != null) {
+          // updateData was called while we were reading
+          data = info.data;
+        } else if (!info.removed) {
+          info.setDataFromCache(data);
+          totalSize.addAndGet(info.getSize());
+          track(info, info.getSize());
+        }
+      }
+      info.cacheMissed();
+      loading.complete(data);
+    } catch (Exception exc) {
+      synchronized (info) {
+        info.loading = null;
+        data = info.data;
+      }
+      if (data != null) {
+        // updateData replaced the entry (and its file) while we were reading
+        loading.complete(data);
+        return data;
+      }
+      loading.completeExceptionally(exc);
+      throw new RuntimeException(exc);
+    }
+    checkCache();
+    return data;
   }
 
   public  File getCacheFile() {
@@ -288,9 +798,7 @@ public class DataCacheManager  implements Runnable {
    * @param cacheId  the cache id
    */
   public void removeFromCache(Object cacheId) {
-    synchronized (MUTEX) {
-      removeFromCache(cache.get(cacheId));
-    }
+    removeFromCache(cache.get(cacheId));
   }
 
 
@@ -298,23 +806,25 @@ public class DataCacheManager  implements Runnable {
     if (info == null) {
       return;
     }
-    synchronized (MUTEX) {
+    synchronized (info) {
+      cancelSpill(info);
+      releaseOffHeap(info);
       if (info.data != null) {
         info.data = null;
-        totalSize -= info.getSize();
+        totalSize.addAndGet(-info.getSize());
       }
+      info.removed = true;
+      policyFor(info).remove(info);
       cache.remove(info.id);
       info.remove();
     }
   }
 
   public void flushAllCachedData() {
-    synchronized (MUTEX) {
-      for (CacheInfo info : getCacheInfos()) {
-        flushCachedData(info);
-      }
-      Runtime.getRuntime().gc();
+    for (CacheInfo info : cache.values()) {
+      flushCachedData(info);
     }
+    Runtime.getRuntime().gc();
   }
 
   /**
@@ -324,10 +834,8 @@ public class DataCacheManager  implements Runnable {
    * {@link Runtime#gc()}.</p>
    */
   public void clearCache() {
-    synchronized (MUTEX) {
-      for (CacheInfo info : getCacheInfos()) {
-        removeFromCache(info);
-      }
+    for (CacheInfo info : cache.values()) {
+      removeFromCache(info);
     }
   }
 
@@ -344,41 +852,335 @@ public class DataCacheManager  implements Runnable {
         return;
       }
 
-      if (info.data == null) {
+      synchronized (info) {
+        cancelSpill(info);
+        policyFor(info).remove(info);
+        if (info.data == null || info.removed) {
+          return;
+        }
+
+        if (!info.cacheFileGood) {
+          File file = info.nextCacheFile();
+          writeCacheFile(file, info.type, info.data);
+          info.setCacheFile(file);
+        }
+        info.data = null;
+        totalSize.addAndGet(-info.getSize());
+      }
+    } catch (Exception exc) {
+      throw new RuntimeException(exc);
+    }
+  }
+
+  /**
+   * Write data to a cache file, counting the bytes and the time it took.
+   *
+   * @param file  the file
+   * @param type  the type of the data
+   * @param data  the data
+   *
+   * @throws Exception On badness
+   */
+  private void writeCacheFile(File file, int type, Object data)
+      throws Exception {
+    long start = System.nanoTime();
+    DataCacheFile.write(file, type, data, compressSpills);
+    spillLatency.record(System.nanoTime() - start);
+    bytesSpilled.add(getArraySize(type, data));
+  }
+
+  /**
+   * Take the entry out of memory, handing it to the spill writer if it
+   * has to be written first.
+   *
+   * @param info  the cacheinfo
+   *
+   * @return false if the spill writer is full and the entry is still in
+   * memory
+   */
+  private boolean startSpill(final CacheInfo info) {
+    synchronized (info) {
+      policyFor(info).remove(info);
+      if (info.data == null || info.removed || info.spilling) {
+        return true;
+      }
+      if (info.cacheFileGood) {
+        info.data = null;
+        totalSize.addAndGet(-info.getSize());
+        return true;
+      }
+      info.spilling = true;
+      totalSize.addAndGet(-info.getSize());
+      pendingSpillSize.addAndGet(info.getSize());
+    }
+    try {
+      spillWriter.execute(() -> finishSpill(info));
+      return true;
+    } catch (RejectedExecutionException exc) {
+      synchronized (info) {
+        cancelSpill(info);
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Runs on the spill writer. Write the entry to disk and, if nobody wanted
+   * it back in the meantime, drop it from memory.
+   *
+   * @param info  the cacheinfo
+   */
+  private void finishSpill(CacheInfo info) {
+    Object data;
+    File file;
+    synchronized (info) {
+      if (!info.spilling) {
+        return;
+      }
+      data = info.data;
+      file = info.nextCacheFile();
+    }
+    try {
+      writeCacheFile(file, info.type, data);
+    } catch (Exception exc) {
+      logger.error("Could not write cache file " + file, exc);
+      file.delete();
+      synchronized (info) {
+        cancelSpill(info);
+      }
+      return;
+    }
+    synchronized (info) {
+      if (info.data != data || info.removed) {
+        // replaced or removed while we were writing
+        file.delete();
         return;
       }
+      info.setCacheFile(file);
+      if (info.spilling) {
+        info.spilling = false;
+        info.data = null;
+        pendingSpillSize.addAndGet(-info.getSize());
+      }
+    }
+    // with no polling thread, whatever was left over when the queue was
+    // full is picked up here
+    if (spillWriter.getQueue().isEmpty()) {
+      checkCache();
+    }
+  }
+
+  /**
+   * If the entry is waiting on the spill writer then put it back in memory.
+   * Must be called while holding the lock on info.
+   *
+   * @param info  the cacheinfo
+   */
+  private void cancelSpill(CacheInfo info) {
+    if (!info.spilling) {
+      return;
+    }
+    info.spilling = false;
+    pendingSpillSize.addAndGet(-info.getSize());
+    totalSize.addAndGet(info.getSize());
+    track(info, info.getSize());
+  }
 
-      if (!info.cacheFileGood) {
-        FileOutputStream fos = new FileOutputStream(info.cacheFile);
-        BufferedOutputStream bos = new BufferedOutputStream(fos,100000);
-        ObjectOutputStream oos = new ObjectOutputStream(fos);
-        oos.writeObject(info.data);
-        oos.close();
-        bos.close();
-        fos.close();
+  /**
+   * Move the entry from the heap into a direct buffer.
+   *
+   * @param info  the cacheinfo
+   *
+   * @return false if the off-heap tier is off or has no room, in which case
+   * nothing was done
+   */
+  private boolean moveOffHeap(CacheInfo info) {
+    long budget = offHeapBudget;
+    if (budget <= 0) {
+      return false;
+    }
+    long size;
+    synchronized (info) {
+      if (info.data == null || info.removed || info.spilling) {
+        return false;
       }
-      info.data = null;
-      totalSize -= info.getSize();
+      size = DataCacheFile.rawSize(info.type, info.data);
+      if (size > budget || size > Integer.MAX_VALUE) {
+        return false;
+      }
+      if (offHeapSize.addAndGet(size) <= budget) {
+        return moveOffHeap(info, (int)size);
+      }
+      offHeapSize.addAndGet(-size);
+    }
+    // make room for the next one
+    demoteOffHeap(size);
+    return false;
+  }
+
+  /**
+   * Copy the data into a direct buffer of the given, already reserved,
+   * size. Must be called while holding the lock on info.
+   *
+   * @param info  the cacheinfo
+   * @param size  the reserved size
+   *
+   * @return true if the entry is now off-heap
+   */
+  private boolean moveOffHeap(CacheInfo info, int size) {
+    ByteBuffer buffer;
+    try {
+      buffer = ByteBuffer.allocateDirect(size);
+      DataCacheFile.write(buffer, info.type, info.data);
+      buffer.flip();
+    } catch (Throwable exc) {
+      // most likely out of direct memory; just use the disk
+      offHeapSize.addAndGet(-size);
+      logger.warn("Could not move cache entry off-heap: " + exc);
+      return false;
+    }
+    policyFor(info).remove(info);
+    info.offHeap = buffer;
+    info.data = null;
+    totalSize.addAndGet(-info.getSize());
+    offHeapPolicy.add(info, size);
+    return true;
+  }
+
+  /**
+   * Free the entry's direct buffer, if it has one. Must be called while
+   * holding the lock on info.
+   *
+   * @param info  the cacheinfo
+   */
+  private void releaseOffHeap(CacheInfo info) {
+    if (info.offHeap == null) {
+      return;
+    }
+    offHeapPolicy.remove(info);
+    offHeapSize.addAndGet(-info.offHeap.capacity());
+    info.offHeap = null;
+  }
+
+  /**
+   * Queue the least recently used off-heap entries to be written to disk
+   * until at least the given number of bytes will be freed.
+   *
+   * @param bytes  how much to free
+   */
+  private void demoteOffHeap(long bytes) {
+    long planned = 0;
+    while (planned < bytes) {
+      final CacheInfo info = offHeapPolicy.victim();
+      if (info == null) {
+        break;
+      }
+      ByteBuffer buffer;
+      synchronized (info) {
+        offHeapPolicy.remove(info);
+        buffer = info.offHeap;
+        if (buffer == null) {
+          continue;
+        }
+        if (info.cacheFileGood) {
+          // already on disk
+          releaseOffHeap(info);
+          planned += buffer.capacity();
+          continue;
+        }
+      }
+      try {
+        spillWriter.execute(() -> finishOffHeapSpill(info));
+        planned += buffer.capacity();
+      } catch (RejectedExecutionException exc) {
+        synchronized (info) {
+          if (info.offHeap != null) {
+            offHeapPolicy.add(info, info.offHeap.capacity());
+          }
+        }
+        break;
+      }
+    }
+  }
+
+  /**
+   * Runs on the spill writer. Write an off-heap entry to disk and free its
+   * direct buffer.
+   *
+   * @param info  the cacheinfo
+   */
+  private void finishOffHeapSpill(CacheInfo info) {
+    ByteBuffer buffer;
+    File file;
+    synchronized (info) {
+      buffer = info.offHeap;
+      if (buffer == null) {
+        return;
+      }
+      file = info.nextCacheFile();
+    }
+    try {
+      long start = System.nanoTime();
+      if (compressSpills) {
+        DataCacheFile.write(file, info.type, DataCacheFile.read(buffer), true);
+      } else {
+        DataCacheFile.write(file, buffer);
+      }
+      spillLatency.record(System.nanoTime() - start);
+      bytesSpilled.add(info.getSize());
     } catch (Exception exc) {
-      throw new RuntimeException(exc);
+      logger.error("Could not write cache file " + file, exc);
+      file.delete();
+      synchronized (info) {
+        if (info.offHeap == buffer) {
+          offHeapPolicy.add(info, buffer.capacity());
+        }
+      }
+      return;
+    }
+    synchronized (info) {
+      if (info.offHeap != buffer || info.removed) {
+        // reloaded or removed while we were writing
+        file.delete();
+        return;
+      }
+      info.setCacheFile(file);
+      releaseOffHeap(info);
     }
   }
 
+  /**
+   * Is the heap so full that we should not leave evicted data in memory
+   * while it waits to be written?
+   *
+   * @return true if less than CRITICAL_HEAP_FRACTION of the heap is free
+   */
+  private static boolean isHeapCritical() {
+    Runtime rt = Runtime.getRuntime();
+    long used = rt.totalMemory() - rt.freeMemory();
+    return rt.maxMemory() - used < CRITICAL_HEAP_FRACTION * rt.maxMemory();
+  }
+
   /**
    * Get the list of sorted CacheInfo objects
    *
    * @return  Sorted list of cacheinfos
    */
   public List<CacheInfo> getCacheInfos() {
-    synchronized (MUTEX) {
-      List<CacheInfo> infos = new ArrayList<CacheInfo>(cache.size());
-      for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-        CacheInfo info = cache.get(keys.nextElement());
-        infos.add(info);
-      }
-      Collections.sort(infos);
-      return infos;
+    List<CacheInfo> infos = new ArrayList<CacheInfo>(cache.values());
+    // entries can be touched while we sort, so sort on a snapshot of
+    // their access times
+    final Map<CacheInfo, Long> times =
+        new IdentityHashMap<CacheInfo, Long>(infos.size());
+    for (CacheInfo info : infos) {
+      times.put(info, info.lastTime);
     }
+    infos.sort(new Comparator<CacheInfo>() {
+      public int compare(CacheInfo a, CacheInfo b) {
+        return Long.compare(times.get(a), times.get(b));
+      }
+    });
+    return infos;
   }
 
   public  void setMemoryPercent(double percentage) {
@@ -391,32 +1193,159 @@ public class DataCacheManager  implements Runnable {
   }
 
   /**
-   *  Check if we are above the max size. If so then flush data from memory  until we are below the threshold
+   *  Check if we are above the max size. If so then flush data from memory  until we are below the threshold.
+   *  If another thread is already doing this then we just return.
    */
     public  void checkCache() {
-      if (totalSize < getMaxSize()) {
-        return;
+      checkCache(getMaxSize());
+    }
+
+  /**
+   * Flush data from memory until we are at or below the given size. If
+   * another thread is already doing this then we just return.
+   *
+   * @param limit  the size to get down to
+   */
+  private void checkCache(long limit) {
+    if (totalSize.get() <= limit) {
+      return;
+    }
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      //First do the volatile ones
+      evict(removablePolicy, limit);
+      evict(spillablePolicy, limit);
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Flush the victims of the given policy until we are at or below the
+   * limit or the policy has nothing left.
+   *
+   * @param policy  the policy to take victims from
+   * @param limit  the size to get down to
+   */
+  private void evict(EvictionPolicy<CacheInfo> policy, long limit) {
+    while (totalSize.get() > limit) {
+      CacheInfo info = policy.victim();
+      if (info == null) {
+        break;
       }
-      synchronized (MUTEX) {
-        //First do the volatile ones
-        for (CacheInfo info : getCacheInfos()) {
-          if(info.removeIfNeeded) {
-            flushCachedData(info);
-            if (totalSize <= getMaxSize()) {
-              break;
-            }
-          }
-        }
-        if (totalSize <= getMaxSize()) {
-          for (CacheInfo info : getCacheInfos()) {
-            flushCachedData(info);
-            if (totalSize <= getMaxSize()) {
-              break;
-            }
-          }
-        }
+      if (info.removeIfNeeded) {
+        flushCachedData(info);
+      } else if (moveOffHeap(info)) {
+        // kept in memory, just not on the heap
+      } else if (isHeapCritical()) {
+        flushCachedData(info);
+      } else if (!startSpill(info)) {
+        // the writer is backed up; it checks again once it has caught up
+        break;
       }
+      // make sure we do not get handed the same entry forever
+      policy.remove(info);
     }
+  }
+
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  public long getMissCount() {
+    return offHeapReloadCount.sum() + diskReloadCount.sum();
+  }
+
+  public long getOffHeapReloadCount() {
+    return offHeapReloadCount.sum();
+  }
+
+  public long getDiskReloadCount() {
+    return diskReloadCount.sum();
+  }
+
+  public long getBytesSpilled() {
+    return bytesSpilled.sum();
+  }
+
+  public long getBytesReloaded() {
+    return bytesReloaded.sum();
+  }
+
+  public long[] getLatencyBucketsMillis() {
+    return LatencyHistogram.BOUNDS_MILLIS.clone();
+  }
+
+  public long[] getSpillLatencyCounts() {
+    return spillLatency.getCounts();
+  }
+
+  public long[] getDiskReloadLatencyCounts() {
+    return diskReloadLatency.getCounts();
+  }
+
+  public long[] getOffHeapReloadLatencyCounts() {
+    return offHeapReloadLatency.getCounts();
+  }
+
+  public int getEntryCount() {
+    return cache.size();
+  }
+
+  public long getTotalSize() {
+    return totalSize.get();
+  }
+
+  public long getPendingSpillSize() {
+    return pendingSpillSize.get();
+  }
+
+  public long getOffHeapSize() {
+    return offHeapSize.get();
+  }
+
+  public Map<String, Long> getResidentBytesByLabel() {
+    return getResidentBytes(false);
+  }
+
+  public Map<String, Long> getResidentBytesByOwner() {
+    return getResidentBytes(true);
+  }
+
+  /**
+   * Add up the sizes of the entries that are on the heap
+   *
+   * @param byOwner  group by owner rather than by label
+   *
+   * @return bytes per group, sorted by group name
+   */
+  private Map<String, Long> getResidentBytes(boolean byOwner) {
+    Map<String, Long> result = new TreeMap<String, Long>();
+    for (CacheInfo info : cache.values()) {
+      if (info.data == null) {
+        continue;
+      }
+      String key = byOwner ? info.owner : info.label;
+      if (key == null) {
+        key = byOwner ? "unknown" : getNameForType(info.type);
+      }
+      result.merge(key, (long)info.getSize(), Long::sum);
+    }
+    return result;
+  }
+
+  public void resetStatistics() {
+    hitCount.reset();
+    offHeapReloadCount.reset();
+    diskReloadCount.reset();
+    bytesSpilled.reset();
+    bytesReloaded.reset();
+    spillLatency.reset();
+    diskReloadLatency.reset();
+    offHeapReloadLatency.reset();
+  }
 
   /**
    * Print out the cache statistics
@@ -426,40 +1355,47 @@ public class DataCacheManager  implements Runnable {
   }
 
   public String getStats() {
-    synchronized (MUTEX) {
-      StringBuffer sb = new StringBuffer();
-      int mb =(int)( getMaxSize()/(double)1000000.0);
-      int total =(int)( totalSize/(double)1000000.0);
-      sb.append("Cache total size:" + total +" MB   max size:" + mb +" MB  (" + (100*memoryPercentage)+"% of max memory)");
+    StringBuffer sb = new StringBuffer();
+    int mb =(int)( getMaxSize()/1000000.0);
+    int total =(int)( totalSize.get()/1000000.0);
+    int pending =(int)( pendingSpillSize.get()/1000000.0);
+    int offHeap =(int)( offHeapSize.get()/1000000.0);
+    int offHeapMax =(int)( offHeapBudget/1000000.0);
+    sb.append("Cache total size:" + total +" MB   max size:" + mb +" MB  (" + (100*memoryPercentage)+"% of max memory)  eviction:" + evictionPolicy + "  waiting to spill:" + pending + " MB  off-heap:" + offHeap + "/" + offHeapMax + " MB");
+    sb.append("\n");
+    sb.append("hits:" + getHitCount() + "  misses:" + getMissCount() + " (off-heap:" + getOffHeapReloadCount() + " disk:" + getDiskReloadCount() + ")  spilled:" + (int)(getBytesSpilled()/1000000.0) + " MB  reloaded:" + (int)(getBytesReloaded()/1000000.0) + " MB");
+    sb.append("\n");
+    sb.append("spill times:       " + spillLatency);
+    sb.append("\n");
+    sb.append("disk reload times: " + diskReloadLatency);
+    sb.append("\n");
+    List<CacheInfo> infos= getCacheInfos();
+    if(infos.size()==0) {
+      sb.append("nothing in cache");
       sb.append("\n");
-      List<CacheInfo> infos= getCacheInfos();
-      if(infos.size()==0) {
-        sb.append("nothing in cache");
+    } else {
+      sb.append("entry size/in cache/data access/cache miss/last touched");
+      sb.append("\n");
+      int cnt = 0;
+      for (CacheInfo info : infos) {
+        sb.append("   #" + (++cnt) +" ");
+        sb.append(info.toString());
+        /*
+                        "   #" + (++cnt) +" cache entry:" + info.getSize() + "   " + (info.data != null) +
+                                 "   " + info.dataAccessedCnt + "   " + info.cacheMissedCnt + "   " +
+                                 new Date(info.lastTime));
+        */
+        sb.append('\n');
+
+        /*
+        sb.append("what:" + info.what);
         sb.append("\n");
-      } else {
-        sb.append("entry size/in cache/data access/cache miss/last touched");
+        sb.append(info.where.substring(300));
         sb.append("\n");
-        int cnt = 0;
-        for (CacheInfo info : infos) {
-          sb.append("   #" + (++cnt) +" ");
-          sb.append(info.toString());
-          /*
-                          "   #" + (++cnt) +" cache entry:" + info.getSize() + "   " + (info.data != null) +
-                                   "   " + info.dataAccessedCnt + "   " + info.cacheMissedCnt + "   " +
-                                   new Date(info.lastTime));
-          */
-          sb.append('\n');
-
-          /*
-          sb.append("what:" + info.what);
-          sb.append("\n");
-          sb.append(info.where.substring(300));
-          sb.append("\n");
-          */
-        }
+        */
       }
-      return sb.toString();
     }
+    return sb.toString();
   }
 
   /**
@@ -468,21 +1404,17 @@ public class DataCacheManager  implements Runnable {
    * @param where
    */
   private void checkStats(String where) {
-    synchronized (MUTEX) {
-      int tmp = 0;
-      for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-        CacheInfo info = cache.get(keys.nextElement());
-        if (info.data != null) tmp += info.getSize();
-      }
+    long tmp = 0;
+    for (CacheInfo info : cache.values()) {
+      if (info.data != null) tmp += info.getSize();
+    }
 
-      if (tmp != totalSize) {
+    if (tmp != totalSize.get()) {
+      System.err.println(
+        "WHOAA: " + where + "  " + tmp + " != total size:" + totalSize.get());
+      for (CacheInfo info : cache.values()) {
         System.err.println(
-          "WHOAA: " + where + "  " + tmp + " != total size:" + totalSize);
-        for (Enumeration keys = cache.keys(); keys.hasMoreElements(); ) {
-          CacheInfo info = cache.get(keys.nextElement());
-          System.err.println(
-            "   cache entry:" + info.getSize() + " " + (info.data != null));
-        }
+          "   cache entry:" + info.getSize() + " " + (info.data != null));
       }
     }
   }
@@ -490,6 +1422,8 @@ public class DataCacheManager  implements Runnable {
   /**
    * Class CacheInfo
    *
+   * <p>The data, cache file and loading fields are guarded by the
+   * CacheInfo instance itself.</p>
    *
    * @author IDV Development Team
    */
@@ -508,27 +1442,48 @@ public class DataCacheManager  implements Runnable {
     private Object id;
 
     /**  */
-    private long lastTime;
+    private volatile long lastTime;
 
     /**  */
-    private Object data;
+    private volatile Object data;
+
+    /** Set while a thread is reading this entry back from disk */
+    private CompletableFuture<Object> loading;
+
+    /** Set once this entry has been removed from the cache */
+    private boolean removed = false;
+
+    /** Set while this entry is waiting on the spill writer */
+    private volatile boolean spilling = false;
+
+    /** The data, when it lives in the off-heap tier */
+    private ByteBuffer offHeap;
 
     /**  */
     private File cacheFile;
 
+    /** Number of times this entry has been written to disk */
+    private int cacheFileCnt = 0;
+
     /**           */
     private boolean cacheFileGood = false;
 
     /**           */
-    private int dataAccessedCnt = 0;
+    private final AtomicInteger dataAccessedCnt = new AtomicInteger();
 
     /**           */
-    private int cacheMissedCnt = 0;
+    private final AtomicInteger cacheMissedCnt = new AtomicInteger();
 
     private String where;
 
     private String what;
 
+    /** The label given when the entry was added, or null */
+    private String label;
+
+    /** Who added the entry, see setOwner; may be null */
+    private String owner;
+
     private boolean removeIfNeeded = false;
 
     /**
@@ -545,7 +1500,6 @@ public class DataCacheManager  implements Runnable {
       this.cacheManager = cacheManager;
       this.type = type;
       this.removeIfNeeded = removeIfNeeded;
-      cacheFile = new File(cacheManager.getCacheDir() + "/" + cacheId + ".dat");
       this.what = data.toString();
       where = "";
       //      where = ucar.unidata.util.LogUtil.getStackTrace();
@@ -557,14 +1511,14 @@ public class DataCacheManager  implements Runnable {
      */
     private void dataAccessed() {
       lastTime = System.currentTimeMillis();
-      dataAccessedCnt++;
+      dataAccessedCnt.incrementAndGet();
     }
 
     /**
      *
      */
     private void cacheMissed() {
-      cacheMissedCnt++;
+      cacheMissedCnt.incrementAndGet();
     }
 
     /**
@@ -590,7 +1544,7 @@ public class DataCacheManager  implements Runnable {
     }
 
     public String toString() {
-        return what+"   " + getTypeName(type) + ":" + getSize() + "   " + (data != null) + "   " + dataAccessedCnt + "   " + cacheMissedCnt + "   " + new Date(lastTime);
+        return what+"   " + getTypeName(type) + ":" + getSize() + "   " + (data != null ? "heap" : offHeap != null ? "off-heap" : "disk") + "   " + dataAccessedCnt + "   " + cacheMissedCnt + "   " + new Date(lastTime);
     }
 
     /**
@@ -617,12 +1571,36 @@ public class DataCacheManager  implements Runnable {
       this.data = data;
     }
 
+    /**
+     * Get a fresh file for the next write. Spill files are read through a
+     * memory mapping, and some platforms (Windows) refuse to truncate or
+     * delete a file while a mapping of it is still reachable, so we never
+     * rewrite a file in place.
+     *
+     * @return the file to write to
+     */
+    private File nextCacheFile() {
+      return new File(cacheManager.getCacheDir() + "/" + id + "_"
+                      + (cacheFileCnt++) + ".dat");
+    }
+
+    /**
+     * The data has been written to the given file. Delete the old one.
+     *
+     * @param file  the new cache file
+     */
+    private void setCacheFile(File file) {
+      remove();
+      cacheFile = file;
+      cacheFileGood = true;
+    }
+
     /**
      *
      */
     private void remove() {
-      if (cacheFile != null) {
-        cacheFile.delete();
+      if (cacheFile != null && !cacheFile.delete() && cacheFile.exists()) {
+        cacheFile.deleteOnExit();
       }
     }
 
@@ -648,21 +1626,21 @@ public class DataCacheManager  implements Runnable {
   /********
    Begin generated access methods
    *****/
-  private static final int TYPE_DOUBLE1D = 0;
-  private static final int TYPE_FLOAT1D = 1;
-  private static final int TYPE_INT1D = 2;
-  private static final int TYPE_SHORT1D = 3;
-  private static final int TYPE_BYTE1D = 4;
-  private static final int TYPE_DOUBLE2D = 5;
-  private static final int TYPE_FLOAT2D = 6;
-  private static final int TYPE_INT2D = 7;
-  private static final int TYPE_SHORT2D = 8;
-  private static final int TYPE_BYTE2D = 9;
-  private static final int TYPE_DOUBLE3D = 10;
-  private static final int TYPE_FLOAT3D = 11;
-  private static final int TYPE_INT3D = 12;
-  private static final int TYPE_SHORT3D = 13;
-  private static final int TYPE_BYTE3D = 14;
+  static final int TYPE_DOUBLE1D = 0;
+  static final int TYPE_FLOAT1D = 1;
+  static final int TYPE_INT1D = 2;
+  static final int TYPE_SHORT1D = 3;
+  static final int TYPE_BYTE1D = 4;
+  static final int TYPE_DOUBLE2D = 5;
+  static final int TYPE_FLOAT2D = 6;
+  static final int TYPE_INT2D = 7;
+  static final int TYPE_SHORT2D = 8;
+  static final int TYPE_BYTE2D = 9;
+  static final int TYPE_DOUBLE3D = 10;
+  static final int TYPE_FLOAT3D = 11;
+  static final int TYPE_INT3D = 12;
+  static final int TYPE_SHORT3D = 13;
+  static final int TYPE_BYTE3D = 14;
 
   /**
    * get the value from the cache
@@ -0,0 +1,147 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+
+package visad.data;
+
+import java.util.Map;
+
+/**
+ * JMX view of the {@link DataCacheManager}. The cache registers itself
+ * as {@code visad.data:type=DataCacheManager} with the platform MBean
+ * server, so these numbers can be watched with jconsole or VisualVM.
+ *
+ * <p>A hit is a request answered from the heap. A miss had to reload the
+ * data, either from the off-heap tier or from disk. Latencies are counted
+ * in the buckets given by {@link #getLatencyBucketsMillis()}.</p>
+ */
+public interface DataCacheManagerMXBean {
+
+    /**
+     * @return Number of requests answered from the heap.
+     */
+    long getHitCount();
+
+    /**
+     * @return Number of requests that had to reload the data.
+     */
+    long getMissCount();
+
+    /**
+     * @return Number of misses answered from the off-heap tier.
+     */
+    long getOffHeapReloadCount();
+
+    /**
+     * @return Number of misses read back from disk.
+     */
+    long getDiskReloadCount();
+
+    /**
+     * @return Bytes written to disk.
+     */
+    long getBytesSpilled();
+
+    /**
+     * @return Bytes put back on the heap after a miss.
+     */
+    long getBytesReloaded();
+
+    /**
+     * @return Upper bound of each latency bucket but the last, which
+     *         counts everything slower.
+     */
+    long[] getLatencyBucketsMillis();
+
+    /**
+     * @return How long writing entries to disk took.
+     */
+    long[] getSpillLatencyCounts();
+
+    /**
+     * @return How long reading entries back from disk took.
+     */
+    long[] getDiskReloadLatencyCounts();
+
+    /**
+     * @return How long copying entries back from the off-heap tier took.
+     */
+    long[] getOffHeapReloadLatencyCounts();
+
+    /**
+     * @return Number of entries.
+     */
+    int getEntryCount();
+
+    /**
+     * @return Bytes on the heap.
+     */
+    long getTotalSize();
+
+    /**
+     * @return Heap bytes the cache tries to stay under.
+     */
+    int getMaxSize();
+
+    /**
+     * @return Bytes on the heap that are waiting to be written to disk.
+     */
+    long getPendingSpillSize();
+
+    /**
+     * @return Bytes in the off-heap tier.
+     */
+    long getOffHeapSize();
+
+    /**
+     * @return Max bytes in the off-heap tier.
+     */
+    long getOffHeapBudget();
+
+    /**
+     * @return Name of the eviction policy.
+     */
+    String getEvictionPolicy();
+
+    /**
+     * @return Bytes on the heap by the label given when the entry was
+     *         added (or by array type if there was none).
+     */
+    Map<String, Long> getResidentBytesByLabel();
+
+    /**
+     * @return Bytes on the heap by the owner that was set when the entry
+     *         was added, see {@link DataCacheManager#setOwner(String)}.
+     */
+    Map<String, Long> getResidentBytesByOwner();
+
+    /**
+     * Set the counters and histograms back to zero.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package visad.data;
+
+/**
+ * Decides which in-memory {@link DataCacheManager} entry should be written
+ * out next when the cache is over its size limit.
+ *
+ * <p>A policy only tracks entries that currently have their data in memory.
+ * Every operation is expected to run in constant (or small bounded) time,
+ * since they are called on every cache access. Implementations must be
+ * thread safe.</p>
+ *
+ * @param <E> Type of the cache entries.
+ */
+interface EvictionPolicy<E> {
+
+    /** Name of the least recently used policy. */
+    String LRU = "lru";
+
+    /** Name of the least frequently used policy. */
+    String LFU = "lfu";
+
+    /** Name of the size-aware, sketch based frequency policy. */
+    String TINY_LFU = "tinylfu";
+
+    /**
+     * Called when an entry's data is put into memory, either because it was
+     * added, reloaded from disk or replaced.
+     *
+     * @param entry Entry that is now in memory.
+     * @param size Size of the entry's data in bytes.
+     */
+    void add(E entry, int size);
+
+    /**
+     * Called when an entry's data is accessed.
+     *
+     * @param entry Entry that was accessed. May not be tracked.
+     */
+    void access(E entry);
+
+    /**
+     * Called when an entry's data leaves memory.
+     *
+     * @param entry Entry to stop tracking. May not be tracked.
+     */
+    void remove(E entry);
+
+    /**
+     * Get the entry that should be evicted next. The entry is not removed
+     * from the policy.
+     *
+     * @return Next entry to evict, or {@code null} if nothing is tracked.
+     */
+    E victim();
+
+    /**
+     * Create a policy by name.
+     *
+     * @param name One of {@link #LRU}, {@link #LFU} or {@link #TINY_LFU}.
+     * Unknown names (and {@code null}) give an LRU policy.
+     * @param <E> Type of the cache entries.
+     *
+     * @return New, empty, policy.
+     */
+    static <E> EvictionPolicy<E> create(String name) {
+        String canonical = canonicalName(name);
+        if (LFU.equals(canonical)) {
+            return new LfuEvictionPolicy<E>();
+        }
+        if (TINY_LFU.equals(canonical)) {
+            return new TinyLfuEvictionPolicy<E>();
+        }
+        return new LruEvictionPolicy<E>();
+    }
+
+    /**
+     * Look up a policy name, ignoring case.
+     *
+     * @param name Policy name.
+     *
+     * @return {@link #LRU}, {@link #LFU} or {@link #TINY_LFU}, or
+     * {@code null} if {@code name} is none of them.
+     */
+    static String canonicalName(String name) {
+        for (String known : new String[] { LRU, LFU, TINY_LFU }) {
+            if (known.equalsIgnoreCase(name)) {
+                return known;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+
+package visad.data;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something took in a fixed set of buckets. Recording is
+ * lock free so it can be done on every cache read and write.
+ */
+final class LatencyHistogram {
+
+    /**
+     * Upper bound, in milliseconds, of every bucket but the last. The last
+     * bucket counts everything slower.
+     */
+    static final long[] BOUNDS_MILLIS = {
+        1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000
+    };
+
+    /** Count per bucket. */
+    private final AtomicLongArray counts =
+        new AtomicLongArray(BOUNDS_MILLIS.length + 1);
+
+    /**
+     * Count one event.
+     *
+     * @param nanos How long it took.
+     */
+    void record(long nanos) {
+        long millis = nanos / 1000000L;
+        int bucket = 0;
+        while (bucket < BOUNDS_MILLIS.length && millis >= BOUNDS_MILLIS[bucket]) {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+    }
+
+    /**
+     * Get the counts.
+     *
+     * @return One count per bucket, the last being the overflow bucket.
+     */
+    long[] getCounts() {
+        long[] result = new long[counts.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = counts.get(i);
+        }
+        return result;
+    }
+
+    /** Set every count back to zero. */
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    /**
+     * Get a short description, e.g. {@code <1ms:3 <2ms:10 ... >=5000ms:0}.
+     *
+     * @return The counts with their bucket bounds.
+     */
+    @Override public String toString() {
+        long[] c = getCounts();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < c.length; i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            if (i < BOUNDS_MILLIS.length) {
+                sb.append('<').append(BOUNDS_MILLIS[i]);
+            } else {
+                sb.append(">=").append(BOUNDS_MILLIS[BOUNDS_MILLIS.length - 1]);
+            }
+            sb.append("ms:").append(c[i]);
+        }
+        return sb.toString();
+    }
+}
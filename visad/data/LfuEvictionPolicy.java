@@ -0,0 +1,138 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package visad.data;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Evicts the least frequently used entry, breaking ties by least recent
+ * use.
+ *
+ * <p>Uses the constant time scheme from Shah, Mitra and Matani, "An O(1)
+ * algorithm for implementing the LFU cache eviction scheme": entries live
+ * in per-frequency buckets, and the buckets form a linked list ordered by
+ * frequency.</p>
+ *
+ * @param <E> Type of the cache entries.
+ */
+class LfuEvictionPolicy<E> implements EvictionPolicy<E> {
+
+    /** Entries with the same access count, oldest first. */
+    private static class Bucket<E> {
+        final long count;
+        final LinkedHashSet<E> entries = new LinkedHashSet<E>();
+        Bucket<E> prev;
+        Bucket<E> next;
+
+        Bucket(long count) {
+            this.count = count;
+        }
+    }
+
+    private final Map<E, Bucket<E>> buckets = new HashMap<E, Bucket<E>>();
+
+    /** Bucket with the lowest count. */
+    private Bucket<E> head;
+
+    @Override public synchronized void add(E entry, int size) {
+        if (buckets.containsKey(entry)) {
+            return;
+        }
+        Bucket<E> bucket = head;
+        if (bucket == null || bucket.count != 1) {
+            bucket = new Bucket<E>(1);
+            link(null, bucket);
+        }
+        bucket.entries.add(entry);
+        buckets.put(entry, bucket);
+    }
+
+    @Override public synchronized void access(E entry) {
+        Bucket<E> bucket = buckets.get(entry);
+        if (bucket == null) {
+            return;
+        }
+        Bucket<E> next = bucket.next;
+        if (next == null || next.count != bucket.count + 1) {
+            next = new Bucket<E>(bucket.count + 1);
+            link(bucket, next);
+        }
+        next.entries.add(entry);
+        buckets.put(entry, next);
+        removeFrom(bucket, entry);
+    }
+
+    @Override public synchronized void remove(E entry) {
+        Bucket<E> bucket = buckets.remove(entry);
+        if (bucket != null) {
+            removeFrom(bucket, entry);
+        }
+    }
+
+    @Override public synchronized E victim() {
+        if (head == null) {
+            return null;
+        }
+        Iterator<E> it = head.entries.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /** Insert {@code bucket} after {@code prev} ({@code null} for head). */
+    private void link(Bucket<E> prev, Bucket<E> bucket) {
+        Bucket<E> next = (prev == null) ? head : prev.next;
+        bucket.prev = prev;
+        bucket.next = next;
+        if (next != null) {
+            next.prev = bucket;
+        }
+        if (prev == null) {
+            head = bucket;
+        } else {
+            prev.next = bucket;
+        }
+    }
+
+    private void removeFrom(Bucket<E> bucket, E entry) {
+        bucket.entries.remove(entry);
+        if (!bucket.entries.isEmpty()) {
+            return;
+        }
+        if (bucket.prev == null) {
+            head = bucket.next;
+        } else {
+            bucket.prev.next = bucket.next;
+        }
+        if (bucket.next != null) {
+            bucket.next.prev = bucket.prev;
+        }
+    }
+}
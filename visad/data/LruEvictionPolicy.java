@@ -0,0 +1,61 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package visad.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Evicts the least recently used entry. Backed by an access-ordered
+ * {@link LinkedHashMap}.
+ *
+ * @param <E> Type of the cache entries.
+ */
+class LruEvictionPolicy<E> implements EvictionPolicy<E> {
+
+    private final LinkedHashMap<E, Boolean> entries =
+        new LinkedHashMap<E, Boolean>(16, 0.75f, true);
+
+    @Override public synchronized void add(E entry, int size) {
+        entries.put(entry, Boolean.TRUE);
+    }
+
+    @Override public synchronized void access(E entry) {
+        entries.get(entry);
+    }
+
+    @Override public synchronized void remove(E entry) {
+        entries.remove(entry);
+    }
+
+    @Override public synchronized E victim() {
+        Iterator<E> it = entries.keySet().iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+}
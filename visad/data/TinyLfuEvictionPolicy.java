@@ -0,0 +1,149 @@
+/*
+ * This file is part of McIDAS-V
+ *
+ * Copyright 2007-2020
+ * Space Science and Engineering Center (SSEC)
+ * University of Wisconsin - Madison
+ * 1225 W. Dayton Street, Madison, WI 53706, USA
+ * http://www.ssec.wisc.edu/mcidas
+ *
+ * All Rights Reserved
+ *
+ * McIDAS-V is built on Unidata's IDV and SSEC's VisAD libraries, and
+ * some McIDAS-V source code is based on IDV and VisAD source code.
+ *
+ * McIDAS-V is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU Lesser Public License as published by
+ * the Free Software Foundation; either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * McIDAS-V is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Lesser Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses.
+ */
+
+package visad.data;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size-aware frequency policy in the spirit of TinyLFU.
+ *
+ * <p>Access frequencies are estimated with a small count-min sketch that
+ * is periodically halved, so the estimate favors recent popularity and
+ * survives an entry being evicted and reloaded. To pick a victim we look
+ * at the few least recently used entries and evict the one that has the
+ * lowest estimated frequency per byte, so large, rarely used arrays go
+ * first.</p>
+ *
+ * @param <E> Type of the cache entries.
+ */
+class TinyLfuEvictionPolicy<E> implements EvictionPolicy<E> {
+
+    /** How many of the least recently used entries are considered. */
+    private static final int SAMPLE_SIZE = 8;
+
+    /** Sketch rows; each row uses a different hash. */
+    private static final int DEPTH = 4;
+
+    /** Sketch columns. Must be a power of two. */
+    private static final int WIDTH = 1 << 12;
+
+    /** Counters saturate at this value. */
+    private static final int MAX_COUNT = 15;
+
+    /** After this many increments every counter is halved. */
+    private static final int RESET_INTERVAL = 10 * WIDTH;
+
+    private static final int[] SEEDS = {
+        0x97cb3127, 0xb4b82e39, 0x8c5d1e63, 0xc2b2ae35
+    };
+
+    /** Resident entries and their sizes, least recently used first. */
+    private final LinkedHashMap<E, Integer> entries =
+        new LinkedHashMap<E, Integer>(16, 0.75f, true);
+
+    private final byte[][] sketch = new byte[DEPTH][WIDTH];
+
+    private int additions = 0;
+
+    @Override public synchronized void add(E entry, int size) {
+        entries.put(entry, size);
+        increment(entry);
+    }
+
+    @Override public synchronized void access(E entry) {
+        if (entries.get(entry) != null) {
+            increment(entry);
+        }
+    }
+
+    @Override public synchronized void remove(E entry) {
+        entries.remove(entry);
+    }
+
+    @Override public synchronized E victim() {
+        E victim = null;
+        double victimScore = Double.MAX_VALUE;
+        Iterator<Map.Entry<E, Integer>> it = entries.entrySet().iterator();
+        for (int i = 0; i < SAMPLE_SIZE && it.hasNext(); i++) {
+            Map.Entry<E, Integer> e = it.next();
+            double score = frequency(e.getKey()) / (double)Math.max(1, e.getValue());
+            if (score < victimScore) {
+                victim = e.getKey();
+                victimScore = score;
+            }
+        }
+        return victim;
+    }
+
+    /**
+     * Estimated access frequency of an entry.
+     *
+     * @param entry Entry to look up.
+     *
+     * @return Estimated count, at least 1.
+     */
+    int frequency(E entry) {
+        int hash = spread(entry.hashCode());
+        int min = MAX_COUNT;
+        for (int i = 0; i < DEPTH; i++) {
+            min = Math.min(min, sketch[i][index(hash, i)]);
+        }
+        return Math.max(1, min);
+    }
+
+    private void increment(E entry) {
+        int hash = spread(entry.hashCode());
+        for (int i = 0; i < DEPTH; i++) {
+            int index = index(hash, i);
+            if (sketch[i][index] < MAX_COUNT) {
+                sketch[i][index]++;
+            }
+        }
+        if (++additions >= RESET_INTERVAL) {
+            additions = 0;
+            for (byte[] row : sketch) {
+                for (int j = 0; j < WIDTH; j++) {
+                    row[j] >>= 1;
+                }
+            }
+        }
+    }
+
+    private static int index(int hash, int row) {
+        int h = (hash ^ SEEDS[row]) * SEEDS[row];
+        return (h ^ (h >>> 16)) & (WIDTH - 1);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}